@@ -0,0 +1,86 @@
+package ai.evolv;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures genome lookups and the reconciliation of fetched allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationsBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int experiments;
+
+    private final Gson gson = new Gson();
+
+    private JsonArray allocations;
+    private JsonArray sameAllocations;
+    private JsonArray changedAllocations;
+    private Allocations snapshot;
+    private String key;
+
+    /**
+     * Builds the payloads, the looked up key belongs to the last experiment.
+     */
+    @Setup
+    public void setUp() {
+        allocations = BenchmarkPayloads.allocations(experiments, "");
+        sameAllocations = BenchmarkPayloads.allocations(experiments, "");
+        changedAllocations = BenchmarkPayloads.allocations(experiments, "_changed");
+        snapshot = new Allocations(allocations, gson);
+        key = BenchmarkPayloads.deepKey(experiments - 1);
+    }
+
+    /**
+     * A lookup of a value already decoded from the snapshot.
+     */
+    @Benchmark
+    public Double lookupDecodedValue() throws Exception {
+        return snapshot.getValueFromGenome(key, Double.class);
+    }
+
+    /**
+     * The first lookup after a fetch, including indexing the genome of a new snapshot.
+     */
+    @Benchmark
+    public Double lookupFromNewSnapshot() throws Exception {
+        return new Allocations(allocations, gson).getValueFromGenome(key, Double.class);
+    }
+
+    /**
+     * Reconciling a fetch that returned the stored allocations.
+     */
+    @Benchmark
+    public JsonArray reconcileUnchanged() {
+        return Allocations.reconcileAllocations(allocations, sameAllocations);
+    }
+
+    /**
+     * Reconciling a fetch in which every experiment changed candidate.
+     */
+    @Benchmark
+    public JsonArray reconcileChanged() {
+        return Allocations.reconcileAllocations(allocations, changedAllocations);
+    }
+
+}
@@ -0,0 +1,71 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Builds allocation payloads shaped like the ones returned by the participant endpoint.
+ */
+final class BenchmarkPayloads {
+
+    static final int GENOME_DEPTH = 4;
+
+    private BenchmarkPayloads() {}
+
+    /**
+     * Creates the allocations of a participant in the given number of experiments.
+     * Every experiment owns a top level genome key, nested {@value #GENOME_DEPTH}
+     * levels deep with a few sibling values at each level.
+     * @param experiments the number of experiments
+     * @param candidateSuffix appended to every candidate id
+     * @return the allocations
+     */
+    static JsonArray allocations(int experiments, String candidateSuffix) {
+        JsonArray allocations = new JsonArray();
+        for (int i = 0; i < experiments; i++) {
+            JsonObject allocation = new JsonObject();
+            allocation.addProperty("uid", "benchmark_uid");
+            allocation.addProperty("sid", "benchmark_sid");
+            allocation.addProperty("eid", "eid_" + i);
+            allocation.addProperty("cid", "cid_" + i + candidateSuffix);
+            allocation.add("genome", genome(i));
+            allocation.addProperty("excluded", false);
+            allocations.add(allocation);
+        }
+        return allocations;
+    }
+
+    /**
+     * Returns the key of the deepest numeric value in an experiment's genome.
+     * @param experiment the index of the experiment
+     * @return a dotted genome key
+     */
+    static String deepKey(int experiment) {
+        StringBuilder key = new StringBuilder("experiment_").append(experiment);
+        for (int level = 0; level < GENOME_DEPTH; level++) {
+            key.append(".level_").append(level);
+        }
+        return key.append(".weight").toString();
+    }
+
+    private static JsonObject genome(int experiment) {
+        JsonObject leaf = new JsonObject();
+        leaf.addProperty("weight", experiment + 0.5);
+        leaf.addProperty("enabled", experiment % 2 == 0);
+        leaf.addProperty("color", "blue");
+
+        JsonObject node = leaf;
+        for (int level = GENOME_DEPTH - 1; level >= 0; level--) {
+            JsonObject parent = new JsonObject();
+            parent.add("level_" + level, node);
+            parent.addProperty("label", "level " + level);
+            parent.addProperty("rank", level);
+            node = parent;
+        }
+
+        JsonObject genome = new JsonObject();
+        genome.add("experiment_" + experiment, node);
+        return genome;
+    }
+
+}
@@ -0,0 +1,82 @@
+package ai.evolv;
+
+import java.net.URI;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the urls of unbatched events.
+ * <p>
+ *     The baseline methods build the same urls the way the emitter did before
+ *     UrlBuilder, with String.format and a URI to URL round trip.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventUrlBenchmark {
+
+    private AscendConfig config;
+    private AscendParticipant participant;
+    private EventEmitter emitter;
+
+    /**
+     * Creates an emitter for a participant whose ids need percent encoding.
+     */
+    @Setup
+    public void setUp() {
+        config = AscendConfig.builder("benchmark_env", new OkHttpClientImpl(1000)).build();
+        participant = new AscendParticipant("user@example.com", "session/42");
+        emitter = new EventEmitter(config, participant);
+    }
+
+    @Benchmark
+    public String scoredEventUrl() {
+        return emitter.getEventUrl("purchase completed", 12.5);
+    }
+
+    @Benchmark
+    public String allocationEventUrl() {
+        return emitter.getEventUrl(EventEmitter.CONFIRM_KEY, "eid_42", "cid_42:7");
+    }
+
+    @Benchmark
+    public String scoredEventUrlBaseline() throws URISyntaxException, MalformedURLException {
+        String queryString = String.format("uid=%s&sid=%s&type=%s&score=%s",
+                participant.getUserId(), participant.getSessionId(), "purchase completed",
+                Double.valueOf(12.5).toString());
+        return toUrl(queryString);
+    }
+
+    @Benchmark
+    public String allocationEventUrlBaseline()
+            throws URISyntaxException, MalformedURLException {
+        String queryString = String.format("uid=%s&sid=%s&eid=%s&cid=%s&type=%s",
+                participant.getUserId(), participant.getSessionId(), "eid_42", "cid_42:7",
+                EventEmitter.CONFIRM_KEY);
+        return toUrl(queryString);
+    }
+
+    private String toUrl(String queryString) throws URISyntaxException, MalformedURLException {
+        String path = String.format("//%s/%s/%s/events", config.getDomain(),
+                config.getVersion(), config.getEnvironmentId());
+        URI uri = new URI(config.getHttpScheme(), null, path, queryString, null);
+        return uri.toURL().toString();
+    }
+
+}
@@ -0,0 +1,76 @@
+package ai.evolv;
+
+import com.google.gson.Gson;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures applying allocations to subscribed actions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecutionBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int experiments;
+
+    @Param({"1", "16", "256"})
+    public int subscriptions;
+
+    private final Gson gson = new Gson();
+
+    private Allocations snapshot;
+    private String[] keys;
+    private Execution<Double> execution;
+
+    /**
+     * Builds the snapshot, subscriptions are spread over the experiments.
+     */
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        snapshot = new Allocations(BenchmarkPayloads.allocations(experiments, ""), gson);
+        keys = new String[subscriptions];
+        for (int i = 0; i < subscriptions; i++) {
+            keys[i] = BenchmarkPayloads.deepKey(i % experiments);
+        }
+        execution = new Execution<>(keys[0], 0.0, blackhole::consume);
+    }
+
+    /**
+     * A subscription that was already applied to the snapshot's experiments.
+     */
+    @Benchmark
+    public void executeWithAllocation() throws Exception {
+        execution.executeWithAllocation(snapshot);
+    }
+
+    /**
+     * Subscribing to every key and dispatching the queue once the allocations arrive.
+     */
+    @Benchmark
+    public void subscribeAndDispatch(Blackhole blackhole) {
+        ExecutionQueue queue = new ExecutionQueue();
+        for (String key : keys) {
+            queue.enqueue(new Execution<>(key, 0.0, blackhole::consume));
+        }
+        queue.executeAllWithValuesFromAllocations(snapshot);
+    }
+
+}
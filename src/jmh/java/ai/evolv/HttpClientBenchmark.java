@@ -0,0 +1,119 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of allocation requests against a local server.
+ * <p>
+ *     Many threads fetch concurrently, so the results show how the connection and
+ *     dispatcher limits of each client bound throughput once the server is slow.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(32)
+@Fork(1)
+public class HttpClientBenchmark {
+
+    @Param({"okhttp", "okhttp-tuned", "async"})
+    public String client;
+
+    @Param({"0", "20"})
+    public long serverDelayMillis;
+
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private HttpServer server;
+    private StreamingHttpClient httpClient;
+    private String url;
+
+    /**
+     * Starts the server and creates the client under test.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        byte[] body = BenchmarkPayloads.allocations(10, "").toString()
+                .getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> respond(exchange, body));
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() +
+                "/v1/benchmark_env/allocations?uid=benchmark_uid&sid=benchmark_sid";
+        httpClient = createClient(client);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public JsonArray fetchAllocations() {
+        return httpClient.get(url, Allocator::readAllocations).join();
+    }
+
+    private static StreamingHttpClient createClient(String client) {
+        if ("okhttp".equals(client)) {
+            return new OkHttpClientImpl(5000);
+        } else if ("okhttp-tuned".equals(client)) {
+            return OkHttpClientImpl.builder()
+                    .setRequestTimeout(5, TimeUnit.SECONDS)
+                    .setMaxRequestsPerHost(64)
+                    .setMaxIdleConnections(64)
+                    .build();
+        } else if ("async".equals(client)) {
+            return new AsyncHttpClientImpl(5000);
+        }
+        throw new IllegalArgumentException("Unknown client: " + client);
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        try {
+            if (serverDelayMillis > 0) {
+                Thread.sleep(serverDelayMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+}
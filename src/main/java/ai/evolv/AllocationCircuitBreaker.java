@@ -0,0 +1,235 @@
+package ai.evolv;
+
+import ai.evolv.AscendCircuitBreakerListener.State;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops sending allocation requests while most of them fail.
+ * <p>
+ *     The outcomes of the last windowSize requests are kept. Once the window is full
+ *     and the share of failures in it reaches the threshold, the breaker opens and
+ *     requests fail fast, without a network call, for the open duration. After that a
+ *     few probe requests are let through: if all of them succeed the breaker closes
+ *     again with an empty window, if one fails it stays open for another period. Every
+ *     state change starts a new epoch, and the outcome of a request only counts in the
+ *     epoch it was permitted in, so a slow request sent while closed is not taken for
+ *     a probe.
+ * </p>
+ * <p>
+ *     A single breaker is shared by every config of an environment built with the same
+ *     settings, so an outage costs one window of timed out requests instead of one per
+ *     participant. Each of those configs can add its listener, every listener is called
+ *     in the order of the state changes, but without holding the breaker's lock.
+ * </p>
+ */
+final class AllocationCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllocationCircuitBreaker.class);
+
+    static final int DEFAULT_HALF_OPEN_PROBES = 3;
+
+    /**
+     * The permit returned when a request should fail fast.
+     */
+    static final long REJECTED = -1;
+
+    private final double failureRateThreshold;
+    private final boolean[] failedOutcomes;
+    private final long openDurationNanos;
+    private final int halfOpenProbes;
+    private final CopyOnWriteArrayList<AscendCircuitBreakerListener> listeners =
+            new CopyOnWriteArrayList<>();
+    private final LongSupplier ticker;
+    private final Object listenerLock = new Object();
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private long epoch;
+    private int recordedCount;
+    private int nextOutcome;
+    private int failureCount;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private final Queue<State[]> pendingTransitions = new ArrayDeque<>();
+
+    AllocationCircuitBreaker(double failureRateThreshold, int windowSize,
+                             long openDurationNanos, int halfOpenProbes,
+                             AscendCircuitBreakerListener listener, LongSupplier ticker) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("The failure rate threshold must be greater " +
+                    "than 0 and at most 1.");
+        }
+        if (windowSize < 1 || halfOpenProbes < 1) {
+            throw new IllegalArgumentException("The window size and the number of probes " +
+                    "must be at least 1.");
+        }
+
+        this.failureRateThreshold = failureRateThreshold;
+        this.failedOutcomes = new boolean[windowSize];
+        this.openDurationNanos = openDurationNanos;
+        this.halfOpenProbes = halfOpenProbes;
+        this.ticker = ticker;
+        if (listener != null) {
+            addListener(listener);
+        }
+    }
+
+    /**
+     * Adds a listener for the state changes, unless it was already added.
+     * @param listener receives the state changes
+     */
+    void addListener(AscendCircuitBreakerListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns a permit to send a request, or {@link #REJECTED} if the request should fail
+     * fast. Every permit must be passed back to {@link #record(long, boolean)}.
+     * @return the permit, or REJECTED
+     */
+    long tryAcquire() {
+        long permit;
+        boolean changed;
+        synchronized (this) {
+            permit = acquire();
+            changed = !pendingTransitions.isEmpty();
+        }
+
+        if (changed) {
+            notifyListener();
+        }
+        return permit;
+    }
+
+    /**
+     * Records the outcome of a permitted request. Outcomes of requests permitted before
+     * the last state change are ignored.
+     * @param permit the permit the request was sent with
+     * @param success whether the request succeeded
+     */
+    void record(long permit, boolean success) {
+        boolean changed;
+        synchronized (this) {
+            if (permit != epoch) {
+                return;
+            }
+            recordOutcome(success);
+            changed = !pendingTransitions.isEmpty();
+        }
+
+        if (changed) {
+            notifyListener();
+        }
+    }
+
+    private long acquire() {
+        if (state == State.OPEN) {
+            if (ticker.getAsLong() - openedAt < openDurationNanos) {
+                return REJECTED;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= halfOpenProbes) {
+                return REJECTED;
+            }
+            probesInFlight++;
+        }
+
+        return epoch;
+    }
+
+    private void recordOutcome(boolean success) {
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (!success) {
+                open();
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            recordInWindow(!success);
+            if (recordedCount == failedOutcomes.length
+                    && failureCount >= failureRateThreshold * recordedCount) {
+                open();
+            }
+        }
+    }
+
+    private void recordInWindow(boolean failed) {
+        if (recordedCount == failedOutcomes.length) {
+            if (failedOutcomes[nextOutcome]) {
+                failureCount--;
+            }
+        } else {
+            recordedCount++;
+        }
+
+        failedOutcomes[nextOutcome] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        nextOutcome = (nextOutcome + 1) % failedOutcomes.length;
+    }
+
+    private void open() {
+        openedAt = ticker.getAsLong();
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State next) {
+        final State previous = state;
+        state = next;
+        epoch++;
+        probesInFlight = 0;
+        probeSuccesses = 0;
+        if (next == State.CLOSED) {
+            recordedCount = 0;
+            nextOutcome = 0;
+            failureCount = 0;
+        }
+
+        if (previous != next) {
+            pendingTransitions.add(new State[] {previous, next});
+        }
+    }
+
+    private synchronized State[] pollTransition() {
+        return pendingTransitions.poll();
+    }
+
+    /**
+     * Reports the pending state changes outside the breaker's lock. The listener lock
+     * keeps them in order when several threads change the state at once.
+     */
+    private void notifyListener() {
+        synchronized (listenerLock) {
+            State[] transition;
+            while ((transition = pollTransition()) != null) {
+                LOGGER.info("The circuit breaker around the participants API is now {}.",
+                        transition[1]);
+                for (AscendCircuitBreakerListener listener : listeners) {
+                    try {
+                        listener.onStateChange(transition[0], transition[1]);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("A circuit breaker listener failed.", e);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package ai.evolv;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent allocation fetches for the same participant.
+ * <p>
+ *     While a fetch for a (user id, session id) is in flight, any other fetch for the
+ *     same participant shares its future instead of sending a new request. The shared
+ *     fetch parses, reconciles and stores the allocations once.
+ * </p>
+ * <p>
+ *     Every AscendConfig of an environment shares one coalescer, so fetches are also
+ *     coalesced between the separately built configs of the classic flow. The shared
+ *     fetch writes to the allocation store of the fetch that started it, a fetch for
+ *     another store adopts the allocations into its own store once they arrive.
+ * </p>
+ */
+class AllocationFetchCoalescer {
+
+    private final ConcurrentMap<FetchKey, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * Fetches the participant's allocations, or shares the fetch already in flight.
+     * @param userId the participant's user id
+     * @param sessionId the participant's session id
+     * @param store the allocation store the fetch writes to
+     * @param fetcher sends the request if none is in flight
+     * @param adopt writes allocations fetched for another store to this fetch's store
+     * @param metrics counts the requests saved
+     * @return a future of the participant's allocations
+     */
+    CompletableFuture<Allocations> fetch(String userId, String sessionId,
+                                         AscendAllocationStore store,
+                                         Supplier<CompletableFuture<Allocations>> fetcher,
+                                         UnaryOperator<Allocations> adopt,
+                                         AscendMetrics metrics) {
+        FetchKey key = new FetchKey(userId, sessionId);
+        InFlight shared = new InFlight(store);
+        InFlight existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalescedCount.increment();
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_COALESCED, 1);
+            return existing.store == store ? existing.future : existing.future.thenApply(adopt);
+        }
+
+        try {
+            fetcher.get().whenComplete((allocations, ex) -> {
+                inFlight.remove(key, shared);
+                if (ex != null) {
+                    shared.future.completeExceptionally(ex);
+                } else {
+                    shared.future.complete(allocations);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.future.completeExceptionally(e);
+        }
+
+        return shared.future;
+    }
+
+    /**
+     * Returns the number of fetches that were served by an in-flight request.
+     * @return the number of requests saved
+     */
+    long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static final class InFlight {
+
+        private final AscendAllocationStore store;
+        private final CompletableFuture<Allocations> future = new CompletableFuture<>();
+
+        InFlight(AscendAllocationStore store) {
+            this.store = store;
+        }
+    }
+
+    private static final class FetchKey {
+
+        private final String userId;
+        private final String sessionId;
+        private final int hash;
+
+        FetchKey(String userId, String sessionId) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.hash = Objects.hash(userId, sessionId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FetchKey)) {
+                return false;
+            }
+            FetchKey other = (FetchKey) o;
+            return Objects.equals(userId, other.userId)
+                    && Objects.equals(sessionId, other.sessionId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,287 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Retries failed allocation requests and hedges slow ones.
+ * <p>
+ *     A failed request is retried up to maxAttempts times in total, after a random
+ *     backoff between zero and an exponentially growing cap. With hedging enabled, a
+ *     second request is sent once the first has been outstanding for longer than the
+ *     95th percentile of recent response times, and whichever succeeds first is used.
+ *     Response times are kept in windows of a minute, the percentile is taken from the
+ *     current window once it has enough samples and from the previous one until then.
+ *     Retries and hedged requests both draw from a shared {@link RetryBudget}, so they
+ *     cannot multiply the load on the Participant API while it is failing. The budget
+ *     and the response times are shared by every config of an environment, so that
+ *     configs built per participant hedge as well.
+ * </p>
+ */
+final class AllocationFetchPolicy {
+
+    static final double HEDGE_PERCENTILE = 95;
+    static final int MIN_HEDGE_SAMPLES = 20;
+    private static final int HEDGE_DELAY_UPDATE_INTERVAL = 16;
+    static final long RESPONSE_TIME_WINDOW_MILLIS = 60000;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ascend-fetch-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final RetryBudget budget;
+    private final ResponseTimes responseTimes;
+    private final AscendMetrics metrics;
+    private final DoubleSupplier random;
+
+    AllocationFetchPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                          boolean hedging, long minHedgeDelayMillis, RetryBudget budget,
+                          AscendMetrics metrics) {
+        this(maxAttempts, baseBackoffMillis, maxBackoffMillis, hedging, minHedgeDelayMillis,
+                budget, new ResponseTimes(), metrics);
+    }
+
+    AllocationFetchPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                          boolean hedging, long minHedgeDelayMillis, RetryBudget budget,
+                          ResponseTimes responseTimes, AscendMetrics metrics) {
+        this(maxAttempts, baseBackoffMillis, maxBackoffMillis, hedging, minHedgeDelayMillis,
+                budget, responseTimes, metrics, AllocationFetchPolicy::nextRandom);
+    }
+
+    AllocationFetchPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                          boolean hedging, long minHedgeDelayMillis, RetryBudget budget,
+                          ResponseTimes responseTimes, AscendMetrics metrics,
+                          DoubleSupplier random) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1.");
+        }
+
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = Math.max(0, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0,
+                minHedgeDelayMillis));
+        this.budget = budget;
+        this.responseTimes = responseTimes;
+        this.metrics = NoopAscendMetrics.orNoop(metrics);
+        this.random = random;
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean isHedging() {
+        return hedging;
+    }
+
+    RetryBudget getBudget() {
+        return budget;
+    }
+
+    ResponseTimes getResponseTimes() {
+        return responseTimes;
+    }
+
+    /**
+     * Sends a request, retrying and hedging it as configured.
+     * @param request sends one attempt of the request
+     * @param <T> the type of the response
+     * @return a future of the first successful response, or of the last failure
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        budget.deposit();
+        attempt(request, 1, result);
+        return result;
+    }
+
+    /**
+     * Returns the upper bound of the random backoff before the given retry.
+     * @param attempt the number of attempts made so far, starting at 1
+     * @return the backoff cap in milliseconds
+     */
+    long backoffCapMillis(int attempt) {
+        int shift = Math.min(attempt - 1, 30);
+        return Math.min(maxBackoffMillis, baseBackoffMillis << shift);
+    }
+
+    /**
+     * Returns how long a request may be outstanding before it is hedged, or -1 if
+     * too few responses were timed to tell.
+     * @return the hedge delay in nanoseconds
+     */
+    long getHedgeDelayNanos() {
+        return responseTimes.getHedgeDelayNanos();
+    }
+
+    private static double nextRandom() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> request, int attempt,
+                             CompletableFuture<T> result) {
+        sendHedged(request).whenComplete((response, ex) -> {
+            if (ex == null) {
+                result.complete(response);
+                return;
+            }
+
+            if (attempt >= maxAttempts || !budget.tryWithdraw()) {
+                result.completeExceptionally(ex);
+                return;
+            }
+
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_RETRY, 1);
+            long backoff = (long) (random.getAsDouble() * backoffCapMillis(attempt));
+            SCHEDULER.schedule(() -> attempt(request, attempt + 1, result), backoff,
+                    TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private <T> CompletableFuture<T> sendHedged(Supplier<CompletableFuture<T>> request) {
+        long delay = responseTimes.getHedgeDelayNanos();
+        if (!hedging || delay < 0) {
+            return send(request);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        send(request).whenComplete((response, ex) -> complete(result, outstanding, response, ex));
+
+        ScheduledFuture<?> hedge = SCHEDULER.schedule(() -> {
+            // hedge only while the first request is still outstanding
+            if (result.isDone() || !budget.tryWithdraw()
+                    || !outstanding.compareAndSet(1, 2)) {
+                return;
+            }
+
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_HEDGE, 1);
+            send(request).whenComplete((response, ex) ->
+                    complete(result, outstanding, response, ex));
+        }, Math.max(delay, minHedgeDelayNanos), TimeUnit.NANOSECONDS);
+        result.whenComplete((response, ex) -> hedge.cancel(false));
+
+        return result;
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, AtomicInteger outstanding,
+                                     T response, Throwable ex) {
+        if (ex == null) {
+            result.complete(response);
+        } else if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        long start = System.nanoTime();
+        CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+
+        if (hedging) {
+            response.thenRun(() -> responseTimes.record(System.nanoTime() - start));
+        }
+        return response;
+    }
+
+    /**
+     * The recent response times of allocation requests and the hedge delay taken from
+     * them.
+     * <p>
+     *     Response times are recorded into a histogram that is replaced at the end of
+     *     every window, so the delay follows the Participant API's current latency
+     *     rather than all the latencies it ever had. When a window closes with too few
+     *     samples the delay is cleared and hedging stops until enough are recorded.
+     * </p>
+     */
+    static final class ResponseTimes {
+
+        private final long windowNanos;
+        private final LongSupplier ticker;
+        private volatile Window window;
+        private volatile long hedgeDelayNanos = -1;
+
+        ResponseTimes() {
+            this(TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIME_WINDOW_MILLIS), System::nanoTime);
+        }
+
+        ResponseTimes(long windowNanos, LongSupplier ticker) {
+            this.windowNanos = windowNanos;
+            this.ticker = ticker;
+            this.window = new Window(ticker.getAsLong());
+        }
+
+        void record(long nanos) {
+            long now = ticker.getAsLong();
+            Window current = window;
+            if (now - current.start >= windowNanos) {
+                current = rotate(current, now);
+            }
+
+            current.latencies.record(nanos);
+            long count = current.latencies.getCount();
+            // walking the histogram is cheap but not free, refresh the delay periodically
+            if (count >= MIN_HEDGE_SAMPLES
+                    && (!current.delayed || count % HEDGE_DELAY_UPDATE_INTERVAL == 0)) {
+                current.delayed = true;
+                hedgeDelayNanos = current.latencies.getValueAtPercentile(HEDGE_PERCENTILE,
+                        TimeUnit.NANOSECONDS);
+            }
+        }
+
+        long getHedgeDelayNanos() {
+            // nothing was recorded for a whole window, the delay is out of date
+            return ticker.getAsLong() - window.start < 2 * windowNanos ? hedgeDelayNanos : -1;
+        }
+
+        private synchronized Window rotate(Window expired, long now) {
+            if (window != expired) {
+                return window;
+            }
+
+            // keep the closed window's delay until the new one has enough samples
+            LatencyHistogram closed = expired.latencies;
+            boolean recent = now - expired.start < 2 * windowNanos;
+            hedgeDelayNanos = recent && closed.getCount() >= MIN_HEDGE_SAMPLES
+                    ? closed.getValueAtPercentile(HEDGE_PERCENTILE, TimeUnit.NANOSECONDS)
+                    : -1;
+            window = new Window(now);
+            return window;
+        }
+
+        private static final class Window {
+
+            private final long start;
+            private final LatencyHistogram latencies = new LatencyHistogram();
+            private volatile boolean delayed;
+
+            Window(long start) {
+                this.start = start;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package ai.evolv;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides whether stored allocations can be used without waiting for a fetch.
+ * <p>
+ *     Allocations younger than the time to live are fresh and used as is. Once they
+ *     are older, they are stale for the stale-while-revalidate period: they are still
+ *     used right away while a fetch refreshes the store in the background. Older
+ *     allocations have expired and are fetched before they are used.
+ * </p>
+ * <p>
+ *     With an early refresh window, fresh allocations are refreshed in the background
+ *     with a chance that grows from zero at the start of the window to one at the end
+ *     of the time to live. Participants that are served often are then refreshed a
+ *     little before they expire instead of all at once.
+ * </p>
+ */
+final class AllocationFreshnessPolicy {
+
+    enum Freshness {
+        FRESH, STALE, EXPIRED
+    }
+
+    private final long timeToLiveMillis;
+    private final long staleWhileRevalidateMillis;
+    private final long earlyRefreshMillis;
+    private final DoubleSupplier random;
+
+    AllocationFreshnessPolicy(long timeToLiveMillis, long staleWhileRevalidateMillis,
+                              long earlyRefreshMillis) {
+        this(timeToLiveMillis, staleWhileRevalidateMillis, earlyRefreshMillis,
+                AllocationFreshnessPolicy::nextRandom);
+    }
+
+    AllocationFreshnessPolicy(long timeToLiveMillis, long staleWhileRevalidateMillis,
+                              long earlyRefreshMillis, DoubleSupplier random) {
+        if (timeToLiveMillis < 0 || staleWhileRevalidateMillis < 0 || earlyRefreshMillis < 0) {
+            throw new IllegalArgumentException("Allocation freshness durations must not be " +
+                    "negative.");
+        }
+
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+        this.earlyRefreshMillis = Math.min(earlyRefreshMillis, timeToLiveMillis);
+        this.random = random;
+    }
+
+    long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    long getStaleWhileRevalidateMillis() {
+        return staleWhileRevalidateMillis;
+    }
+
+    long getEarlyRefreshMillis() {
+        return earlyRefreshMillis;
+    }
+
+    /**
+     * Classifies stored allocations by their age.
+     * @param ageMillis the time since the allocations were stored or revalidated,
+     *     Long.MAX_VALUE if unknown
+     * @return whether the allocations are fresh, stale or expired
+     */
+    Freshness evaluate(long ageMillis) {
+        if (ageMillis < 0) {
+            return Freshness.EXPIRED;
+        }
+
+        if (ageMillis < timeToLiveMillis) {
+            return refreshEarly(timeToLiveMillis - ageMillis) ? Freshness.STALE : Freshness.FRESH;
+        }
+
+        if (ageMillis - timeToLiveMillis < staleWhileRevalidateMillis) {
+            return Freshness.STALE;
+        }
+
+        return Freshness.EXPIRED;
+    }
+
+    private static double nextRandom() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    private boolean refreshEarly(long remainingMillis) {
+        if (remainingMillis >= earlyRefreshMillis) {
+            return false;
+        }
+
+        // linear in the time left: certain at expiry, never at the start of the window
+        return random.getAsDouble() * earlyRefreshMillis >= remainingMillis;
+    }
+
+}
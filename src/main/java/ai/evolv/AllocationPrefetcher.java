@@ -0,0 +1,117 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fetches the allocations of many participants with a bounded number of requests in flight.
+ * <p>
+ *     Each worker takes the next participant as soon as its previous request completes,
+ *     so the connections of the shared HttpClient stay busy without flooding it.
+ *     A participant whose request fails is resolved to its stored allocations, or to an
+ *     empty array when none are stored.
+ * </p>
+ */
+class AllocationPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AllocationPrefetcher.class);
+
+    private final Iterator<AscendParticipant> participants;
+    private final Function<AscendParticipant, CompletableFuture<Allocations>> fetcher;
+    private final Function<String, JsonArray> fallback;
+    private final Map<String, JsonArray> results = new ConcurrentHashMap<>();
+    private final AtomicInteger remaining;
+    private final CompletableFuture<Map<String, JsonArray>> completion =
+            new CompletableFuture<>();
+
+    AllocationPrefetcher(Collection<AscendParticipant> participants,
+                         Function<AscendParticipant, CompletableFuture<Allocations>> fetcher,
+                         Function<String, JsonArray> fallback) {
+        this.participants = participants.iterator();
+        this.fetcher = fetcher;
+        this.fallback = fallback;
+        this.remaining = new AtomicInteger(participants.size());
+    }
+
+    CompletableFuture<Map<String, JsonArray>> start(int maxConcurrency) {
+        if (remaining.get() == 0) {
+            completion.complete(Collections.emptyMap());
+            return completion;
+        }
+
+        for (int i = 0; i < Math.max(1, maxConcurrency); i++) {
+            if (!work()) {
+                break;
+            }
+        }
+
+        return completion;
+    }
+
+    /**
+     * Fetches participants until one of the requests has to wait on the network.
+     * @return false if there were no participants left
+     */
+    private boolean work() {
+        AscendParticipant participant;
+        while ((participant = next()) != null) {
+            CompletableFuture<Allocations> fetched = fetch(participant);
+            if (!fetched.isDone()) {
+                AscendParticipant pending = participant;
+                fetched.whenComplete((allocations, ex) -> {
+                    complete(pending, allocations, ex);
+                    work();
+                });
+                return true;
+            }
+
+            complete(participant, fetched.getNow(null), null);
+        }
+
+        return false;
+    }
+
+    private synchronized AscendParticipant next() {
+        return participants.hasNext() ? participants.next() : null;
+    }
+
+    private CompletableFuture<Allocations> fetch(AscendParticipant participant) {
+        try {
+            return fetcher.apply(participant).exceptionally(ex -> null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void complete(AscendParticipant participant, Allocations allocations,
+                          Throwable ex) {
+        String userId = participant.getUserId();
+        JsonArray resolved;
+        if (ex == null && allocations != null) {
+            resolved = allocations.getRawAllocations();
+        } else {
+            LOGGER.warn(String.format("Prefetching allocations failed for participant %s, " +
+                    "falling back to stored allocations.", userId));
+            resolved = fallback.apply(userId);
+        }
+
+        if (userId != null) {
+            results.put(userId, resolved == null ? new JsonArray() : resolved);
+        }
+        if (remaining.decrementAndGet() == 0) {
+            completion.complete(Collections.unmodifiableMap(results));
+        }
+    }
+
+}
@@ -7,38 +7,112 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * An immutable snapshot of a participant's allocations.
+ * <p>
+ *     The merged genome is flattened once, when the snapshot is created, into an
+ *     index of every dotted key path to its leaf or subtree value. Lookups are a
+ *     single hash probe.
+ * </p>
+ * <p>
+ *     Decoded values are cached per (key path, type) for the lifetime of the
+ *     snapshot, so repeated reads of the same key only decode once. Cached values
+ *     are shared between callers and should be treated as read only.
+ * </p>
+ */
 class Allocations {
 
+    private static final String KEY_SEPARATOR = ".";
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * Returned by {@link #resolveValue(String, Class)} for keys the genome does not have.
+     */
+    static final Object MISSING_VALUE = new Object();
+
     private final JsonArray allocations;
+    private final Gson gson;
+    private final Map<String, JsonElement> genomeIndex;
+    private final Set<String> activeExperiments;
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> decodedValues =
+            new ConcurrentHashMap<>();
 
     Allocations(JsonArray allocations) {
+        this(allocations, AscendConfig.DEFAULT_GSON);
+    }
+
+    Allocations(JsonArray allocations, Gson gson) {
         this.allocations = allocations;
+        this.gson = gson;
+        this.genomeIndex = indexGenome(allocations);
+        this.activeExperiments = collectActiveExperiments(allocations);
+    }
+
+    JsonArray getRawAllocations() {
+        return allocations;
     }
 
+    boolean isEmpty() {
+        return !Allocator.allocationsNotEmpty(allocations);
+    }
+
+    @SuppressWarnings("unchecked")
     <T> T getValueFromGenome(String key, Class<T> cls) throws AscendKeyError {
-        ArrayList<String> keyParts = new ArrayList<>(Arrays.asList(key.split("\\.")));
-        JsonElement value = getGenomeFromAllocations().get("genome");
-        for (String part : keyParts) {
-            JsonObject jsonObject = value.getAsJsonObject();
-            value = jsonObject.get(part);
-
-            if (value == null) {
-                throw new AscendKeyError("Could not find value for key:" + key);
+        Object value = resolveValue(key, cls);
+        if (value == MISSING_VALUE) {
+            throw new AscendKeyError("Could not find value for key:" + key);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Decodes the value of a key through the snapshot's cache without throwing.
+     * @param key a dotted key path into the genome
+     * @param cls the type to decode the value as
+     * @return the decoded value, which may be null, or {@link #MISSING_VALUE}
+     */
+    Object resolveValue(String key, Class<?> cls) {
+        ConcurrentMap<String, Object> valuesForType = decodedValues.get(cls);
+        if (valuesForType != null) {
+            Object decoded = valuesForType.get(key);
+            if (decoded != null) {
+                return decoded == NULL_VALUE ? null : decoded;
             }
         }
 
-        Gson gson = new Gson();
-        return gson.fromJson(value, cls);
+        JsonElement value = genomeIndex.get(key);
+        if (value == null) {
+            return MISSING_VALUE;
+        }
+
+        Object decoded = gson.fromJson(value, cls);
+        if (valuesForType == null) {
+            valuesForType = new ConcurrentHashMap<>();
+            ConcurrentMap<String, Object> existing = decodedValues.putIfAbsent(cls,
+                    valuesForType);
+            if (existing != null) {
+                valuesForType = existing;
+            }
+        }
+        valuesForType.putIfAbsent(key, decoded == null ? NULL_VALUE : decoded);
+        return decoded;
     }
 
     JsonObject getGenomeFromAllocations() {
         JsonObject genome = new JsonObject();
+        if (allocations == null) {
+            return wrapGenome(genome);
+        }
+
         for (JsonElement allocation : allocations) {
             JsonObject originalGenome = allocation.getAsJsonObject().getAsJsonObject("genome");
             Set<Map.Entry<String, JsonElement>> entrySet = originalGenome.entrySet();
@@ -46,11 +120,53 @@ class Allocations {
                 genome.add(entry.getKey(), originalGenome.get(entry.getKey()));
             }
         }
+        return wrapGenome(genome);
+    }
+
+    private static JsonObject wrapGenome(JsonObject genome) {
         JsonObject genomeWrapped = new JsonObject();
         genomeWrapped.add("genome", genome);
         return genomeWrapped;
     }
 
+    private Map<String, JsonElement> indexGenome(JsonArray allocations) {
+        if (!Allocator.allocationsNotEmpty(allocations)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, JsonElement> index = new HashMap<>();
+        JsonObject genome = getGenomeFromAllocations().getAsJsonObject("genome");
+        for (Map.Entry<String, JsonElement> entry : genome.entrySet()) {
+            indexValue(index, entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    private static void indexValue(Map<String, JsonElement> index, String path,
+                                   JsonElement value) {
+        index.put(path, value);
+        if (!value.isJsonObject()) {
+            return;
+        }
+
+        for (Map.Entry<String, JsonElement> entry : value.getAsJsonObject().entrySet()) {
+            indexValue(index, path + KEY_SEPARATOR + entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static Set<String> collectActiveExperiments(JsonArray allocations) {
+        if (allocations == null) {
+            return Collections.emptySet();
+        }
+
+        Set<String> activeExperiments = new HashSet<>();
+        for (JsonElement a : allocations) {
+            JsonObject allocation = a.getAsJsonObject();
+            activeExperiments.add(allocation.get("eid").getAsString());
+        }
+        return Collections.unmodifiableSet(activeExperiments);
+    }
+
     /**
      * Reconciles the previous allocations with any new allocations.
      *
@@ -67,37 +183,80 @@ class Allocations {
      */
     static JsonArray reconcileAllocations(JsonArray previousAllocations,
                                           JsonArray currentAllocations) {
-        JsonArray allocations = new JsonArray();
+        return reconcile(previousAllocations, currentAllocations).getAllocations();
+    }
 
-        for (JsonElement ca : currentAllocations) {
-            JsonObject currentAllocation = ca.getAsJsonObject();
-            String currentEid = currentAllocation.get("eid").toString();
-            boolean previousFound = false;
+    /**
+     * Reconciles the previous allocations with any new allocations and describes
+     * what changed.
+     *
+     * <p>
+     *     The previous allocations are indexed by eid once, so reconciliation is linear
+     *     in the size of both arrays. Each experiment appears at most once in the result,
+     *     in the order of the current allocations. When the result would be identical to
+     *     the previous allocations, the previous array itself is returned.
+     * </p>
+     *
+     * @param previousAllocations the stored allocations
+     * @param currentAllocations the allocations recently fetched
+     * @return the reconciled allocations and the experiments kept, added and dropped
+     */
+    static AllocationsDiff reconcile(JsonArray previousAllocations,
+                                     JsonArray currentAllocations) {
+        Map<String, JsonElement> previousByEid = new HashMap<>(
+                previousAllocations.size() * 2);
+        for (JsonElement pa : previousAllocations) {
+            previousByEid.putIfAbsent(getEid(pa), pa);
+        }
 
-            for (JsonElement pa : previousAllocations) {
-                JsonObject previousAllocation = pa.getAsJsonObject();
-                String previousEid = previousAllocation.get("eid").toString();
+        JsonArray allocations = new JsonArray();
+        Set<String> kept = new LinkedHashSet<>();
+        Set<String> added = new LinkedHashSet<>();
+        boolean unchanged = currentAllocations.size() == previousAllocations.size();
 
-                if (previousEid.equals(currentEid)) {
-                    allocations.add(pa.getAsJsonObject());
-                    previousFound = true;
+        for (JsonElement ca : currentAllocations) {
+            String eid = getEid(ca);
+            JsonElement previous = previousByEid.get(eid);
+            JsonElement allocation;
+            if (previous != null) {
+                if (!kept.add(eid)) {
+                    unchanged = false;
+                    continue;
                 }
+                allocation = previous;
+            } else {
+                if (!added.add(eid)) {
+                    unchanged = false;
+                    continue;
+                }
+                allocation = ca;
+                unchanged = false;
             }
 
-            if (!previousFound) {
-                allocations.add(ca.getAsJsonObject());
+            unchanged = unchanged
+                    && previousAllocations.get(allocations.size()) == allocation;
+            allocations.add(allocation);
+        }
+
+        Set<String> dropped = new LinkedHashSet<>();
+        if (kept.size() < previousByEid.size()) {
+            for (String eid : previousByEid.keySet()) {
+                if (!kept.contains(eid)) {
+                    dropped.add(eid);
+                }
             }
         }
 
-        return allocations;
+        unchanged = unchanged && allocations.size() == previousAllocations.size();
+        return new AllocationsDiff(unchanged ? previousAllocations : allocations, kept, added,
+                dropped, unchanged);
+    }
+
+    private static String getEid(JsonElement allocation) {
+        return allocation.getAsJsonObject().get("eid").getAsString();
     }
 
     Set<String> getActiveExperiments() {
-        Set<String> activeExperiments = new HashSet<>();
-        for (JsonElement a : allocations) {
-            JsonObject allocation = a.getAsJsonObject();
-            activeExperiments.add(allocation.get("eid").getAsString());
-        }
         return activeExperiments;
     }
 }
@@ -0,0 +1,64 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The result of reconciling a participant's stored allocations with fetched ones.
+ * <p>
+ *     Experiments are identified by their eid. Kept experiments were in both the stored
+ *     and the fetched allocations and keep their stored allocation. Added experiments
+ *     were only fetched, dropped experiments were only stored.
+ * </p>
+ */
+class AllocationsDiff {
+
+    private final JsonArray allocations;
+    private final Set<String> keptExperiments;
+    private final Set<String> addedExperiments;
+    private final Set<String> droppedExperiments;
+    private final boolean unchanged;
+
+    AllocationsDiff(JsonArray allocations, Set<String> keptExperiments,
+                    Set<String> addedExperiments, Set<String> droppedExperiments,
+                    boolean unchanged) {
+        this.allocations = allocations;
+        this.keptExperiments = Collections.unmodifiableSet(keptExperiments);
+        this.addedExperiments = Collections.unmodifiableSet(addedExperiments);
+        this.droppedExperiments = Collections.unmodifiableSet(droppedExperiments);
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Returns the reconciled allocations. When the diff is unchanged this is the
+     * stored allocations array itself.
+     * @return the reconciled allocations
+     */
+    JsonArray getAllocations() {
+        return allocations;
+    }
+
+    Set<String> getKeptExperiments() {
+        return keptExperiments;
+    }
+
+    Set<String> getAddedExperiments() {
+        return addedExperiments;
+    }
+
+    Set<String> getDroppedExperiments() {
+        return droppedExperiments;
+    }
+
+    /**
+     * Returns whether the reconciled allocations are exactly the stored allocations,
+     * in the same order.
+     * @return true if reconciliation changed nothing
+     */
+    boolean isUnchanged() {
+        return unchanged;
+    }
+
+}
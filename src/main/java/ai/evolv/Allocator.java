@@ -1,13 +1,24 @@
 package ai.evolv;
 
+import ai.evolv.exceptions.AscendCircuitOpenException;
 import ai.evolv.exceptions.AscendRuntimeException;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
-import java.net.URI;
-import java.net.URL;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,21 +38,28 @@ class Allocator {
     private final AscendParticipant ascendParticipant;
     private final EventEmitter eventEmitter;
     private final HttpClient httpClient;
+    private final AscendMetrics metrics;
 
-    private boolean confirmationSandbagged = false;
-    private boolean contaminationSandbagged = false;
+    private volatile boolean confirmationSandbagged = false;
+    private volatile boolean contaminationSandbagged = false;
 
-    private AllocationStatus allocationStatus;
+    private volatile AllocationStatus allocationStatus;
 
     Allocator(AscendConfig config) {
-        this.executionQueue = config.getExecutionQueue();
-        this.store = config.getAscendAllocationStore();
+        this(config, config.getAscendParticipant(), config.getAscendAllocationStore(),
+                config.getExecutionQueue(), new EventEmitter(config));
+    }
+
+    Allocator(AscendConfig config, AscendParticipant participant, AscendAllocationStore store,
+              ExecutionQueue executionQueue, EventEmitter eventEmitter) {
+        this.executionQueue = executionQueue;
+        this.store = store;
         this.config = config;
-        this.ascendParticipant = config.getAscendParticipant();
+        this.ascendParticipant = participant;
         this.httpClient = config.getHttpClient();
         this.allocationStatus = AllocationStatus.FETCHING;
-        this.eventEmitter = new EventEmitter(config);
-
+        this.eventEmitter = eventEmitter;
+        this.metrics = NoopAscendMetrics.orNoop(config.getMetrics());
     }
 
     AllocationStatus getAllocationStatus() {
@@ -57,72 +75,309 @@ class Allocator {
     }
 
     String createAllocationsUrl() {
+        String allocationsUrl = config.getAllocationsUrl();
+        if (allocationsUrl == null) {
+            return "";
+        }
+
+        return UrlBuilder.forEndpoint(allocationsUrl)
+                .param("uid", ascendParticipant.getUserId())
+                .param("sid", ascendParticipant.getSessionId())
+                .build();
+    }
+
+    CompletableFuture<Allocations> fetchAllocations() {
+        Executor callbackExecutor = AscendExecutors.orDirect(config.getCallbackExecutor());
+        StoredAllocations stored = readStore();
+        CompletableFuture<Allocations> loaded = loadAllocations(stored);
+        BiFunction<Allocations, Throwable, Allocations> apply = (snapshot, ex) -> {
+            if (ex != null) {
+                return resolveAllocationFailure(stored.allocations);
+            }
+
+            try {
+                return applyAllocations(snapshot);
+            } catch (AscendRuntimeException e) {
+                // surface any customer implementation errors
+                logger.error(e.getCause().toString());
+                return null;
+            } catch (RuntimeException e) {
+                return resolveAllocationFailure(stored.allocations);
+            }
+        };
+
+        CompletableFuture<Allocations> applied = AscendExecutors.handleAsync(loaded, apply,
+                callbackExecutor);
+        return applied.handle((snapshot, ex) -> ex instanceof RejectedExecutionException
+                ? applyOnCallingThread(loaded, apply) : applied)
+                .thenCompose(Function.identity());
+    }
+
+    private static CompletableFuture<Allocations> applyOnCallingThread(
+            CompletableFuture<Allocations> loaded,
+            BiFunction<Allocations, Throwable, Allocations> apply) {
+        // queued actions must still run, on the thread that completed the fetch
+        logger.warn("The callback executor rejected the participant's actions, they run on " +
+                "the calling thread.");
+        return loaded.handle(apply);
+    }
+
+    private Allocations applyAllocations(Allocations snapshot) {
+        allocationStatus = AllocationStatus.RETRIEVED;
+
+        if (confirmationSandbagged) {
+            eventEmitter.confirm(snapshot.getRawAllocations());
+        }
+
+        if (contaminationSandbagged) {
+            eventEmitter.contaminate(snapshot.getRawAllocations());
+        }
+
+        // could throw an exception due to customer's action logic
         try {
-            String path = String.format("//%s/%s/%s/allocations", config.getDomain(),
-                    config.getVersion(),
-                    config.getEnvironmentId());
-            String queryString = String.format("uid=%s&sid=%s", ascendParticipant.getUserId(),
-                    ascendParticipant.getSessionId());
-            URI uri = new URI(config.getHttpScheme(), null, path, queryString, null);
-            URL url = uri.toURL();
-
-            return url.toString();
+            executionQueue.executeAllWithValuesFromAllocations(snapshot);
         } catch (Exception e) {
-            logger.error(e.getMessage());
-            return "";
+            throw new AscendRuntimeException(e);
         }
+
+        return snapshot;
     }
 
-    CompletableFuture<JsonArray> fetchAllocations() {
-        CompletableFuture<String> responseFuture = httpClient.get(createAllocationsUrl());
+    /**
+     * Reads the participant's allocations, along with the etag and age the fetch
+     * needs, once per fetch.
+     */
+    private StoredAllocations readStore() {
+        // the stores write the allocations before their etag and age, read in the
+        // opposite order so neither describes allocations older than the ones read
+        String etag = httpClient instanceof ConditionalHttpClient ? store.getEtag() : null;
+        long ageMillis = config.getAllocationFreshnessPolicy() != null
+                ? store.getAgeMillis() : Long.MAX_VALUE;
+        JsonArray allocations = store.get();
+        return allocationsNotEmpty(allocations)
+                ? new StoredAllocations(allocations, etag, ageMillis)
+                : new StoredAllocations(allocations, null, Long.MAX_VALUE);
+    }
 
-        return responseFuture.thenApply(responseBody -> {
-            JsonParser parser = new JsonParser();
-            JsonArray allocations = parser.parse(responseBody).getAsJsonArray();
+    /**
+     * Uses the stored allocations while the freshness policy allows it, fetches them
+     * otherwise. Stale allocations are used right away and refreshed in the background.
+     * @param stored the participant's stored allocations
+     * @return a future of the participant's allocations
+     */
+    private CompletableFuture<Allocations> loadAllocations(StoredAllocations stored) {
+        AllocationFreshnessPolicy policy = config.getAllocationFreshnessPolicy();
+        if (policy == null || !allocationsNotEmpty(stored.allocations)) {
+            return prefetchAllocations(stored);
+        }
 
-            JsonArray previousAllocations = store.get();
-            if (allocationsNotEmpty(previousAllocations)) {
-                allocations = Allocations.reconcileAllocations(previousAllocations, allocations);
-            }
+        AllocationFreshnessPolicy.Freshness freshness = policy.evaluate(stored.ageMillis);
+        if (freshness == AllocationFreshnessPolicy.Freshness.EXPIRED) {
+            return prefetchAllocations(stored);
+        }
 
-            store.put(allocations);
-            allocationStatus = AllocationStatus.RETRIEVED;
+        if (freshness == AllocationFreshnessPolicy.Freshness.STALE) {
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_SERVED_STALE, 1);
+            prefetchAllocations(stored).whenComplete((snapshot, ex) -> {
+                if (ex != null) {
+                    logger.warn("Failed to refresh the participant's stale allocations.");
+                }
+            });
+        } else {
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_SERVED_FRESH, 1);
+        }
 
-            if (confirmationSandbagged) {
-                eventEmitter.confirm(allocations);
-            }
+        return CompletableFuture.completedFuture(new Allocations(stored.allocations,
+                config.getGson()));
+    }
 
-            if (contaminationSandbagged) {
-                eventEmitter.contaminate(allocations);
-            }
+    /**
+     * Fetches, reconciles and stores the participant's allocations without confirming,
+     * contaminating or running any subscribed actions.
+     * @return a future of the participant's allocations
+     */
+    CompletableFuture<Allocations> prefetchAllocations() {
+        return prefetchAllocations(readStore());
+    }
 
-            // could throw an exception due to customer's action logic
-            try {
-                executionQueue.executeAllWithValuesFromAllocations(allocations);
-            } catch (Exception e) {
-                throw new AscendRuntimeException(e);
-            }
+    private CompletableFuture<Allocations> prefetchAllocations(StoredAllocations stored) {
+        AllocationFetchCoalescer coalescer = config.getAllocationFetchCoalescer();
+        if (coalescer == null) {
+            return requestAllocations(stored);
+        }
 
-            return allocations;
-        }).handle((result, ex) -> {
-            if (ex != null && ex.getCause() instanceof AscendRuntimeException) {
-                // surface any customer implementation errors
-                logger.error(ex.getCause().getCause().toString());
-                return result;
-            } else if (ex != null && result == null) {
-                return resolveAllocationFailure();
+        // a fetch started by another config's allocator wrote to that config's store
+        UnaryOperator<Allocations> adopt = snapshot ->
+                storeAllocations(snapshot.getRawAllocations(), null, stored);
+        AscendAllocationStore owner = store instanceof ParticipantAllocationStore
+                ? ((ParticipantAllocationStore) store).getSharedStore() : store;
+        return coalescer.fetch(ascendParticipant.getUserId(), ascendParticipant.getSessionId(),
+                owner, () -> requestAllocations(stored), adopt, metrics);
+    }
+
+    private CompletableFuture<Allocations> requestAllocations(StoredAllocations stored) {
+        long start = System.nanoTime();
+        String url = createAllocationsUrl();
+        Executor decodeExecutor = AscendExecutors.orDirect(config.getDecodeExecutor());
+        CompletableFuture<Allocations> snapshotFuture;
+        if (httpClient instanceof ConditionalHttpClient) {
+            snapshotFuture = requestAllocationsConditionally(url, stored, decodeExecutor);
+        } else {
+            CompletableFuture<JsonArray> responseFuture;
+            if (!(httpClient instanceof StreamingHttpClient)) {
+                responseFuture = AscendExecutors.thenApplyAsync(send(() -> httpClient.get(url)),
+                        Allocator::parseAllocations, decodeExecutor);
+            } else if (decodeExecutor == AscendExecutors.directExecutor()) {
+                StreamingHttpClient client = (StreamingHttpClient) httpClient;
+                responseFuture = send(() -> client.get(url, Allocator::readAllocations));
             } else {
-                return result;
+                // only read the body on the I/O thread, parse it on the decode executor
+                StreamingHttpClient client = (StreamingHttpClient) httpClient;
+                responseFuture = AscendExecutors.thenApplyAsync(
+                        send(() -> client.get(url, Allocator::bufferBody)),
+                        Allocator::readBufferedAllocations, decodeExecutor);
+            }
+            snapshotFuture = responseFuture.thenApply(allocations ->
+                    storeAllocations(allocations, null, stored));
+        }
+
+        return snapshotFuture.whenComplete((snapshot, ex) -> {
+            metrics.recordLatency(AscendMetrics.Timer.ALLOCATION_FETCH, System.nanoTime() - start);
+            if (ex != null) {
+                metrics.increment(AscendMetrics.Counter.ALLOCATION_FETCH_FAILURE, 1);
             }
         });
     }
 
-    JsonArray resolveAllocationFailure() {
+    private CompletableFuture<Allocations> requestAllocationsConditionally(
+            String url, StoredAllocations stored, Executor decodeExecutor) {
+        JsonArray storedAllocations = stored.allocations;
+        String etag = stored.etag;
+
+        ConditionalHttpClient client = (ConditionalHttpClient) httpClient;
+        if (decodeExecutor == AscendExecutors.directExecutor()) {
+            return send(() -> client.getConditional(url, etag, Allocator::readAllocations))
+                    .thenApply(response -> response.isNotModified()
+                            ? notModified(storedAllocations, etag)
+                            : storeAllocations(response.getBody(), response.getEtag(),
+                                    stored));
+        }
+
+        // only read the body on the I/O thread, parse it on the decode executor
+        CompletableFuture<ConditionalResponse<ResponseBuffer>> bufferedResponse =
+                send(() -> client.getConditional(url, etag, Allocator::bufferBody));
+        return AscendExecutors.thenApplyAsync(bufferedResponse, response -> response.isNotModified()
+                ? notModified(storedAllocations, etag)
+                : storeAllocations(readBufferedAllocations(response.getBody()),
+                        response.getEtag(), stored), decodeExecutor);
+    }
+
+    /**
+     * Sends an allocation request, retrying or hedging it if a fetch policy is configured.
+     * While the circuit breaker is open the request fails without being sent.
+     * @param request sends one attempt of the request
+     * @param <T> the type of the response
+     * @return a future of the response
+     */
+    private <T> CompletableFuture<T> send(Supplier<CompletableFuture<T>> request) {
+        AllocationCircuitBreaker breaker = config.getAllocationCircuitBreaker();
+        if (breaker == null) {
+            return execute(request);
+        }
+
+        CompletableFuture<T> response = new CompletableFuture<>();
+        long permit = breaker.tryAcquire();
+        if (permit == AllocationCircuitBreaker.REJECTED) {
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_CIRCUIT_OPEN, 1);
+            response.completeExceptionally(new AscendCircuitOpenException(
+                    "The circuit breaker around the participants API is open."));
+            return response;
+        }
+
+        try {
+            return execute(request).whenComplete((result, ex) ->
+                    breaker.record(permit, ex == null));
+        } catch (RuntimeException e) {
+            breaker.record(permit, false);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        AllocationFetchPolicy policy = config.getAllocationFetchPolicy();
+        return policy == null ? request.get() : policy.execute(request);
+    }
+
+    private Allocations notModified(JsonArray storedAllocations, String etag) {
+        logger.debug("The participant's allocations are not modified.");
+        metrics.increment(AscendMetrics.Counter.ALLOCATION_NOT_MODIFIED, 1);
+        if (config.getAllocationFreshnessPolicy() != null) {
+            // the allocations were just revalidated, store them again to restart their age
+            store.put(storedAllocations, etag);
+        }
+        return new Allocations(storedAllocations, config.getGson());
+    }
+
+    private Allocations storeAllocations(JsonArray fetchedAllocations, String etag,
+                                         StoredAllocations stored) {
+        JsonArray allocations = fetchedAllocations;
+        if (allocationsNotEmpty(stored.allocations)) {
+            AllocationsDiff diff = Allocations.reconcile(stored.allocations, allocations);
+            if (diff.isUnchanged() && Objects.equals(etag, stored.etag)
+                    && config.getAllocationFreshnessPolicy() == null) {
+                // nothing to write, the stored allocations' age only matters for freshness
+                logger.debug("The participant's allocations are unchanged.");
+                return new Allocations(stored.allocations, config.getGson());
+            }
+            allocations = diff.getAllocations();
+        }
+
+        if (etag != null) {
+            store.put(allocations, etag);
+        } else {
+            store.put(allocations);
+        }
+        return new Allocations(allocations, config.getGson());
+    }
+
+    static JsonArray parseAllocations(String body) {
+        return new JsonParser().parse(body).getAsJsonArray();
+    }
+
+    static JsonArray readAllocations(InputStream body) {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return new JsonParser().parse(reader).getAsJsonArray();
+    }
+
+    static ResponseBuffer bufferBody(InputStream body) throws IOException {
+        ResponseBuffer buffer = ResponseBuffer.acquire();
+        try {
+            buffer.write(body);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+
+    static JsonArray readBufferedAllocations(ResponseBuffer body) {
+        try {
+            return readAllocations(body.asInputStream());
+        } finally {
+            body.release();
+        }
+    }
+
+    Allocations resolveAllocationFailure() {
+        return resolveAllocationFailure(store.get());
+    }
+
+    private Allocations resolveAllocationFailure(JsonArray allocations) {
         logger.warn("There was an error while making an allocation request.");
 
-        JsonArray allocations = store.get();
         if (allocationsNotEmpty(allocations)) {
             logger.warn("Falling back to participant's previous allocation.");
+            metrics.increment(AscendMetrics.Counter.ALLOCATION_FALLBACK_STORED, 1);
 
             if (confirmationSandbagged) {
                 eventEmitter.confirm(allocations);
@@ -132,24 +387,41 @@ class Allocator {
                 eventEmitter.contaminate(allocations);
             }
 
+            Allocations snapshot = new Allocations(allocations, config.getGson());
             allocationStatus = AllocationStatus.RETRIEVED;
-            executionQueue.executeAllWithValuesFromAllocations(allocations);
-        } else {
-            logger.warn("Falling back to the supplied defaults.");
+            executionQueue.executeAllWithValuesFromAllocations(snapshot);
+            return snapshot;
+        }
 
-            allocationStatus = AllocationStatus.FAILED;
-            executionQueue.executeAllWithValuesFromDefaults();
+        logger.warn("Falling back to the supplied defaults.");
+        metrics.increment(AscendMetrics.Counter.ALLOCATION_FALLBACK_DEFAULT, 1);
 
-            allocations = new JsonArray();
-        }
+        allocationStatus = AllocationStatus.FAILED;
+        executionQueue.executeAllWithValuesFromDefaults();
 
-        return allocations;
+        return new Allocations(new JsonArray(), config.getGson());
     }
 
     static boolean allocationsNotEmpty(JsonArray allocations) {
         return allocations != null && allocations.size() > 0;
     }
 
+    /**
+     * The participant's stored allocations as read at the start of a fetch.
+     */
+    private static final class StoredAllocations {
+
+        private final JsonArray allocations;
+        private final String etag;
+        private final long ageMillis;
+
+        StoredAllocations(JsonArray allocations, String etag, long ageMillis) {
+            this.allocations = allocations;
+            this.etag = etag;
+            this.ageMillis = ageMillis;
+        }
+    }
+
 
 
 }
@@ -14,6 +14,90 @@ public interface AscendAllocationStore {
      */
     JsonArray get();
 
+    /**
+     * Retrieves the JsonArray stored for a participant.
+     * <p>
+     *     Used when a single store is shared by many participants, see
+     *     {@link AscendEngine}. Stores that only hold one participant's allocations
+     *     do not support it, the default throws an UnsupportedOperationException.
+     *     If there are no stored allocations, should return an empty JsonArray.
+     * </p>
+     * @param userId the participant's user id
+     * @return the participant's allocations
+     * @see #isKeyedByUserId()
+     */
+    default JsonArray get(String userId) {
+        throw new UnsupportedOperationException(
+                "This allocation store does not store allocations by user id.");
+    }
+
+    /**
+     * Tells whether the store keeps allocations by user id.
+     * <p>
+     *     Stores that implement {@link #get(String)} and {@link #put(String, JsonArray)}
+     *     must return true. Only such stores can be shared by many participants, see
+     *     {@link AscendEngine}. The default returns false.
+     * </p>
+     * @return true if the store keeps allocations by user id
+     */
+    default boolean isKeyedByUserId() {
+        return false;
+    }
+
+    /**
+     * Retrieves the ETag of the stored allocations.
+     * <p>
+     *     The ETag is the validator the Participant API sent with the allocations, it
+     *     lets the SDK request them again only if they changed. Stores that do not keep
+     *     validators can rely on the default, which returns null so the allocations are
+     *     always fetched in full.
+     * </p>
+     * @return the stored allocations' ETag, or null
+     */
+    default String getEtag() {
+        return null;
+    }
+
+    /**
+     * Retrieves the ETag of the allocations stored for a participant.
+     * <p>
+     *     Used when a single store is shared by many participants, see
+     *     {@link AscendEngine}. The default returns null.
+     * </p>
+     * @param userId the participant's user id
+     * @return the participant's allocations' ETag, or null
+     */
+    default String getEtag(String userId) {
+        return null;
+    }
+
+    /**
+     * Retrieves the time since the stored allocations were last stored.
+     * <p>
+     *     Used to serve stored allocations without a request while they are fresh, see
+     *     {@link AscendConfig.Builder#setAllocationFreshness}. Stores that do not track
+     *     when allocations were stored can rely on the default, which reports them as
+     *     infinitely old so they are always fetched.
+     * </p>
+     * @return the age of the stored allocations in milliseconds, or Long.MAX_VALUE
+     */
+    default long getAgeMillis() {
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Retrieves the time since a participant's allocations were last stored.
+     * <p>
+     *     Used when a single store is shared by many participants, see
+     *     {@link AscendEngine}. The default returns Long.MAX_VALUE.
+     * </p>
+     * @param userId the participant's user id
+     * @return the age of the participant's allocations in milliseconds, or Long.MAX_VALUE
+     */
+    default long getAgeMillis(String userId) {
+        return Long.MAX_VALUE;
+    }
+
     /**
      * Stores a JsonArray.
      * <p>
@@ -23,4 +107,48 @@ public interface AscendAllocationStore {
      */
     void put(JsonArray allocations);
 
+    /**
+     * Stores a JsonArray for a participant.
+     * <p>
+     *     Used when a single store is shared by many participants, see
+     *     {@link AscendEngine}. Stores that only hold one participant's allocations
+     *     do not support it, the default throws an UnsupportedOperationException.
+     * </p>
+     * @param userId the participant's user id
+     * @param allocations the participant's allocations
+     * @see #isKeyedByUserId()
+     */
+    default void put(String userId, JsonArray allocations) {
+        throw new UnsupportedOperationException(
+                "This allocation store does not store allocations by user id.");
+    }
+
+    /**
+     * Stores a JsonArray along with its ETag.
+     * <p>
+     *     The ETag must be returned by {@link #getEtag()} until different allocations
+     *     are stored. Stores that do not keep validators can rely on the default, which
+     *     discards the ETag.
+     * </p>
+     * @param allocations a participant's allocations
+     * @param etag the allocations' ETag
+     */
+    default void put(JsonArray allocations, String etag) {
+        put(allocations);
+    }
+
+    /**
+     * Stores a JsonArray for a participant along with its ETag.
+     * <p>
+     *     Used when a single store is shared by many participants, see
+     *     {@link AscendEngine}. The default discards the ETag.
+     * </p>
+     * @param userId the participant's user id
+     * @param allocations the participant's allocations
+     * @param etag the allocations' ETag
+     */
+    default void put(String userId, JsonArray allocations, String etag) {
+        put(userId, allocations);
+    }
+
 }
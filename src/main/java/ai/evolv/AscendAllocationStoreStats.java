@@ -0,0 +1,57 @@
+package ai.evolv;
+
+/**
+ * A point in time snapshot of an allocation store's statistics.
+ */
+public final class AscendAllocationStoreStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    AscendAllocationStoreStats(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the number of lookups that found a participant's allocations.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that found no allocations.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries removed because of size, weight or expiry.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the ratio of hits to lookups, or 1.0 when there were no lookups.
+     * @return the hit rate
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AscendAllocationStoreStats{hitCount=%d, missCount=%d, " +
+                "evictionCount=%d}", hitCount, missCount, evictionCount);
+    }
+
+}
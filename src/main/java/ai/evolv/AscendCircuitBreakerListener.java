@@ -0,0 +1,29 @@
+package ai.evolv;
+
+/**
+ * Receives the state changes of the circuit breaker around the Participant API.
+ * <p>
+ *     Listeners are called on the thread that completed the request causing the
+ *     change, they should return quickly. See
+ *     {@link AscendConfig.Builder#setCircuitBreaker}.
+ * </p>
+ */
+public interface AscendCircuitBreakerListener {
+
+    enum State {
+        /** Requests are sent, their failures are counted. */
+        CLOSED,
+        /** Requests fail fast to stored allocations or defaults. */
+        OPEN,
+        /** A few probe requests are sent to find out whether the API recovered. */
+        HALF_OPEN
+    }
+
+    /**
+     * Called after the circuit breaker changed its state.
+     * @param previous the state before the change
+     * @param current the state after the change
+     */
+    void onStateChange(State previous, State current);
+
+}
@@ -1,5 +1,10 @@
 package ai.evolv;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 public interface AscendClient {
 
     /**
@@ -9,7 +14,8 @@ public interface AscendClient {
      *     default value can also be specified in case any errors occur during the values
      *     retrieval. If the allocation call times out or fails the default value is
      *     always returned. This method is blocking, it will wait till the allocation
-     *     is available and then return.
+     *     is available and then return. Values decoded from the same allocation are
+     *     cached and shared between calls, treat them as read only.
      * </p>
      * @param key a unique key identifying a specific value in the participants
      *           allocation
@@ -19,6 +25,60 @@ public interface AscendClient {
      */
     <T> T get(String key, T defaultValue);
 
+    /**
+     * Retrieves a value from the participant's allocation, waiting at most the given time.
+     * <p>
+     *     Behaves like {@link #get(String, Object)} but blocks for no longer than the
+     *     given timeout. If the allocation is not available in time the value from the
+     *     participant's stored allocation is returned, or the default value if there is
+     *     none. The allocation request keeps running in the background.
+     * </p>
+     * <p>
+     *     The default implementation waits on {@link #getAsync(String, Object)} and
+     *     returns the default value if it does not complete in time.
+     * </p>
+     * @param key a unique key identifying a specific value in the participants
+     *           allocation
+     * @param defaultValue a default value to return upon error
+     * @param timeout the maximum time to wait for the allocation
+     * @param unit the time unit of the timeout
+     * @param <T> type of value to be returned
+     * @return a value associated with the given key
+     */
+    default <T> T get(String key, T defaultValue, long timeout, TimeUnit unit) {
+        try {
+            return getAsync(key, defaultValue).get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return defaultValue;
+        } catch (ExecutionException | TimeoutException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a value from the participant's allocation without blocking.
+     * <p>
+     *     The returned future completes with the key's associated value once the
+     *     allocation is available, or with the default value if the allocation call
+     *     times out or fails.
+     * </p>
+     * <p>
+     *     The default implementation completes the future with the first value
+     *     {@link #subscribe(String, Object, AscendAction)} applies.
+     * </p>
+     * @param key a unique key identifying a specific value in the participants
+     *           allocation
+     * @param defaultValue a default value to return upon error
+     * @param <T> type of value to be returned
+     * @return a future of the value associated with the given key
+     */
+    default <T> CompletableFuture<T> getAsync(String key, T defaultValue) {
+        CompletableFuture<T> value = new CompletableFuture<>();
+        subscribe(key, defaultValue, value::complete);
+        return value;
+    }
+
     /**
      * Retrieves a value from Ascend asynchronously and applies some custom action.
      * <p>
@@ -76,4 +136,18 @@ public interface AscendClient {
      */
     void contaminate();
 
+    /**
+     * Sends any buffered and aggregated events to Ascend.
+     * <p>
+     *     When event batching is enabled events are buffered before they are sent,
+     *     and when event aggregation is enabled events are summed over a window.
+     *     This method closes the open aggregation windows and sends the buffered
+     *     events immediately, for instance before the application shuts down. Does
+     *     nothing when neither batching nor aggregation is enabled. The default
+     *     implementation does nothing.
+     * </p>
+     */
+    default void flush() {
+    }
+
 }
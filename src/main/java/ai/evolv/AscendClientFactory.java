@@ -13,29 +13,58 @@ public class AscendClientFactory {
 
     /**
      * Creates instances of the AscendClient.
+     * <p>
+     *     A store that keeps allocations by user id, such as BoundedAscendAllocationStore,
+     *     is read and written with the participant's user id. Any other store holds a
+     *     single participant, whose user id is taken from the stored allocations.
+     * </p>
      * @param config an instance of AscendConfig
      * @return an instance of AscendClient
      */
     public static AscendClient init(AscendConfig config) {
         LOGGER.info("Initializing Ascend Client.");
 
+        AscendParticipant participant = config.getAscendParticipant();
         AscendAllocationStore store = config.getAscendAllocationStore();
-        Allocator allocator = new Allocator(config);
+        if (store.isKeyedByUserId()) {
+            return init(config, participant,
+                    new ParticipantAllocationStore(store, participant.getUserId()),
+                    config.getExecutionQueue(), false);
+        }
+
+        return init(config, participant, store, config.getExecutionQueue(), true);
+    }
+
+    /**
+     * Creates a client for a participant.
+     * @param adoptStoredUserId whether the participant takes the user id of the stored
+     *                          allocations, only a store holding a single participant's
+     *                          allocations may be trusted for it
+     */
+    static AscendClient init(AscendConfig config, AscendParticipant participant,
+                             AscendAllocationStore store, ExecutionQueue executionQueue,
+                             boolean adoptStoredUserId) {
+        EventEmitter eventEmitter = new EventEmitter(config, participant);
+        Allocator allocator = new Allocator(config, participant, store, executionQueue,
+                eventEmitter);
 
         JsonArray previousAllocations = store.get();
         boolean reconciliationNeeded = false;
         if (Allocator.allocationsNotEmpty(previousAllocations)) {
+            reconciliationNeeded = true;
+        }
+
+        if (reconciliationNeeded && adoptStoredUserId) {
             String storedUserId = previousAllocations.get(0)
                     .getAsJsonObject().get("uid")
                     .getAsString();
-            config.getAscendParticipant().setUserId(storedUserId);
-            reconciliationNeeded = true;
+            participant.setUserId(storedUserId);
         }
 
         // fetch and reconcile allocations asynchronously
-        CompletableFuture<JsonArray> fetchedAllocations = allocator.fetchAllocations();
+        CompletableFuture<Allocations> fetchedAllocations = allocator.fetchAllocations();
 
-        return new AscendClientImpl(config, new EventEmitter(config), fetchedAllocations,
-                allocator, reconciliationNeeded);
+        return new AscendClientImpl(config, store, executionQueue, eventEmitter,
+                fetchedAllocations, allocator, reconciliationNeeded);
     }
 }
@@ -3,9 +3,12 @@ package ai.evolv;
 import ai.evolv.exceptions.AscendKeyError;
 import ai.evolv.generics.GenericClass;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,17 +17,27 @@ class AscendClientImpl implements AscendClient {
     private static final Logger LOGGER = LoggerFactory.getLogger(AscendClientImpl.class);
 
     private final EventEmitter eventEmitter;
-    private final CompletableFuture<JsonArray> futureAllocations;
+    private final CompletableFuture<Allocations> futureAllocations;
     private final ExecutionQueue executionQueue;
     private final Allocator allocator;
     private final AscendAllocationStore store;
+    private final Gson gson;
     private final boolean previousAllocations;
 
     AscendClientImpl(AscendConfig config, EventEmitter emitter,
-                     CompletableFuture<JsonArray> allocations, Allocator allocator,
+                     CompletableFuture<Allocations> allocations, Allocator allocator,
                      boolean previousAllocations) {
-        this.store = config.getAscendAllocationStore();
-        this.executionQueue = config.getExecutionQueue();
+        this(config, config.getAscendAllocationStore(), config.getExecutionQueue(), emitter,
+                allocations, allocator, previousAllocations);
+    }
+
+    AscendClientImpl(AscendConfig config, AscendAllocationStore store,
+                     ExecutionQueue executionQueue, EventEmitter emitter,
+                     CompletableFuture<Allocations> allocations, Allocator allocator,
+                     boolean previousAllocations) {
+        this.store = store;
+        this.gson = config.getGson();
+        this.executionQueue = executionQueue;
         this.eventEmitter = emitter;
         this.futureAllocations = allocations;
         this.allocator = allocator;
@@ -39,13 +52,61 @@ class AscendClientImpl implements AscendClient {
             }
 
             // this is blocking
-            JsonArray allocations = futureAllocations.get();
-            if (!Allocator.allocationsNotEmpty(allocations)) {
+            Allocations allocations = futureAllocations.get();
+            return getValueOrDefault(allocations, key, defaultValue);
+        } catch (Exception e) {
+            LOGGER.error("There was as error retrieving the requested value. Returning " +
+                    "the default.", e);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public <T> T get(String key, T defaultValue, long timeout, TimeUnit unit) {
+        try {
+            if (futureAllocations == null) {
                 return defaultValue;
             }
 
+            // this is blocking for at most the given timeout
+            Allocations allocations = futureAllocations.get(timeout, unit);
+            return getValueOrDefault(allocations, key, defaultValue);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Timed out waiting for the allocation. Returning the stored value " +
+                    "or the default.");
+            return getValueOrDefault(getStoredAllocations(), key, defaultValue);
+        } catch (Exception e) {
+            LOGGER.error("There was as error retrieving the requested value. Returning " +
+                    "the default.", e);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getAsync(String key, T defaultValue) {
+        if (futureAllocations == null) {
+            return CompletableFuture.completedFuture(defaultValue);
+        }
+
+        return futureAllocations.handle((allocations, ex) -> {
+            if (ex != null) {
+                LOGGER.error("There was as error retrieving the requested value. Returning " +
+                        "the default.", ex);
+                return defaultValue;
+            }
+
+            return getValueOrDefault(allocations, key, defaultValue);
+        });
+    }
+
+    private <T> T getValueOrDefault(Allocations allocations, String key, T defaultValue) {
+        if (allocations == null || allocations.isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
             GenericClass<T> cls = new GenericClass(defaultValue.getClass());
-            return new Allocations(allocations).getValueFromGenome(key, cls.getMyType());
+            return allocations.getValueFromGenome(key, cls.getMyType());
         } catch (Exception e) {
             LOGGER.error("There was as error retrieving the requested value. Returning " +
                     "the default.", e);
@@ -58,8 +119,7 @@ class AscendClientImpl implements AscendClient {
         Execution execution = new Execution<>(key, defaultValue, function);
         if (previousAllocations) {
             try {
-                JsonArray allocations = store.get();
-                execution.executeWithAllocation(allocations);
+                execution.executeWithAllocation(getStoredAllocations());
             } catch (AscendKeyError e) {
                 LOGGER.warn("There was an error retrieving the value of %s from the allocation.",
                         execution.getKey());
@@ -73,8 +133,7 @@ class AscendClientImpl implements AscendClient {
             return;
         } else if (allocationStatus == Allocator.AllocationStatus.RETRIEVED) {
             try {
-                JsonArray allocations = store.get();
-                execution.executeWithAllocation(allocations);
+                execution.executeWithAllocation(getStoredAllocations());
                 return;
             } catch (AscendKeyError e) {
                 LOGGER.warn("There was an error retrieving the value of %s from the allocation.",
@@ -85,6 +144,22 @@ class AscendClientImpl implements AscendClient {
         execution.executeWithDefault();
     }
 
+    /**
+     * Wraps the stored allocations in a snapshot, reusing the fetched snapshot's
+     * index when the store still holds the same allocations.
+     */
+    private Allocations getStoredAllocations() {
+        JsonArray allocations = store.get();
+        if (futureAllocations != null && futureAllocations.isDone()
+                && !futureAllocations.isCompletedExceptionally()) {
+            Allocations fetched = futureAllocations.join();
+            if (fetched != null && fetched.getRawAllocations() == allocations) {
+                return fetched;
+            }
+        }
+        return new Allocations(allocations, gson);
+    }
+
     @Override
     public void emitEvent(String key, Double score) {
         this.eventEmitter.emit(key, score);
@@ -114,4 +189,9 @@ class AscendClientImpl implements AscendClient {
             eventEmitter.contaminate(store.get());
         }
     }
+
+    @Override
+    public void flush() {
+        eventEmitter.flush();
+    }
 }
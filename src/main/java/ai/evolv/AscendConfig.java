@@ -1,43 +1,124 @@
 package ai.evolv;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class AscendConfig {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AscendConfig.class);
+
     static final String DEFAULT_HTTP_SCHEME = "https";
     static final String DEFAULT_DOMAIN = "participants.evolv.ai";
     static final String DEFAULT_API_VERSION = "v1";
-    static final AscendAllocationStore DEFAULT_ALLOCATION_STORE =
-            new DefaultAscendAllocationStore();
     static final AscendParticipant DEFAULT_ASCEND_PARTICIPANT =
             new AscendParticipant.Builder().build();
+    static final Gson DEFAULT_GSON = new Gson();
+    static final int DEFAULT_EVENT_BATCH_SIZE = 1;
+    static final long DEFAULT_EVENT_BATCH_LINGER_MILLIS = 0;
+    static final double DEFAULT_RETRY_RATIO = 0.1;
+    static final int DEFAULT_MAX_RETRIES = 10;
 
     private final String httpScheme;
     private final String domain;
     private final String version;
     private final String environmentId;
+    private final String allocationsUrl;
+    private final String eventsUrl;
     private final AscendAllocationStore ascendAllocationStore;
     private final AscendParticipant ascendParticipant;
     private final HttpClient httpClient;
     private final ExecutionQueue executionQueue;
+    private final Gson gson;
+    private final EventBatcher eventBatcher;
+    private final EventOutbox eventOutbox;
+    private final EventSampler eventSampler;
+    private final EventAggregator eventAggregator;
+    private final AllocationFetchCoalescer allocationFetchCoalescer;
+    private final AscendMetrics metrics;
+    private final Executor decodeExecutor;
+    private final Executor callbackExecutor;
+    private final AllocationFreshnessPolicy allocationFreshnessPolicy;
+    private final AllocationFetchPolicy allocationFetchPolicy;
+    private final AllocationCircuitBreaker allocationCircuitBreaker;
 
     private AscendConfig(String httpScheme, String domain, String version,
                          String environmentId,
                          AscendAllocationStore ascendAllocationStore,
                          AscendParticipant ascendParticipant,
-                         HttpClient httpClient) {
+                         HttpClient httpClient, Gson gson,
+                         int eventBatchSize, long eventBatchLingerMillis,
+                         EventOutbox eventOutbox, EventSampler eventSampler,
+                         Map<String, Long> eventAggregationWindows,
+                         Set<String> eventAggregationQuantiles,
+                         AscendMetrics metrics, Executor decodeExecutor,
+                         Executor callbackExecutor,
+                         AllocationFreshnessPolicy allocationFreshnessPolicy,
+                         AllocationFetchPolicy allocationFetchPolicy,
+                         AllocationCircuitBreaker allocationCircuitBreaker,
+                         AllocationFetchCoalescer allocationFetchCoalescer) {
         this.httpScheme = httpScheme;
         this.domain = domain;
         this.version = version;
         this.environmentId = environmentId;
+        this.allocationsUrl = createEndpointUrl(httpScheme, domain, version, environmentId,
+                "allocations");
+        this.eventsUrl = createEndpointUrl(httpScheme, domain, version, environmentId,
+                "events");
         this.ascendAllocationStore = ascendAllocationStore;
         this.ascendParticipant = ascendParticipant;
-        this.httpClient = httpClient;
-        this.executionQueue = new ExecutionQueue();
+        this.metrics = metrics;
+        this.httpClient = NoopAscendMetrics.isEnabled(metrics)
+                ? new MeteredHttpClient(httpClient, metrics) : httpClient;
+        this.executionQueue = new ExecutionQueue(metrics);
+        this.gson = gson;
+        this.eventBatcher = eventBatchSize > 1
+                ? new EventBatcher(this, eventBatchSize, eventBatchLingerMillis) : null;
+        this.eventOutbox = eventOutbox;
+        this.eventSampler = eventSampler;
+        this.eventAggregator = eventAggregationWindows.isEmpty() ? null
+                : new EventAggregator(this, eventAggregationWindows, eventAggregationQuantiles,
+                        EventAggregator.DEFAULT_MAX_PARTICIPANTS);
+        if (eventOutbox != null) {
+            eventOutbox.start(this.httpClient, eventsUrl, metrics);
+        }
+        this.allocationFetchCoalescer = allocationFetchCoalescer;
+        this.decodeExecutor = decodeExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.allocationFreshnessPolicy = allocationFreshnessPolicy;
+        this.allocationFetchPolicy = allocationFetchPolicy;
+        this.allocationCircuitBreaker = allocationCircuitBreaker;
     }
 
     public static Builder builder(String environmentId, HttpClient httpClient) {
         return new Builder(environmentId, httpClient);
     }
 
+    private static String createEndpointUrl(String httpScheme, String domain, String version,
+                                            String environmentId, String endpoint) {
+        try {
+            String path = String.format("//%s/%s/%s/%s", domain, version, environmentId,
+                    endpoint);
+            URI uri = new URI(httpScheme, null, path, null, null);
+
+            return uri.toURL().toString();
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage());
+            return null;
+        }
+    }
+
     String getHttpScheme() {
         return httpScheme;
     }
@@ -54,6 +135,22 @@ public class AscendConfig {
         return environmentId;
     }
 
+    /**
+     * Returns the url of the environment's allocations endpoint, without a query string.
+     * @return the allocations url
+     */
+    String getAllocationsUrl() {
+        return allocationsUrl;
+    }
+
+    /**
+     * Returns the url of the environment's events endpoint, without a query string.
+     * @return the events url
+     */
+    String getEventsUrl() {
+        return eventsUrl;
+    }
+
     AscendAllocationStore getAscendAllocationStore() {
         return ascendAllocationStore;
     }
@@ -70,17 +167,94 @@ public class AscendConfig {
         return this.executionQueue;
     }
 
+    Gson getGson() {
+        return this.gson;
+    }
+
+    EventBatcher getEventBatcher() {
+        return this.eventBatcher;
+    }
+
+    EventOutbox getEventOutbox() {
+        return this.eventOutbox;
+    }
+
+    EventSampler getEventSampler() {
+        return this.eventSampler;
+    }
+
+    EventAggregator getEventAggregator() {
+        return this.eventAggregator;
+    }
+
+    AllocationFetchCoalescer getAllocationFetchCoalescer() {
+        return this.allocationFetchCoalescer;
+    }
+
+    AscendMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    Executor getDecodeExecutor() {
+        return this.decodeExecutor;
+    }
+
+    Executor getCallbackExecutor() {
+        return this.callbackExecutor;
+    }
+
+    AllocationFreshnessPolicy getAllocationFreshnessPolicy() {
+        return this.allocationFreshnessPolicy;
+    }
+
+    AllocationFetchPolicy getAllocationFetchPolicy() {
+        return this.allocationFetchPolicy;
+    }
+
+    AllocationCircuitBreaker getAllocationCircuitBreaker() {
+        return this.allocationCircuitBreaker;
+    }
+
     public static class Builder {
 
         private String httpScheme = DEFAULT_HTTP_SCHEME;
         private String domain = DEFAULT_DOMAIN;
         private String version = DEFAULT_API_VERSION;
-        private AscendAllocationStore ascendAllocationStore = DEFAULT_ALLOCATION_STORE;
+        private AscendAllocationStore ascendAllocationStore = new DefaultAscendAllocationStore();
         private AscendParticipant ascendParticipant = DEFAULT_ASCEND_PARTICIPANT;
+        private int eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+        private long eventBatchLingerMillis = DEFAULT_EVENT_BATCH_LINGER_MILLIS;
+        private EventOutbox eventOutbox;
+        private AscendMetrics metrics = AscendMetrics.noop();
+        private Executor decodeExecutor;
+        private Executor callbackExecutor;
+        private long allocationTimeToLiveMillis;
+        private long allocationStaleWhileRevalidateMillis;
+        private long allocationEarlyRefreshMillis;
+        private int allocationMaxAttempts = 1;
+        private long allocationBaseBackoffMillis;
+        private long allocationMaxBackoffMillis;
+        private boolean allocationHedging;
+        private long allocationMinHedgeDelayMillis;
+        private double retryRatio = DEFAULT_RETRY_RATIO;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private double circuitBreakerFailureRate;
+        private int circuitBreakerWindowSize;
+        private long circuitBreakerOpenNanos;
+        private AscendCircuitBreakerListener circuitBreakerListener;
 
         private String environmentId;
         private HttpClient httpClient;
 
+        private final Map<Class<?>, TypeAdapter<?>> typeAdapters = new LinkedHashMap<>();
+        private final Map<String, Double> eventSamplingRates = new LinkedHashMap<>();
+        private final Map<String, Double> eventRateLimits = new LinkedHashMap<>();
+        private final Map<String, Integer> eventRateBursts = new LinkedHashMap<>();
+        private final Map<String, Long> eventAggregationWindows = new LinkedHashMap<>();
+        private final Set<String> eventAggregationQuantiles = new HashSet<>();
+        private double eventRateCeiling;
+        private int eventRateCeilingBurst;
+
         /**
          * Responsible for creating an instance of AscendClientImpl.
          * <p>
@@ -116,7 +290,8 @@ public class AscendConfig {
 
         /**
          * Sets up a custom AscendAllocationStore. Store needs to implement the
-         * AscendAllocationStore interface.
+         * AscendAllocationStore interface. By default each builder creates its own
+         * in-memory store, which holds a single participant's allocations.
          * @param ascendAllocationStore a custom built allocation store
          * @return AscendClientBuilder class
          */
@@ -145,13 +320,453 @@ public class AscendConfig {
             return this;
         }
 
+        /**
+         * Registers a Gson TypeAdapter used to decode genome values of the given type.
+         * <p>
+         *     Use this to read your own POJOs from the allocation genome without
+         *     relying on reflective decoding.
+         * </p>
+         * @param type the type the adapter decodes
+         * @param typeAdapter the adapter for the given type
+         * @param <T> the type the adapter decodes
+         * @return AscendClientBuilder class
+         */
+        public <T> Builder registerTypeAdapter(Class<T> type, TypeAdapter<T> typeAdapter) {
+            this.typeAdapters.put(type, typeAdapter);
+            return this;
+        }
+
+        /**
+         * Sends events in batches instead of one request per event.
+         * <p>
+         *     Events are buffered and posted to the events endpoint together once
+         *     the batch holds maxBatchSize events or the oldest buffered event has
+         *     waited maxLingerMillis. Requires an HttpClient that supports POST
+         *     requests. A batch size of one disables batching.
+         * </p>
+         * @param maxBatchSize the maximum number of events sent in one request
+         * @param maxLingerMillis the maximum time an event waits in the buffer
+         * @return AscendClientBuilder class
+         * @throws IllegalArgumentException if maxBatchSize is less than one or
+         *                                  maxLingerMillis is negative
+         */
+        public Builder setEventBatching(int maxBatchSize, long maxLingerMillis) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("maxBatchSize must be at least 1.");
+            }
+            if (maxLingerMillis < 0) {
+                throw new IllegalArgumentException("maxLingerMillis must not be negative.");
+            }
+
+            this.eventBatchSize = maxBatchSize;
+            this.eventBatchLingerMillis = maxLingerMillis;
+            return this;
+        }
+
+        /**
+         * Logs events to a durable outbox on local disk before they are sent.
+         * <p>
+         *     Events are sent in batches from the outbox by a background thread, and
+         *     events that could not be sent yet survive outages and restarts. Requires
+         *     an HttpClient that supports POST requests. An outbox takes precedence over
+         *     event batching. It can be shared by every AscendConfig of one environment,
+         *     and sends with the HttpClient of the first config built with it.
+         * </p>
+         * @param eventOutbox an EventOutbox opened on a local directory
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventOutbox(EventOutbox eventOutbox) {
+            this.eventOutbox = eventOutbox;
+            return this;
+        }
+
+        /**
+         * Sends only a sample of the custom events with the given key.
+         * <p>
+         *     Whether an event is sent depends only on the participant's user id and the
+         *     key, so a participant's events of that key are either all sent or none
+         *     are. Sent events carry a weight of 1 / samplingRate to scale totals back up.
+         *     Confirmations and contaminations are never sampled.
+         * </p>
+         * @param key the event key
+         * @param samplingRate the share of participants whose events are sent, from 0 to 1
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventSampling(String key, double samplingRate) {
+            this.eventSamplingRates.put(key, samplingRate);
+            return this;
+        }
+
+        /**
+         * Limits the rate at which custom events with the given key are sent, across
+         * all participants. The limit is shared by every config of the environment
+         * with the same limit. Events over the limit are dropped and counted.
+         * @param key the event key
+         * @param eventsPerSecond the sustained rate of events
+         * @param burst the number of events that may be sent at once
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventRateLimit(String key, double eventsPerSecond, int burst) {
+            this.eventRateLimits.put(key, eventsPerSecond);
+            this.eventRateBursts.put(key, burst);
+            return this;
+        }
+
+        /**
+         * Limits the rate at which custom events of every key together are sent. The
+         * ceiling is shared by every config of the environment with the same ceiling.
+         * Events over the ceiling are dropped and counted.
+         * @param eventsPerSecond the sustained rate of events
+         * @param burst the number of events that may be sent at once
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventRateCeiling(double eventsPerSecond, int burst) {
+            this.eventRateCeiling = eventsPerSecond;
+            this.eventRateCeilingBurst = burst;
+            return this;
+        }
+
+        /**
+         * Summarizes the scores of custom events with the given key instead of sending
+         * each of them.
+         * <p>
+         *     Each participant's scores are collected for one window, then a single
+         *     event is sent with their sum as its score, along with their count, min and
+         *     max. The window opens with the first score of the key.
+         * </p>
+         * @param key the event key
+         * @param window the length of the window
+         * @param unit the unit of the window
+         * @return AscendClientBuilder class
+         */
+        public Builder setEventAggregation(String key, long window, TimeUnit unit) {
+            return setEventAggregation(key, window, unit, false);
+        }
+
+        /**
+         * Summarizes the scores of custom events with the given key instead of sending
+         * each of them, optionally with estimates of their 50th, 90th and 99th
+         * percentiles, sent as p50, p90 and p99. The estimates are within about 5% of
+         * the actual scores. Each participant's sketch only spans the range of its
+         * scores, from about 50 bytes for scores within a factor of two of each other
+         * to at most 1 KB.
+         * @param key the event key
+         * @param window the length of the window
+         * @param unit the unit of the window
+         * @param quantiles whether to estimate the percentiles of the scores
+         * @return AscendClientBuilder class
+         * @see #setEventAggregation(String, long, TimeUnit)
+         */
+        public Builder setEventAggregation(String key, long window, TimeUnit unit,
+                                           boolean quantiles) {
+            this.eventAggregationWindows.put(key, unit.toMillis(window));
+            if (quantiles) {
+                this.eventAggregationQuantiles.add(key);
+            } else {
+                this.eventAggregationQuantiles.remove(key);
+            }
+            return this;
+        }
+
+        /**
+         * Sets up the AscendMetrics that receive the SDK's latencies, counters and
+         * gauges. By default nothing is recorded.
+         * @param metrics an AscendMetrics implementation, such as HistogramAscendMetrics
+         * @return AscendClientBuilder class
+         */
+        public Builder setMetrics(AscendMetrics metrics) {
+            this.metrics = metrics != null ? metrics : AscendMetrics.noop();
+            return this;
+        }
+
+        /**
+         * Sets the executor that parses, reconciles and stores fetched allocations.
+         * <p>
+         *     By default this work runs on the thread that completes the allocation
+         *     request, usually one of the http client's I/O threads. A task the
+         *     executor rejects fails the fetch, which then falls back to the stored
+         *     allocations or the supplied defaults.
+         * </p>
+         * @param decodeExecutor the executor for decoding allocation responses
+         * @return AscendClientBuilder class
+         * @see AscendExecutors
+         */
+        public Builder setDecodeExecutor(Executor decodeExecutor) {
+            this.decodeExecutor = decodeExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs subscribed AscendActions once allocations are
+         * fetched.
+         * <p>
+         *     By default actions run on the thread that completes the allocation
+         *     request. If the executor rejects them, the actions run on that thread
+         *     instead, so subscribed actions always run. Actions that block can run on
+         *     virtual threads with
+         *     {@code AscendExecutors.bounded(AscendExecutors.newVirtualThreadPerTaskExecutor(),
+         *     maxPendingCallbacks)} on Java 21 or later.
+         * </p>
+         * @param callbackExecutor the executor for subscribed actions
+         * @return AscendClientBuilder class
+         * @see AscendExecutors
+         */
+        public Builder setCallbackExecutor(Executor callbackExecutor) {
+            this.callbackExecutor = callbackExecutor;
+            return this;
+        }
+
+        /**
+         * Serves stored allocations without waiting for the Participant API.
+         * <p>
+         *     Allocations stored less than timeToLive ago are used without a request.
+         *     For the staleWhileRevalidate period after that, they are used right away
+         *     while fresh allocations are fetched and stored in the background. Older
+         *     allocations are fetched before they are used, as are all allocations by
+         *     default. Requires an allocation store that reports the age of its
+         *     allocations, such as the default store or BoundedAscendAllocationStore.
+         * </p>
+         * @param timeToLive how long stored allocations are used without a request
+         * @param staleWhileRevalidate how long after that they are used while refreshing
+         * @param unit the time unit of both durations
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationFreshness(long timeToLive, long staleWhileRevalidate,
+                                              TimeUnit unit) {
+            this.allocationTimeToLiveMillis = unit.toMillis(timeToLive);
+            this.allocationStaleWhileRevalidateMillis = unit.toMillis(staleWhileRevalidate);
+            return this;
+        }
+
+        /**
+         * Refreshes fresh allocations in the background shortly before they go stale.
+         * <p>
+         *     Within the window before the time to live ends, each client created for
+         *     the participant refreshes the allocations with a chance that grows with
+         *     their age. Participants seen often are refreshed early, one request at a
+         *     time, rather than all going stale together.
+         * </p>
+         * @param window the period before the time to live ends
+         * @param unit the time unit of the window
+         * @return AscendClientBuilder class
+         * @see #setAllocationFreshness(long, long, TimeUnit)
+         */
+        public Builder setAllocationEarlyRefresh(long window, TimeUnit unit) {
+            this.allocationEarlyRefreshMillis = unit.toMillis(window);
+            return this;
+        }
+
+        /**
+         * Retries failed allocation requests before falling back to stored allocations
+         * or defaults.
+         * <p>
+         *     Each retry waits a random time between zero and a cap that starts at
+         *     baseBackoff and doubles with every attempt, up to maxBackoff. Retries are
+         *     limited by the retry budget, see
+         *     {@link #setAllocationRetryBudget(double, int)}.
+         * </p>
+         * @param maxAttempts the maximum number of requests per fetch, including the first
+         * @param baseBackoff the backoff cap of the first retry
+         * @param maxBackoff the largest backoff cap
+         * @param unit the time unit of the backoffs
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationRetries(int maxAttempts, long baseBackoff, long maxBackoff,
+                                            TimeUnit unit) {
+            this.allocationMaxAttempts = maxAttempts;
+            this.allocationBaseBackoffMillis = unit.toMillis(baseBackoff);
+            this.allocationMaxBackoffMillis = unit.toMillis(maxBackoff);
+            return this;
+        }
+
+        /**
+         * Hedges slow allocation requests.
+         * <p>
+         *     Once a request has been outstanding for longer than the 95th percentile of
+         *     recent allocation response times of the environment, which configs share,
+         *     and at least minDelay, a second request
+         *     is sent and the first successful response is used. Hedged requests count
+         *     against the retry budget.
+         * </p>
+         * @param minDelay the shortest time to wait before hedging
+         * @param unit the time unit of the delay
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationHedging(long minDelay, TimeUnit unit) {
+            this.allocationHedging = true;
+            this.allocationMinHedgeDelayMillis = unit.toMillis(minDelay);
+            return this;
+        }
+
+        /**
+         * Limits the retries and hedged requests of allocation fetches.
+         * <p>
+         *     Every allocation fetch adds retryRatio of a retry to the budget, up to
+         *     maxRetries, and every retry or hedged request spends one. The budget starts
+         *     empty and is shared by every config of the environment built with the same
+         *     budget. By default a tenth of a retry is added, up to ten retries.
+         * </p>
+         * @param retryRatio the fraction of a retry each fetch adds to the budget
+         * @param maxRetries the most retries the budget can hold
+         * @return AscendClientBuilder class
+         */
+        public Builder setAllocationRetryBudget(double retryRatio, int maxRetries) {
+            this.retryRatio = retryRatio;
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Fails allocation requests fast while the Participant API is failing.
+         * <p>
+         *     Once failureRate of the last windowSize allocation fetches of the
+         *     environment failed, new fetches resolve to the participant's stored
+         *     allocations or the supplied defaults without a request. After openDuration
+         *     a few probe requests are sent, and the breaker closes again when they all
+         *     succeed. The breaker is shared by every config of the environment built
+         *     with the same settings.
+         * </p>
+         * @param failureRate the share of failed fetches that opens the breaker, up to 1
+         * @param windowSize the number of recent fetches the failure rate is taken over
+         * @param openDuration how long requests fail fast before probing the API
+         * @param unit the time unit of the open duration
+         * @return AscendClientBuilder class
+         */
+        public Builder setCircuitBreaker(double failureRate, int windowSize, long openDuration,
+                                         TimeUnit unit) {
+            this.circuitBreakerFailureRate = failureRate;
+            this.circuitBreakerWindowSize = windowSize;
+            this.circuitBreakerOpenNanos = unit.toNanos(openDuration);
+            return this;
+        }
+
+        /**
+         * Sets up a listener for the state changes of the circuit breaker.
+         * <p>
+         *     The breaker is shared by the configs of the environment, each of them adds
+         *     its listener to it. A listener is added once however many configs set it,
+         *     so reuse one listener instance when building a config per participant.
+         * </p>
+         * @param listener receives the circuit breaker's state changes
+         * @return AscendClientBuilder class
+         * @see #setCircuitBreaker(double, int, long, TimeUnit)
+         */
+        public Builder setCircuitBreakerListener(AscendCircuitBreakerListener listener) {
+            this.circuitBreakerListener = listener;
+            return this;
+        }
+
+        private EventSampler buildEventSampler(EnvironmentScope scope) {
+            if (eventSamplingRates.isEmpty() && eventRateLimits.isEmpty()
+                    && eventRateCeilingBurst == 0) {
+                return null;
+            }
+
+            // the buckets limit the environment, not one config, so they are shared
+            Map<String, TokenBucket> rateLimits = new LinkedHashMap<>();
+            for (Map.Entry<String, Double> entry : eventRateLimits.entrySet()) {
+                String key = entry.getKey();
+                double rate = entry.getValue();
+                int burst = eventRateBursts.get(key);
+                rateLimits.put(key, scope.share(() -> new TokenBucket(rate, burst),
+                        "eventRateLimit", key, rate, burst));
+            }
+            TokenBucket ceiling = eventRateCeilingBurst == 0 ? null
+                    : scope.share(() -> new TokenBucket(eventRateCeiling, eventRateCeilingBurst),
+                            "eventRateCeiling", eventRateCeiling, eventRateCeilingBurst);
+            return new EventSampler(eventSamplingRates, rateLimits, ceiling, metrics);
+        }
+
+        private AllocationCircuitBreaker buildAllocationCircuitBreaker(EnvironmentScope scope) {
+            if (circuitBreakerWindowSize == 0) {
+                return null;
+            }
+
+            AllocationCircuitBreaker breaker = scope.share(() -> new AllocationCircuitBreaker(
+                    circuitBreakerFailureRate, circuitBreakerWindowSize, circuitBreakerOpenNanos,
+                    AllocationCircuitBreaker.DEFAULT_HALF_OPEN_PROBES, null, System::nanoTime),
+                    "circuitBreaker", circuitBreakerFailureRate, circuitBreakerWindowSize,
+                    circuitBreakerOpenNanos);
+            if (circuitBreakerListener != null) {
+                breaker.addListener(circuitBreakerListener);
+            }
+            return breaker;
+        }
+
+        private AllocationFetchPolicy buildAllocationFetchPolicy(EnvironmentScope scope) {
+            if (allocationMaxAttempts <= 1 && !allocationHedging) {
+                return null;
+            }
+
+            RetryBudget budget = scope.share(() -> new RetryBudget(retryRatio, maxRetries),
+                    "retryBudget", retryRatio, maxRetries);
+            AllocationFetchPolicy.ResponseTimes responseTimes =
+                    scope.share(AllocationFetchPolicy.ResponseTimes::new, "responseTimes");
+            return new AllocationFetchPolicy(allocationMaxAttempts,
+                    allocationBaseBackoffMillis, allocationMaxBackoffMillis,
+                    allocationHedging, allocationMinHedgeDelayMillis, budget, responseTimes,
+                    metrics);
+        }
+
+        private AllocationFreshnessPolicy buildAllocationFreshnessPolicy() {
+            if (allocationTimeToLiveMillis == 0 && allocationStaleWhileRevalidateMillis == 0) {
+                return null;
+            }
+
+            return new AllocationFreshnessPolicy(allocationTimeToLiveMillis,
+                    allocationStaleWhileRevalidateMillis, allocationEarlyRefreshMillis);
+        }
+
+        private Gson buildGson() {
+            if (typeAdapters.isEmpty()) {
+                return DEFAULT_GSON;
+            }
+
+            GsonBuilder gsonBuilder = new GsonBuilder();
+            for (Map.Entry<Class<?>, TypeAdapter<?>> entry : typeAdapters.entrySet()) {
+                gsonBuilder.registerTypeAdapter(entry.getKey(), entry.getValue());
+            }
+            return gsonBuilder.create();
+        }
+
+        /**
+         * Tells whether the HttpClient implements POST requests rather than relying on
+         * the default, which always fails.
+         */
+        private static boolean supportsPost(HttpClient httpClient) {
+            try {
+                return httpClient.getClass().getMethod("post", String.class, String.class)
+                        .getDeclaringClass() != HttpClient.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
         /**
          * Builds an instance of AscendClientImpl.
          * @return an AscendClientImpl instance
+         * @throws IllegalStateException if event batching or an event outbox is set up
+         *                               with an HttpClient that does not support POST
+         *                               requests, or if the event outbox already sends
+         *                               the events of another environment
          */
         public AscendConfig build() {
+            if ((eventBatchSize > 1 || eventOutbox != null) && !supportsPost(httpClient)) {
+                throw new IllegalStateException("Event batching and the event outbox " +
+                        "require an HttpClient that supports POST requests.");
+            }
+
+            EnvironmentScope scope = EnvironmentScope.of(httpScheme, domain, version,
+                    environmentId);
             return new AscendConfig(httpScheme, domain, version,
-                    environmentId, ascendAllocationStore, ascendParticipant, httpClient);
+                    environmentId, ascendAllocationStore, ascendParticipant, httpClient,
+                    buildGson(), eventBatchSize, eventBatchLingerMillis, eventOutbox,
+                    buildEventSampler(scope), new LinkedHashMap<>(eventAggregationWindows),
+                    new HashSet<>(eventAggregationQuantiles), metrics, decodeExecutor,
+                    callbackExecutor,
+                    buildAllocationFreshnessPolicy(), buildAllocationFetchPolicy(scope),
+                    buildAllocationCircuitBreaker(scope),
+                    scope.share(AllocationFetchCoalescer::new, "allocationFetchCoalescer"));
         }
 
     }
@@ -0,0 +1,137 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares one environment's configuration between many participants.
+ * <p>
+ *     The engine holds everything that is scoped to an environment: the HttpClient,
+ *     the Gson codec, the allocation store and the event pipeline. Clients for
+ *     individual participants are created with {@link #forParticipant(String, String)}
+ *     and only carry the participant's own state, so creating one per request is
+ *     cheap. The allocation store is shared and is read and written by user id.
+ *     Concurrent clients for the same participant share a single allocation request,
+ *     which separately built configs of the classic flow do not.
+ * </p>
+ */
+public class AscendEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AscendEngine.class);
+
+    static final int DEFAULT_PREFETCH_CONCURRENCY = 16;
+
+    private final AscendConfig config;
+    private final AscendAllocationStore store;
+
+    private AscendEngine(AscendConfig config, AscendAllocationStore store) {
+        this.config = config;
+        this.store = store;
+    }
+
+    /**
+     * Creates an engine for the environment described by the given config.
+     * <p>
+     *     The participant set on the config is ignored, participants are supplied
+     *     to {@link #forParticipant(String, String)} instead.
+     * </p>
+     * <p>
+     *     The config's allocation store must keep allocations by user id, see
+     *     {@link AscendAllocationStore#isKeyedByUserId()}. If the config has the
+     *     default store, which holds a single participant, the engine uses a
+     *     {@link BoundedAscendAllocationStore} of default size instead.
+     * </p>
+     * @param config an instance of AscendConfig
+     * @return an instance of AscendEngine
+     * @throws IllegalArgumentException if the allocation store does not keep
+     *                                  allocations by user id
+     */
+    public static AscendEngine init(AscendConfig config) {
+        LOGGER.info("Initializing Ascend Engine.");
+        AscendAllocationStore store = config.getAscendAllocationStore();
+        if (store instanceof DefaultAscendAllocationStore) {
+            store = BoundedAscendAllocationStore.builder().build();
+        } else if (!store.isKeyedByUserId()) {
+            throw new IllegalArgumentException("AscendEngine requires an allocation store " +
+                    "that stores allocations by user id.");
+        }
+        return new AscendEngine(config, store);
+    }
+
+    /**
+     * Creates a client for a single participant.
+     * <p>
+     *     The client starts fetching the participant's allocations immediately,
+     *     using the participant's stored allocations while the request is in flight.
+     * </p>
+     * @param userId the participant's user id
+     * @param sessionId the participant's session id
+     * @return an instance of AscendClient
+     */
+    public AscendClient forParticipant(String userId, String sessionId) {
+        AscendParticipant participant = new AscendParticipant(userId, sessionId);
+        return AscendClientFactory.init(config, participant,
+                new ParticipantAllocationStore(store, userId),
+                new ExecutionQueue(config.getMetrics()), false);
+    }
+
+    /**
+     * Fetches and stores the allocations of many participants ahead of time.
+     * <p>
+     *     At most {@value #DEFAULT_PREFETCH_CONCURRENCY} requests are in flight at once.
+     * </p>
+     * @param participants the participants to fetch allocations for
+     * @return a future of each participant's allocations keyed by user id
+     * @see #prefetch(Collection, int)
+     */
+    public CompletableFuture<Map<String, JsonArray>> prefetch(
+            Collection<AscendParticipant> participants) {
+        return prefetch(participants, DEFAULT_PREFETCH_CONCURRENCY);
+    }
+
+    /**
+     * Fetches and stores the allocations of many participants ahead of time.
+     * <p>
+     *     Requests are pipelined over the engine's HttpClient with at most maxConcurrency
+     *     of them in flight, so its connections are reused across participants. The
+     *     fetched allocations are reconciled and written to the allocation store, but
+     *     no confirmation or contamination events are sent. If a participant's request
+     *     fails, the result holds their stored allocations instead, or an empty array
+     *     if none are stored. The returned future never completes exceptionally.
+     * </p>
+     * @param participants the participants to fetch allocations for
+     * @param maxConcurrency the maximum number of requests in flight
+     * @return a future of each participant's allocations keyed by user id
+     */
+    public CompletableFuture<Map<String, JsonArray>> prefetch(
+            Collection<AscendParticipant> participants, int maxConcurrency) {
+        return new AllocationPrefetcher(participants, this::prefetchParticipant, store::get)
+                .start(maxConcurrency);
+    }
+
+    /**
+     * Returns the number of allocation requests that were not sent because an
+     * identical request for the same participant was already in flight. Requests are
+     * coalesced across every AscendConfig of the environment, the count covers them
+     * all. The metrics also receive it as ALLOCATION_COALESCED.
+     * @return the number of coalesced allocation requests
+     */
+    public long getCoalescedFetchCount() {
+        return config.getAllocationFetchCoalescer().getCoalescedCount();
+    }
+
+    private CompletableFuture<Allocations> prefetchParticipant(AscendParticipant participant) {
+        AscendAllocationStore participantStore =
+                new ParticipantAllocationStore(store, participant.getUserId());
+        Allocator allocator = new Allocator(config, participant, participantStore,
+                new ExecutionQueue(config.getMetrics()), new EventEmitter(config, participant));
+        return allocator.prefetchAllocations();
+    }
+
+}
@@ -0,0 +1,159 @@
+package ai.evolv;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Executors for the work the SDK does once an allocation response arrives.
+ * <p>
+ *     Parsing, reconciling and storing allocations can run on a decode executor, the
+ *     subscribed AscendActions on a callback executor. Unless they are configured,
+ *     both run on the thread that completes the allocation request. With executors,
+ *     a slow action cannot stall the requests of other participants, and an executor
+ *     that rejects a task never blocks the http client's I/O thread: a rejected decode
+ *     fails the fetch, rejected actions run on the thread completing it.
+ * </p>
+ */
+public final class AscendExecutors {
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+            findVirtualThreadPerTaskExecutor();
+
+    private AscendExecutors() {}
+
+    /**
+     * Limits the tasks that are queued or running on an executor.
+     * <p>
+     *     Once maxPendingTasks are pending, the returned executor rejects further
+     *     tasks with a RejectedExecutionException until one of them finishes.
+     * </p>
+     * @param executor the executor running the tasks
+     * @param maxPendingTasks the maximum number of queued or running tasks
+     * @return an executor rejecting tasks beyond the limit
+     */
+    public static Executor bounded(Executor executor, int maxPendingTasks) {
+        return new BoundedExecutor(executor, maxPendingTasks);
+    }
+
+    /**
+     * Returns whether this JVM can start virtual threads, they require Java 21.
+     * @return true if virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that runs every task on a new virtual thread.
+     * <p>
+     *     Suited to the callback executor when actions block. Combine it with
+     *     {@link #bounded(Executor, int)} to limit the number of pending callbacks.
+     * </p>
+     * @return an executor starting a virtual thread per task
+     * @throws UnsupportedOperationException if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available.",
+                    e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new UnsupportedOperationException("Virtual threads are not available.", e);
+        }
+    }
+
+    static Executor directExecutor() {
+        return DIRECT_EXECUTOR;
+    }
+
+    /**
+     * Returns the given executor, or one running tasks on the calling thread if there
+     * is none.
+     * @param executor a configured executor, possibly null
+     * @return a non null executor
+     */
+    static Executor orDirect(Executor executor) {
+        return executor != null ? executor : DIRECT_EXECUTOR;
+    }
+
+    /**
+     * Applies fn to the outcome of source on the executor.
+     * <p>
+     *     Unlike {@link CompletableFuture#handleAsync(BiFunction, Executor)}, a task the
+     *     executor rejects fails the returned future instead of being thrown at the
+     *     thread completing source.
+     * </p>
+     * @param source the stage to follow
+     * @param fn computes the result from the outcome of source
+     * @param executor the executor running fn
+     * @param <T> the type of the outcome of source
+     * @param <U> the type of the result
+     * @return a future of the result of fn
+     */
+    static <T, U> CompletableFuture<U> handleAsync(CompletableFuture<T> source,
+            BiFunction<? super T, Throwable, ? extends U> fn, Executor executor) {
+        if (executor == DIRECT_EXECUTOR) {
+            return source.handle(fn);
+        }
+
+        CompletableFuture<U> result = new CompletableFuture<>();
+        source.whenComplete((value, ex) -> {
+            try {
+                executor.execute(() -> {
+                    try {
+                        result.complete(fn.apply(value, ex));
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Applies fn to the value of source on the executor, like
+     * {@link #handleAsync(CompletableFuture, BiFunction, Executor)}.
+     * @param source the stage to follow
+     * @param fn computes the result from the value of source
+     * @param executor the executor running fn
+     * @param <T> the type of the value of source
+     * @param <U> the type of the result
+     * @return a future of the result of fn
+     */
+    static <T, U> CompletableFuture<U> thenApplyAsync(CompletableFuture<T> source,
+            Function<? super T, ? extends U> fn, Executor executor) {
+        return handleAsync(source, (value, ex) -> {
+            if (ex != null) {
+                throw ex instanceof CompletionException
+                        ? (CompletionException) ex : new CompletionException(ex);
+            }
+            return fn.apply(value);
+        }, executor);
+    }
+
+    private static Method findVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+}
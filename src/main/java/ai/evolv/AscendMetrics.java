@@ -0,0 +1,98 @@
+package ai.evolv;
+
+/**
+ * Receives measurements from the SDK's hot paths.
+ * <p>
+ *     Metrics are identified by enum constants, so recording one never allocates.
+ *     Implementations are called concurrently from request and callback threads and
+ *     must be thread safe and non blocking. The SDK records nothing by default, see
+ *     {@link HistogramAscendMetrics} for an implementation that keeps latency
+ *     histograms in memory, or implement this interface to forward measurements
+ *     to your own metrics library.
+ * </p>
+ */
+public interface AscendMetrics {
+
+    enum Timer {
+        /** Time from sending an allocation request until the allocations are stored. */
+        ALLOCATION_FETCH,
+        /** Time taken by a request of the configured HttpClient. */
+        HTTP_REQUEST,
+        /** Time taken to send an event, or a batch of events. */
+        EVENT_SEND,
+        /** Time taken to run the subscribed actions waiting on an allocation. */
+        EXECUTION_DISPATCH
+    }
+
+    enum Counter {
+        /** Allocation requests that failed. */
+        ALLOCATION_FETCH_FAILURE,
+        /** Failed allocation requests that were sent again. */
+        ALLOCATION_RETRY,
+        /** Slow allocation requests that were hedged with a second request. */
+        ALLOCATION_HEDGE,
+        /** Allocation fetches failed fast because the circuit breaker was open. */
+        ALLOCATION_CIRCUIT_OPEN,
+        /** Allocation fetches served by an identical request that was already in flight. */
+        ALLOCATION_COALESCED,
+        /** Allocation requests answered with 304, the stored allocations were kept. */
+        ALLOCATION_NOT_MODIFIED,
+        /** Fresh stored allocations used without a request. */
+        ALLOCATION_SERVED_FRESH,
+        /** Stale stored allocations used while they are refreshed in the background. */
+        ALLOCATION_SERVED_STALE,
+        /** Failed allocation requests resolved to the participant's stored allocations. */
+        ALLOCATION_FALLBACK_STORED,
+        /** Failed allocation requests resolved to the supplied default values. */
+        ALLOCATION_FALLBACK_DEFAULT,
+        /** Requests of the configured HttpClient that failed. */
+        HTTP_REQUEST_FAILURE,
+        /** Events emitted, including confirmations and contaminations. */
+        EVENT_EMITTED,
+        /** Events that could not be delivered. */
+        EVENT_FAILED,
+        /** Batched events dropped because too many batches were waiting to be sent. */
+        EVENT_DROPPED,
+        /** Custom events not sent because their participant was not sampled. */
+        EVENT_SAMPLED_OUT,
+        /** Custom events not sent because a rate limit was reached. */
+        EVENT_RATE_LIMITED
+    }
+
+    enum Gauge {
+        /** Subscribed actions waiting for allocations. */
+        EXECUTION_QUEUE_DEPTH,
+        /** Events sent that have not been acknowledged yet. */
+        EVENTS_IN_FLIGHT
+    }
+
+    /**
+     * Returns an AscendMetrics that ignores every measurement.
+     * @return a no-op AscendMetrics
+     */
+    static AscendMetrics noop() {
+        return NoopAscendMetrics.INSTANCE;
+    }
+
+    /**
+     * Records the duration of an operation.
+     * @param timer the timed operation
+     * @param nanos the duration in nanoseconds
+     */
+    void recordLatency(Timer timer, long nanos);
+
+    /**
+     * Increments a counter.
+     * @param counter the counter to increment
+     * @param amount the amount to add
+     */
+    void increment(Counter counter, long amount);
+
+    /**
+     * Adjusts the current value of a gauge.
+     * @param gauge the gauge to adjust
+     * @param delta the amount to add, negative to subtract
+     */
+    void adjust(Gauge gauge, long delta);
+
+}
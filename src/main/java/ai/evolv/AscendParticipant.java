@@ -7,7 +7,7 @@ public class AscendParticipant {
     private final String sessionId;
     private String userId;
 
-    private AscendParticipant(String userId, String sessionId) {
+    AscendParticipant(String userId, String sessionId) {
         this.userId = userId;
         this.sessionId = sessionId;
     }
@@ -3,22 +3,57 @@ package ai.evolv;
 import static org.asynchttpclient.Dsl.asyncHttpClient;
 import static org.asynchttpclient.Dsl.config;
 
+import ai.evolv.exceptions.AscendHttpStatusException;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.asynchttpclient.AsyncHandler;
 import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.BoundRequestBuilder;
 import org.asynchttpclient.HttpResponseBodyPart;
 import org.asynchttpclient.HttpResponseHeaders;
 import org.asynchttpclient.HttpResponseStatus;
+import org.asynchttpclient.Response;
+
+public class AsyncHttpClientImpl implements ConditionalHttpClient {
+
+    static final int DEFAULT_MAX_CONNECTIONS = -1;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = -1;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(1);
 
-public class AsyncHttpClientImpl implements HttpClient {
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ETAG = "ETag";
+    private static final int HTTP_NOT_MODIFIED = 304;
 
     private final AsyncHttpClient httpClient;
+    private final int requestTimeoutMillis;
 
     public AsyncHttpClientImpl(long timeout) {
-        this.httpClient = asyncHttpClient(config()
-        .setRequestTimeout(new Long(timeout).intValue()));
+        this(builder().setRequestTimeout(timeout, TimeUnit.MILLISECONDS));
+    }
+
+    private AsyncHttpClientImpl(Builder builder) {
+        int timeout = (int) Math.min(builder.requestTimeoutMillis, Integer.MAX_VALUE);
+        if (builder.sharedClient != null) {
+            this.httpClient = builder.sharedClient;
+            this.requestTimeoutMillis = timeout;
+        } else {
+            this.httpClient = asyncHttpClient(config()
+                    .setRequestTimeout(timeout > 0 ? timeout : -1)
+                    .setKeepAlive(true)
+                    .setPooledConnectionIdleTimeout(
+                            (int) Math.min(builder.keepAliveMillis, Integer.MAX_VALUE))
+                    .setMaxConnections(builder.maxConnections)
+                    .setMaxConnectionsPerHost(builder.maxConnectionsPerHost));
+            this.requestTimeoutMillis = 0;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
     /**
@@ -29,55 +64,233 @@ public class AsyncHttpClientImpl implements HttpClient {
      *     the API
      */
     public CompletableFuture<String> get(String url) {
+        return execute(httpClient.prepareGet(url), false, (response, body) -> body.asString());
+    }
+
+    /**
+     * Performs a GET request with the given url using the client from
+     * org.asynchttpclient, reading the response body from its raw bytes.
+     * @param url a valid url representing a call to the Participant API.
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the value read from
+     *     the response
+     */
+    @Override
+    public <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader) {
+        return execute(httpClient.prepareGet(url), false, (response, body) -> read(reader, body));
+    }
+
+    /**
+     * Performs a conditional GET request with the given url using the client
+     * from org.asynchttpclient, reading the body of a modified response from
+     * its raw bytes.
+     * @param url a valid url representing a call to the Participant API.
+     * @param etag the ETag of the stored resource, or null
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the response
+     */
+    @Override
+    public <T> CompletableFuture<ConditionalResponse<T>> getConditional(
+            String url, String etag, HttpResponseReader<T> reader) {
+        BoundRequestBuilder request = httpClient.prepareGet(url);
+        if (etag != null) {
+            request.setHeader(IF_NONE_MATCH, etag);
+        }
+
+        return execute(request, etag != null, (response, body) -> {
+            if (response.getStatusCode() == HTTP_NOT_MODIFIED) {
+                return ConditionalResponse.notModified(etag);
+            }
+            return ConditionalResponse.modified(read(reader, body),
+                    response.getHeaders().get(ETAG));
+        });
+    }
+
+    /**
+     * Performs a POST request with the given url and JSON body using the client
+     * from org.asynchttpclient.
+     * @param url a valid url representing a call to the Participant API.
+     * @param body a JSON request body
+     * @return a Completable future instance containing a response from
+     *     the API
+     */
+    @Override
+    public CompletableFuture<String> post(String url, String body) {
+        return execute(httpClient.preparePost(url)
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(body), false, (response, responseBody) -> responseBody.asString());
+    }
 
-        final CompletableFuture<String> responseFuture = new CompletableFuture<>();
+    private static <T> T read(HttpResponseReader<T> reader, ResponseBuffer body)
+            throws IOException {
+        try (InputStream in = body.asInputStream()) {
+            return reader.read(in);
+        }
+    }
 
-        StringBuilder chunks = new StringBuilder();
+    private <T> CompletableFuture<T> execute(BoundRequestBuilder requestBuilder,
+                                             boolean acceptNotModified,
+                                             BodyReader<T> bodyReader) {
+        final CompletableFuture<T> responseFuture = new CompletableFuture<>();
+        if (requestTimeoutMillis > 0) {
+            requestBuilder.setRequestTimeout(requestTimeoutMillis);
+        }
 
-        httpClient.prepareGet(url)
-                .execute(new AsyncHandler<String>() {
-                    private Integer status;
+        requestBuilder
+                .execute(new AsyncHandler<T>() {
+                    private ResponseBuffer body = ResponseBuffer.acquire();
+                    private final Response.ResponseBuilder response =
+                            new Response.ResponseBuilder();
 
                     @Override
                     public State onStatusReceived(HttpResponseStatus responseStatus)
                             throws Exception {
                         int code = responseStatus.getStatusCode();
-                        if (code >= 200 && code < 300) {
+                        if ((code >= 200 && code < 300)
+                                || (acceptNotModified && code == HTTP_NOT_MODIFIED)) {
+                            response.accumulate(responseStatus);
                             return State.CONTINUE;
                         }
-                        throw new IOException("The request returned a bad status code.");
+                        throw new AscendHttpStatusException("The request returned a bad " +
+                                "status code: " + code + ".", code);
                     }
 
                     @Override
                     public State onHeadersReceived(HttpResponseHeaders headers)
                             throws Exception {
+                        response.accumulate(headers);
                         return State.CONTINUE;
                     }
 
                     @Override
                     public State onBodyPartReceived(HttpResponseBodyPart bodyPart)
                             throws Exception {
-                        String chunk = new String(bodyPart.getBodyPartBytes()).trim();
-                        if (chunk.length() != 0) {
-                            chunks.append(chunk);
-                        }
+                        body.write(bodyPart.getBodyByteBuffer());
                         return State.CONTINUE;
                     }
 
                     @Override
-                    public String onCompleted() throws Exception {
-                        String response = chunks.toString();
-                        responseFuture.complete(response);
-                        return response;
+                    public T onCompleted() throws Exception {
+                        try {
+                            T result = bodyReader.read(response.build(), body);
+                            responseFuture.complete(result);
+                            return result;
+                        } catch (Exception e) {
+                            responseFuture.completeExceptionally(e);
+                            throw e;
+                        } finally {
+                            releaseBody();
+                        }
                     }
 
                     @Override
                     public void onThrowable(Throwable t) {
+                        releaseBody();
                         responseFuture.completeExceptionally(t);
                     }
+
+                    private void releaseBody() {
+                        if (body != null) {
+                            body.release();
+                            body = null;
+                        }
+                    }
                 });
 
         return responseFuture;
     }
 
+    private interface BodyReader<T> {
+        T read(Response response, ResponseBuffer body) throws IOException;
+    }
+
+
+    public static class Builder {
+
+        private long requestTimeoutMillis = 0;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+        private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+        private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+        private AsyncHttpClient sharedClient;
+
+        /**
+         * Sets the timeout of a whole request, including connecting and reading the
+         * response.
+         * @param timeout the request timeout
+         * @param unit the time unit of the timeout
+         * @return AsyncHttpClientImpl builder class
+         */
+        public Builder setRequestTimeout(long timeout, TimeUnit unit) {
+            this.requestTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of open connections, -1 means no limit.
+         * <p>
+         *     Requests beyond the limit fail instead of being queued.
+         * </p>
+         * @param maxConnections the maximum number of connections
+         * @return AsyncHttpClientImpl builder class
+         */
+        public Builder setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of open connections to a single host, -1 means
+         * no limit.
+         * <p>
+         *     Requests beyond the limit fail instead of being queued.
+         * </p>
+         * @param maxConnectionsPerHost the maximum number of connections per host
+         * @return AsyncHttpClientImpl builder class
+         */
+        public Builder setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets how long an idle pooled connection is kept open before it is closed.
+         * @param duration the keep alive duration
+         * @param unit the time unit of the duration
+         * @return AsyncHttpClientImpl builder class
+         */
+        public Builder setKeepAlive(long duration, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Shares an existing AsyncHttpClient and its connection pool.
+         * <p>
+         *     The connection settings of this builder are not applied to a shared
+         *     client, only the request timeout is, on each request.
+         * </p>
+         * @param client the client to share
+         * @return AsyncHttpClientImpl builder class
+         */
+        public Builder setAsyncHttpClient(AsyncHttpClient client) {
+            this.sharedClient = client;
+            return this;
+        }
+
+        /**
+         * Builds an instance of AsyncHttpClientImpl.
+         * <p>
+         *     The async-http-client does not support HTTP/2, requests are sent
+         *     over pooled HTTP/1.1 connections.
+         * </p>
+         * @return an AsyncHttpClientImpl instance
+         */
+        public AsyncHttpClientImpl build() {
+            return new AsyncHttpClientImpl(this);
+        }
+
+    }
+
 }
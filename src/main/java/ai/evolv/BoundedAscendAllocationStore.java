@@ -0,0 +1,358 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * An allocation store that holds many participants' allocations in a bounded amount of memory.
+ * <p>
+ *     Allocations are keyed by user id and split across independently locked segments,
+ *     so concurrent participants rarely contend. Each segment evicts its least recently
+ *     used entries once it holds more than its share of the maximum size or weight.
+ *     Entries can also expire a fixed time after they were written. Hit, miss and
+ *     eviction counts are available through {@link #stats()}.
+ * </p>
+ */
+public class BoundedAscendAllocationStore implements AscendAllocationStore {
+
+    static final long DEFAULT_MAXIMUM_SIZE = 10000;
+    static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long expireAfterWriteNanos;
+    private final ToIntFunction<JsonArray> weigher;
+    private final LongSupplier ticker;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private volatile JsonArray allocations = new JsonArray();
+    private volatile String etag;
+    private volatile long writeTime;
+    private volatile boolean written;
+
+    private BoundedAscendAllocationStore(long maximumWeight, ToIntFunction<JsonArray> weigher,
+                                         long expireAfterWriteNanos, int concurrencyLevel,
+                                         LongSupplier ticker) {
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException("The maximum size must be at least 1.");
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("The concurrency level must be at least 1.");
+        }
+        if (expireAfterWriteNanos < 0) {
+            throw new IllegalArgumentException("The expiry must not be negative.");
+        }
+
+        // a power of two no greater than the maximum, so every segment holds at least 1
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount * 2L <= maximumWeight) {
+            segmentCount <<= 1;
+        }
+
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        long segmentWeight = maximumWeight / segmentCount;
+        long remainder = maximumWeight % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(i < remainder ? segmentWeight + 1 : segmentWeight);
+        }
+
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        this.ticker = ticker;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public JsonArray get() {
+        return allocations;
+    }
+
+    @Override
+    public JsonArray get(String userId) {
+        if (userId == null) {
+            missCount.increment();
+            return new JsonArray();
+        }
+
+        Entry stored = segmentFor(userId).get(userId, ticker.getAsLong());
+        if (stored == null) {
+            missCount.increment();
+            return new JsonArray();
+        }
+
+        hitCount.increment();
+        return stored.allocations;
+    }
+
+    @Override
+    public boolean isKeyedByUserId() {
+        return true;
+    }
+
+    @Override
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public String getEtag(String userId) {
+        if (userId == null) {
+            return null;
+        }
+
+        Entry stored = segmentFor(userId).get(userId, ticker.getAsLong());
+        return stored == null ? null : stored.etag;
+    }
+
+    @Override
+    public long getAgeMillis() {
+        return written ? TimeUnit.NANOSECONDS.toMillis(ticker.getAsLong() - writeTime)
+                : Long.MAX_VALUE;
+    }
+
+    @Override
+    public long getAgeMillis(String userId) {
+        if (userId == null) {
+            return Long.MAX_VALUE;
+        }
+
+        long now = ticker.getAsLong();
+        Entry stored = segmentFor(userId).get(userId, now);
+        return stored == null ? Long.MAX_VALUE
+                : TimeUnit.NANOSECONDS.toMillis(now - stored.writeTime);
+    }
+
+    @Override
+    public void put(JsonArray allocations) {
+        put(allocations, null);
+    }
+
+    @Override
+    public void put(String userId, JsonArray allocations) {
+        put(userId, allocations, null);
+    }
+
+    @Override
+    public void put(JsonArray allocations, String etag) {
+        this.allocations = allocations;
+        this.etag = etag;
+        this.writeTime = ticker.getAsLong();
+        this.written = true;
+    }
+
+    @Override
+    public void put(String userId, JsonArray allocations, String etag) {
+        if (userId == null || allocations == null) {
+            return;
+        }
+
+        segmentFor(userId).put(userId, allocations, etag, weigher.applyAsInt(allocations),
+                ticker.getAsLong());
+    }
+
+    /**
+     * Removes a participant's allocations from the store.
+     * @param userId the participant's user id
+     */
+    public void invalidate(String userId) {
+        if (userId != null) {
+            segmentFor(userId).remove(userId);
+        }
+    }
+
+    /**
+     * Returns the number of participants currently held in the store.
+     * @return the number of stored participants
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns a snapshot of the store's hit, miss and eviction counts.
+     * @return the store's statistics
+     */
+    public AscendAllocationStoreStats stats() {
+        return new AscendAllocationStoreStats(hitCount.sum(), missCount.sum(),
+                evictionCount.sum());
+    }
+
+    private Segment segmentFor(String userId) {
+        int hash = userId.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private static final class Entry {
+
+        private final JsonArray allocations;
+        private final String etag;
+        private final int weight;
+        private final long writeTime;
+
+        Entry(JsonArray allocations, String etag, int weight, long writeTime) {
+            this.allocations = allocations;
+            this.etag = etag;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    private final class Segment {
+
+        private final long maximumWeight;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f,
+                true);
+        private long weight;
+
+        Segment(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        synchronized Entry get(String userId, long now) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                return null;
+            }
+
+            if (isExpired(entry, now)) {
+                entries.remove(userId);
+                weight -= entry.weight;
+                evictionCount.increment();
+                return null;
+            }
+
+            return entry;
+        }
+
+        synchronized void put(String userId, JsonArray allocations, String etag,
+                              int entryWeight, long now) {
+            Entry previous = entries.put(userId, new Entry(allocations, etag, entryWeight,
+                    now));
+            if (previous != null) {
+                weight -= previous.weight;
+            }
+            weight += entryWeight;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (weight > maximumWeight && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                weight -= evicted.weight;
+                evictionCount.increment();
+            }
+        }
+
+        synchronized void remove(String userId) {
+            Entry removed = entries.remove(userId);
+            if (removed != null) {
+                weight -= removed.weight;
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private boolean isExpired(Entry entry, long now) {
+            return expireAfterWriteNanos > 0 && now - entry.writeTime >= expireAfterWriteNanos;
+        }
+    }
+
+    public static class Builder {
+
+        private long maximumWeight = DEFAULT_MAXIMUM_SIZE;
+        private ToIntFunction<JsonArray> weigher = allocations -> 1;
+        private long expireAfterWriteNanos = 0;
+        private int concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
+        private LongSupplier ticker = System::nanoTime;
+
+        /**
+         * Sets the maximum number of participants held in the store.
+         * @param maximumSize the maximum number of participants
+         * @return BoundedAscendAllocationStore builder class
+         */
+        public Builder setMaximumSize(long maximumSize) {
+            this.maximumWeight = maximumSize;
+            this.weigher = allocations -> 1;
+            return this;
+        }
+
+        /**
+         * Bounds the store by the total weight of its entries instead of their count.
+         * <p>
+         *     The weigher is applied once when allocations are stored, for instance to
+         *     weigh them by their number of experiments.
+         * </p>
+         * @param maximumWeight the maximum total weight of all entries
+         * @param weigher computes the weight of a participant's allocations
+         * @return BoundedAscendAllocationStore builder class
+         */
+        public Builder setMaximumWeight(long maximumWeight, ToIntFunction<JsonArray> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Expires a participant's allocations a fixed time after they were stored.
+         * @param duration the time to keep allocations for
+         * @param unit the time unit of the duration
+         * @return BoundedAscendAllocationStore builder class
+         */
+        public Builder setExpireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the number of independently locked segments of the store.
+         * <p>
+         *     The store uses the largest power of two that is at most both the
+         *     concurrency level and the maximum size, so every segment holds at least
+         *     one participant and the segments' shares add up to the maximum exactly.
+         * </p>
+         * @param concurrencyLevel the expected number of concurrently updating threads
+         * @return BoundedAscendAllocationStore builder class
+         */
+        public Builder setConcurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        Builder setTicker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        /**
+         * Builds an instance of BoundedAscendAllocationStore.
+         * @return a BoundedAscendAllocationStore instance
+         * @throws IllegalArgumentException if the maximum size or the concurrency level
+         *                                  is less than one
+         */
+        public BoundedAscendAllocationStore build() {
+            return new BoundedAscendAllocationStore(maximumWeight, weigher,
+                    expireAfterWriteNanos, concurrencyLevel, ticker);
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package ai.evolv;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of tasks that are queued or running on another executor.
+ * <p>
+ *     Once the limit is reached, further tasks are rejected with a
+ *     RejectedExecutionException until an earlier task finishes. The submitting
+ *     thread, often an http client's I/O thread, is never blocked, and the queue
+ *     never grows without bound.
+ * </p>
+ */
+final class BoundedExecutor implements Executor {
+
+    private final Executor delegate;
+    private final Semaphore permits;
+
+    BoundedExecutor(Executor delegate, int maxPendingTasks) {
+        if (maxPendingTasks < 1) {
+            throw new IllegalArgumentException("maxPendingTasks must be at least 1.");
+        }
+
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxPendingTasks);
+    }
+
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("The executor already holds its maximum " +
+                    "number of pending tasks.");
+        }
+
+        try {
+            delegate.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+}
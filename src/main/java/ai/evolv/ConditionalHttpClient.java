@@ -0,0 +1,35 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A StreamingHttpClient that can make conditional GET requests.
+ * <p>
+ *     Allocations fetched through a ConditionalHttpClient are requested with the
+ *     ETag stored alongside them. When the Participant API answers 304 Not Modified
+ *     the stored allocations are used as is, without downloading or parsing them
+ *     again. The bundled OkHttpClientImpl, AsyncHttpClientImpl and JdkHttpClientImpl
+ *     implement it.
+ * </p>
+ */
+public interface ConditionalHttpClient extends StreamingHttpClient {
+
+    /**
+     * Performs a GET request using the provided url, sending the given validator in
+     * an If-None-Match header.
+     * <p>
+     *     A 304 Not Modified response completes the future with a not modified
+     *     response and the reader is not called. Any other successful response body is
+     *     handed to the reader and returned with the response's ETag header. Without a
+     *     validator, the request is an ordinary GET.
+     * </p>
+     * @param url a valid url representing a call to the Participant API.
+     * @param etag the ETag of the stored resource, or null
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a future of the response
+     */
+    <T> CompletableFuture<ConditionalResponse<T>> getConditional(String url, String etag,
+                                                                 HttpResponseReader<T> reader);
+
+}
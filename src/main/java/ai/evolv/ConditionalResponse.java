@@ -0,0 +1,71 @@
+package ai.evolv;
+
+/**
+ * The outcome of a conditional GET request.
+ * <p>
+ *     Either the resource was not modified since the validator sent with the request,
+ *     or it was and the response carries the value read from its body along with the
+ *     resource's new validator.
+ * </p>
+ * @param <T> the type of value read from the body
+ */
+public final class ConditionalResponse<T> {
+
+    private final boolean notModified;
+    private final T body;
+    private final String etag;
+
+    private ConditionalResponse(boolean notModified, T body, String etag) {
+        this.notModified = notModified;
+        this.body = body;
+        this.etag = etag;
+    }
+
+    /**
+     * Creates the response to a request whose resource was modified, or that was sent
+     * without a validator.
+     * @param body the value read from the response body
+     * @param etag the ETag header of the response, or null
+     * @param <T> the type of value read from the body
+     * @return a modified response
+     */
+    public static <T> ConditionalResponse<T> modified(T body, String etag) {
+        return new ConditionalResponse<>(false, body, etag);
+    }
+
+    /**
+     * Creates the response to a request whose resource was not modified.
+     * @param etag the validator the resource still matches
+     * @param <T> the type of value read from the body
+     * @return a not modified response
+     */
+    public static <T> ConditionalResponse<T> notModified(String etag) {
+        return new ConditionalResponse<>(true, null, etag);
+    }
+
+    /**
+     * Returns whether the API answered 304 Not Modified.
+     * @return true if the resource was not modified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Returns the value read from the response body, null if the resource was not
+     * modified.
+     * @return the value read from the body
+     */
+    public T getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the validator of the resource, or null if the API did not send one.
+     * @return the resource's ETag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+}
@@ -2,9 +2,14 @@ package ai.evolv;
 
 import com.google.gson.JsonArray;
 
+import java.util.concurrent.TimeUnit;
+
 public class DefaultAscendAllocationStore implements AscendAllocationStore {
 
-    private static JsonArray allocations;
+    private volatile JsonArray allocations;
+    private volatile String etag;
+    private volatile long writeTimeNanos;
+    private volatile boolean written;
 
     DefaultAscendAllocationStore() {
         this.allocations = new JsonArray();
@@ -15,8 +20,28 @@ public class DefaultAscendAllocationStore implements AscendAllocationStore {
         return allocations;
     }
 
+    @Override
+    public String getEtag() {
+        return etag;
+    }
+
+    @Override
+    public long getAgeMillis() {
+        return written
+                ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - writeTimeNanos)
+                : Long.MAX_VALUE;
+    }
+
     @Override
     public void put(JsonArray allocations) {
+        put(allocations, null);
+    }
+
+    @Override
+    public void put(JsonArray allocations, String etag) {
         this.allocations = allocations;
+        this.etag = etag;
+        this.writeTimeNanos = System.nanoTime();
+        this.written = true;
     }
 }
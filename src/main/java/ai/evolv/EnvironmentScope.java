@@ -0,0 +1,58 @@
+package ai.evolv;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Holds the state that every AscendConfig of one environment shares.
+ * <p>
+ *     The classic flow builds an AscendConfig per participant, so state that has to see
+ *     the traffic of the whole environment, such as the retry budget, is kept here
+ *     instead of in the config. A component is shared by the configs that build it
+ *     with the same settings, and is kept for the life of the JVM.
+ * </p>
+ */
+final class EnvironmentScope {
+
+    private static final ConcurrentMap<String, EnvironmentScope> SCOPES =
+            new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<List<Object>, Object> components = new ConcurrentHashMap<>();
+
+    private EnvironmentScope() {
+    }
+
+    /**
+     * Returns the scope of the environment served at the given address.
+     * @param httpScheme the scheme of the Participant API
+     * @param domain the domain of the Participant API
+     * @param version the version of the Participant API
+     * @param environmentId the id of the environment
+     * @return the environment's scope
+     */
+    static EnvironmentScope of(String httpScheme, String domain, String version,
+                               String environmentId) {
+        String environment = httpScheme + "://" + domain + "/" + version + "/" + environmentId;
+        return SCOPES.computeIfAbsent(environment, key -> new EnvironmentScope());
+    }
+
+    /**
+     * Returns the component shared under the given name and settings, creating it the
+     * first time it is asked for.
+     * @param factory creates the component
+     * @param name the name of the component, which also determines its type
+     * @param settings the settings the component was created with
+     * @param <T> the type of the component
+     * @return the shared component
+     */
+    @SuppressWarnings("unchecked")
+    <T> T share(Supplier<T> factory, String name, Object... settings) {
+        Object[] key = Arrays.copyOf(settings, settings.length + 1);
+        key[settings.length] = name;
+        return (T) components.computeIfAbsent(Arrays.asList(key), ignored -> factory.get());
+    }
+
+}
@@ -0,0 +1,374 @@
+package ai.evolv;
+
+import com.google.gson.JsonObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summarizes the scores of custom events per participant and key over a window.
+ * <p>
+ *     The first score of a key opens its window. Until the window closes, scores are
+ *     only added to the participant's count, sum, min and max, and optionally to a
+ *     quantile sketch. When it closes, one event per participant is sent with the sum
+ *     as its score. The summaries are kept in primitive arrays indexed by an open
+ *     addressing table, so no object is allocated per score. A window that reaches
+ *     the maximum number of participants is closed early, which bounds its memory.
+ *     Windows still open when the JVM shuts down are closed by a shutdown hook.
+ * </p>
+ */
+final class EventAggregator {
+
+    static final int DEFAULT_MAX_PARTICIPANTS = 10000;
+
+    static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99"};
+
+    // log-scaled buckets with about 5% relative error, from 0.001 to about 4 * 10^7
+    static final int SKETCH_BUCKETS = 256;
+    private static final double SKETCH_ORIGIN = 0.001;
+    private static final double SKETCH_GAMMA = 1.1;
+    private static final double LOG_SKETCH_GAMMA = Math.log(SKETCH_GAMMA);
+    // a participant's sketch only spans the buckets of its scores, starting with a factor of 2
+    static final int INITIAL_SKETCH_BUCKETS = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long ANY_GENERATION = -1;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ascend-event-aggregator");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // the aggregators whose open windows are closed when the JVM shuts down
+    private static final Set<EventAggregator> AGGREGATORS =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(EventAggregator::flushAll,
+                "ascend-event-aggregator-shutdown"));
+    }
+
+    private final AscendConfig config;
+    private final Map<String, Window> windows = new HashMap<>();
+
+    EventAggregator(AscendConfig config, Map<String, Long> windowMillis,
+                    Set<String> quantileKeys, int maxParticipants) {
+        if (maxParticipants < 1) {
+            throw new IllegalArgumentException("maxParticipants must be at least 1.");
+        }
+
+        this.config = config;
+        for (Map.Entry<String, Long> entry : windowMillis.entrySet()) {
+            if (entry.getValue() <= 0) {
+                throw new IllegalArgumentException("An aggregation window must be positive.");
+            }
+            windows.put(entry.getKey(), new Window(entry.getKey(), entry.getValue(),
+                    quantileKeys.contains(entry.getKey()), maxParticipants));
+        }
+        AGGREGATORS.add(this);
+    }
+
+    boolean isAggregated(String key) {
+        return windows.containsKey(key);
+    }
+
+    /**
+     * Adds a score to the participant's summary of the key.
+     * @param participant the participant that emitted the event
+     * @param key an aggregated event key
+     * @param score the score of the event
+     */
+    void add(AscendParticipant participant, String key, double score) {
+        windows.get(key).add(String.valueOf(participant.getUserId()),
+                String.valueOf(participant.getSessionId()), score);
+    }
+
+    /**
+     * Closes every open window and sends its summaries.
+     */
+    void flush() {
+        for (Window window : windows.values()) {
+            window.close(ANY_GENERATION);
+        }
+    }
+
+    /**
+     * Closes the open windows of every aggregator, which the shutdown hook does.
+     */
+    static void flushAll() {
+        EventAggregator[] aggregators;
+        synchronized (AGGREGATORS) {
+            aggregators = AGGREGATORS.toArray(new EventAggregator[0]);
+        }
+        for (EventAggregator aggregator : aggregators) {
+            aggregator.flush();
+        }
+    }
+
+    static int sketchBucket(double score) {
+        if (!(score > SKETCH_ORIGIN)) {
+            return 0;
+        }
+
+        int bucket = (int) Math.ceil(Math.log(score / SKETCH_ORIGIN) / LOG_SKETCH_GAMMA);
+        return Math.min(bucket, SKETCH_BUCKETS - 1);
+    }
+
+    static double sketchValue(int bucket) {
+        if (bucket == 0) {
+            return SKETCH_ORIGIN;
+        }
+
+        // the geometric middle of the bucket (origin * gamma^(bucket-1), origin * gamma^bucket]
+        return SKETCH_ORIGIN * Math.pow(SKETCH_GAMMA, bucket - 0.5);
+    }
+
+    private void send(Summaries summaries) {
+        for (int slot = 0; slot < summaries.userIds.length; slot++) {
+            if (summaries.userIds[slot] == null) {
+                continue;
+            }
+
+            JsonObject aggregate = new JsonObject();
+            aggregate.addProperty("score", summaries.sums[slot]);
+            aggregate.addProperty("count", summaries.counts[slot]);
+            aggregate.addProperty("min", summaries.mins[slot]);
+            aggregate.addProperty("max", summaries.maxs[slot]);
+            if (summaries.sketches != null) {
+                addQuantiles(aggregate, summaries, slot);
+            }
+
+            AscendParticipant participant = new AscendParticipant.Builder()
+                    .setUserId(summaries.userIds[slot])
+                    .setSessionId(summaries.sessionIds[slot])
+                    .build();
+            new EventEmitter(config, participant).emitAggregate(summaries.key, aggregate);
+        }
+    }
+
+    private static void addQuantiles(JsonObject aggregate, Summaries summaries, int slot) {
+        int[] sketch = summaries.sketches[slot];
+        int start = summaries.sketchStarts[slot];
+        long count = summaries.counts[slot];
+        int quantile = 0;
+        long seen = 0;
+        for (int index = 0; index < sketch.length && quantile < QUANTILES.length; index++) {
+            seen += sketch[index];
+            while (quantile < QUANTILES.length && seen > QUANTILES[quantile] * (count - 1)) {
+                // the extremes are known exactly, the sketch only bounds the middle
+                double value = Math.max(summaries.mins[slot],
+                        Math.min(summaries.maxs[slot], sketchValue(start + index)));
+                aggregate.addProperty(QUANTILE_NAMES[quantile], value);
+                quantile++;
+            }
+        }
+    }
+
+    /**
+     * Counts the score's bucket in the participant's sketch, growing the sketch to span
+     * the bucket if it does not yet.
+     */
+    private static void addToSketch(Summaries summaries, int slot, int bucket) {
+        int[] sketch = summaries.sketches[slot];
+        int start = summaries.sketchStarts[slot];
+        if (sketch == null) {
+            sketch = new int[INITIAL_SKETCH_BUCKETS];
+            start = Math.min(bucket, SKETCH_BUCKETS - INITIAL_SKETCH_BUCKETS);
+        } else if (bucket < start || bucket >= start + sketch.length) {
+            int low = Math.min(bucket, start);
+            int high = Math.max(bucket + 1, start + sketch.length);
+            int length = Math.min(SKETCH_BUCKETS, Math.max(high - low, sketch.length * 2));
+            // grow towards the new bucket, within the buckets of the sketch
+            int grownStart = bucket < start ? Math.max(0, high - length)
+                    : Math.min(low, SKETCH_BUCKETS - length);
+            int[] grown = new int[length];
+            System.arraycopy(sketch, 0, grown, start - grownStart, sketch.length);
+            sketch = grown;
+            start = grownStart;
+        }
+
+        sketch[bucket - start]++;
+        summaries.sketches[slot] = sketch;
+        summaries.sketchStarts[slot] = start;
+    }
+
+    /**
+     * Returns the table capacity that holds the participants at most half full.
+     */
+    private static int tableCapacity(int participants) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < participants * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * The summaries of one window, in parallel arrays indexed by the participant's slot.
+     */
+    private static final class Summaries {
+
+        private final String key;
+        private final String[] userIds;
+        private final String[] sessionIds;
+        private final long[] counts;
+        private final double[] sums;
+        private final double[] mins;
+        private final double[] maxs;
+        private final int[][] sketches;
+        private final int[] sketchStarts;
+
+        Summaries(String key, int capacity, boolean quantiles) {
+            this.key = key;
+            this.userIds = new String[capacity];
+            this.sessionIds = new String[capacity];
+            this.counts = new long[capacity];
+            this.sums = new double[capacity];
+            this.mins = new double[capacity];
+            this.maxs = new double[capacity];
+            this.sketches = quantiles ? new int[capacity][] : null;
+            this.sketchStarts = quantiles ? new int[capacity] : null;
+        }
+    }
+
+    private final class Window {
+
+        private final String key;
+        private final long lengthMillis;
+        private final boolean quantiles;
+        private final int maxParticipants;
+
+        // guarded by this
+        private Summaries summaries;
+        private int size;
+        private long generation;
+        private boolean closeScheduled;
+
+        Window(String key, long lengthMillis, boolean quantiles, int maxParticipants) {
+            this.key = key;
+            this.lengthMillis = lengthMillis;
+            this.quantiles = quantiles;
+            this.maxParticipants = maxParticipants;
+            this.summaries = new Summaries(key, INITIAL_CAPACITY, quantiles);
+        }
+
+        void add(String userId, String sessionId, double score) {
+            Summaries full = null;
+            synchronized (this) {
+                int slot = find(summaries, userId, sessionId);
+                if (summaries.userIds[slot] == null && size >= maxParticipants) {
+                    full = takeSummaries();
+                    slot = find(summaries, userId, sessionId);
+                }
+
+                record(slot, userId, sessionId, score);
+                if (!closeScheduled) {
+                    closeScheduled = true;
+                    final long scheduled = generation;
+                    SCHEDULER.schedule(() -> close(scheduled), lengthMillis,
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+
+            if (full != null) {
+                send(full);
+            }
+        }
+
+        /**
+         * Closes the window if it is still the one the close was scheduled for, a window
+         * closed early or flushed in the meantime schedules a close of its own.
+         */
+        void close(long scheduled) {
+            Summaries closed;
+            synchronized (this) {
+                if ((scheduled != ANY_GENERATION && scheduled != generation) || size == 0) {
+                    return;
+                }
+                closed = takeSummaries();
+            }
+
+            send(closed);
+        }
+
+        private Summaries takeSummaries() {
+            final Summaries taken = summaries;
+            // size the next window for as many participants, so it rarely has to resize
+            summaries = new Summaries(key, tableCapacity(size), quantiles);
+            size = 0;
+            generation++;
+            closeScheduled = false;
+            return taken;
+        }
+
+        private void record(int slot, String userId, String sessionId, double score) {
+            Summaries current = summaries;
+            if (current.userIds[slot] == null) {
+                current.userIds[slot] = userId;
+                current.sessionIds[slot] = sessionId;
+                current.mins[slot] = score;
+                current.maxs[slot] = score;
+                size++;
+            } else {
+                current.mins[slot] = Math.min(current.mins[slot], score);
+                current.maxs[slot] = Math.max(current.maxs[slot], score);
+            }
+            current.counts[slot]++;
+            current.sums[slot] += score;
+            if (current.sketches != null) {
+                addToSketch(current, slot, sketchBucket(score));
+            }
+
+            // keep the table at most half full
+            if (size * 2 > current.userIds.length) {
+                summaries = resize(current, current.userIds.length * 2);
+            }
+        }
+
+        private Summaries resize(Summaries current, int capacity) {
+            Summaries resized = new Summaries(key, capacity, quantiles);
+            for (int slot = 0; slot < current.userIds.length; slot++) {
+                if (current.userIds[slot] == null) {
+                    continue;
+                }
+
+                int target = find(resized, current.userIds[slot], current.sessionIds[slot]);
+                resized.userIds[target] = current.userIds[slot];
+                resized.sessionIds[target] = current.sessionIds[slot];
+                resized.counts[target] = current.counts[slot];
+                resized.sums[target] = current.sums[slot];
+                resized.mins[target] = current.mins[slot];
+                resized.maxs[target] = current.maxs[slot];
+                if (current.sketches != null) {
+                    resized.sketches[target] = current.sketches[slot];
+                    resized.sketchStarts[target] = current.sketchStarts[slot];
+                }
+            }
+            return resized;
+        }
+    }
+
+    /**
+     * Returns the participant's slot, or the empty slot where it belongs.
+     */
+    private static int find(Summaries summaries, String userId, String sessionId) {
+        int mask = summaries.userIds.length - 1;
+        int hash = 31 * userId.hashCode() + sessionId.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (summaries.userIds[slot] != null && !(summaries.userIds[slot].equals(userId)
+                && summaries.sessionIds[slot].equals(sessionId))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+}
@@ -0,0 +1,186 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers events and sends them to the events endpoint as a single request.
+ * <p>
+ *     A batch is sent once it reaches the maximum batch size, once the first event
+ *     in it has waited for the maximum linger time, or when {@link #flush()} is
+ *     called. Batches are delivered one at a time, in the order the events were
+ *     added, each batch is sent once the previous one completes. At most
+ *     {@value #MAX_PENDING_BATCHES} batches wait behind the one in flight, further
+ *     batches are dropped and counted while the events endpoint is slow or down.
+ *     Adding an event does not take a lock, so a batcher can be shared by every
+ *     participant of an environment.
+ * </p>
+ */
+class EventBatcher {
+
+    private static Logger logger = LoggerFactory.getLogger(EventBatcher.class);
+
+    static final int MAX_PENDING_BATCHES = 100;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ascend-event-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final HttpClient httpClient;
+    private final String eventsUrl;
+    private final int maxBatchSize;
+    private final long maxLingerMillis;
+    private final AscendMetrics metrics;
+
+    private final ConcurrentLinkedQueue<JsonObject> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedEvents = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object sendLock = new Object();
+
+    // guarded by sendLock
+    private final ArrayDeque<Batch> pendingBatches = new ArrayDeque<>();
+    private boolean sending;
+
+    EventBatcher(AscendConfig config, int maxBatchSize, long maxLingerMillis) {
+        this.httpClient = config.getHttpClient();
+        this.eventsUrl = config.getEventsUrl();
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerMillis = maxLingerMillis;
+        this.metrics = NoopAscendMetrics.orNoop(config.getMetrics());
+    }
+
+    String getEventsUrl() {
+        return eventsUrl;
+    }
+
+    void add(JsonObject event) {
+        buffer.add(event);
+        if (bufferedEvents.incrementAndGet() >= maxBatchSize) {
+            sendBatches(false);
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Sends any buffered events immediately.
+     */
+    void flush() {
+        sendBatches(true);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            SCHEDULER.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, maxLingerMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendBatches(boolean includePartialBatch) {
+        Batch next = null;
+        int dropped = 0;
+        synchronized (sendLock) {
+            while (bufferedEvents.get() >= maxBatchSize
+                    || (includePartialBatch && bufferedEvents.get() > 0)) {
+                JsonArray batch = new JsonArray();
+                JsonObject event;
+                while (batch.size() < maxBatchSize && (event = buffer.poll()) != null) {
+                    batch.add(event);
+                }
+
+                if (batch.size() == 0) {
+                    break;
+                }
+
+                bufferedEvents.addAndGet(-batch.size());
+                if (eventsUrl == null) {
+                    continue;
+                }
+
+                if (pendingBatches.size() >= MAX_PENDING_BATCHES) {
+                    dropped += batch.size();
+                } else {
+                    pendingBatches.add(new Batch(batch.toString(), batch.size()));
+                    metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, batch.size());
+                }
+            }
+
+            if (!sending) {
+                next = pendingBatches.poll();
+                sending = next != null;
+            }
+        }
+
+        if (dropped > 0) {
+            metrics.increment(AscendMetrics.Counter.EVENT_DROPPED, dropped);
+            logger.warn("Dropped {} events, too many batches are waiting to be sent.", dropped);
+        }
+
+        if (next != null) {
+            send(next);
+        }
+
+        if (bufferedEvents.get() > 0) {
+            scheduleFlush();
+        }
+    }
+
+    private void send(Batch batch) {
+        long start = System.nanoTime();
+        CompletableFuture<String> response;
+        try {
+            response = httpClient.post(eventsUrl, batch.body);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+
+        response.whenComplete((body, ex) -> {
+            metrics.recordLatency(AscendMetrics.Timer.EVENT_SEND, System.nanoTime() - start);
+            metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, -batch.events);
+            if (ex != null) {
+                metrics.increment(AscendMetrics.Counter.EVENT_FAILED, batch.events);
+                logger.warn("There was an error sending a batch of {} events.", batch.events);
+            }
+
+            Batch next;
+            synchronized (sendLock) {
+                next = pendingBatches.poll();
+                sending = next != null;
+            }
+
+            if (next != null) {
+                send(next);
+            }
+        });
+    }
+
+    private static final class Batch {
+
+        private final String body;
+        private final int events;
+
+        Batch(String body, int events) {
+            this.body = body;
+            this.events = events;
+        }
+    }
+
+}
@@ -4,8 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.net.URI;
-import java.net.URL;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,24 +19,113 @@ class EventEmitter {
     private final HttpClient httpClient;
     private final AscendConfig config;
     private final AscendParticipant ascendParticipant;
+    private final EventBatcher eventBatcher;
+    private final EventOutbox eventOutbox;
+    private final EventSampler eventSampler;
+    private final EventAggregator eventAggregator;
+    private final AscendMetrics metrics;
 
     EventEmitter(AscendConfig config) {
+        this(config, config.getAscendParticipant());
+    }
+
+    EventEmitter(AscendConfig config, AscendParticipant participant) {
         this.httpClient = config.getHttpClient();
         this.config = config;
-        this.ascendParticipant = config.getAscendParticipant();
+        this.ascendParticipant = participant;
+        this.eventBatcher = config.getEventBatcher();
+        this.eventOutbox = config.getEventOutbox();
+        this.eventSampler = config.getEventSampler();
+        this.eventAggregator = config.getEventAggregator();
+        this.metrics = NoopAscendMetrics.orNoop(config.getMetrics());
     }
 
     void emit(String key) {
-        String url = getEventUrl(key, 1.0);
-        if (url != null) {
-            httpClient.get(url);
-        }
+        emit(key, 1.0);
     }
 
     void emit(String key, Double score) {
-        String url = getEventUrl(key, score);
+        metrics.increment(AscendMetrics.Counter.EVENT_EMITTED, 1);
+        if (eventAggregator != null && eventAggregator.isAggregated(key)) {
+            if (score != null) {
+                eventAggregator.add(ascendParticipant, key, score);
+            }
+            return;
+        }
+
+        double weight = eventSampler != null
+                ? eventSampler.sample(ascendParticipant.getUserId(), key) : 1;
+        if (weight == EventSampler.DROPPED) {
+            return;
+        }
+
+        if (eventOutbox != null || eventBatcher != null) {
+            JsonObject event = createEvent(key);
+            event.addProperty("score", score);
+            if (weight != 1) {
+                event.addProperty("weight", weight);
+            }
+            enqueue(event);
+            return;
+        }
+
+        String url = getEventUrl(key, score, weight);
         if (url != null) {
-            httpClient.get(url);
+            send(url);
+        }
+    }
+
+    /**
+     * Sends a participant's summary of the scores of an aggregated key.
+     * @param key the event key
+     * @param aggregate the score, count, min, max and quantiles of the summary
+     */
+    void emitAggregate(String key, JsonObject aggregate) {
+        double weight = eventSampler != null
+                ? eventSampler.sample(ascendParticipant.getUserId(), key) : 1;
+        if (weight == EventSampler.DROPPED) {
+            return;
+        }
+
+        if (eventOutbox != null || eventBatcher != null) {
+            JsonObject event = createEvent(key);
+            for (Map.Entry<String, JsonElement> property : aggregate.entrySet()) {
+                event.add(property.getKey(), property.getValue());
+            }
+            if (weight != 1) {
+                event.addProperty("weight", weight);
+            }
+            enqueue(event);
+            return;
+        }
+
+        String eventsUrl = config.getEventsUrl();
+        if (eventsUrl == null) {
+            return;
+        }
+
+        UrlBuilder url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", ascendParticipant.getUserId())
+                .param("sid", ascendParticipant.getSessionId())
+                .param("type", key);
+        for (Map.Entry<String, JsonElement> property : aggregate.entrySet()) {
+            url.param(property.getKey(), property.getValue().getAsDouble());
+        }
+        if (weight != 1) {
+            url.param("weight", weight);
+        }
+        send(url.build());
+    }
+
+    /**
+     * Sends any events buffered for batching or aggregation immediately.
+     */
+    void flush() {
+        if (eventAggregator != null) {
+            eventAggregator.flush();
+        }
+        if (eventBatcher != null) {
+            eventBatcher.flush();
         }
     }
 
@@ -54,54 +142,90 @@ class EventEmitter {
             JsonObject allocation = a.getAsJsonObject();
             String experimentId = allocation.get("eid").getAsString();
             String candidateId = allocation.get("cid").getAsString();
+            metrics.increment(AscendMetrics.Counter.EVENT_EMITTED, 1);
+
+            if (eventOutbox != null || eventBatcher != null) {
+                JsonObject event = createEvent(key);
+                event.addProperty("eid", experimentId);
+                event.addProperty("cid", candidateId);
+                enqueue(event);
+                continue;
+            }
 
             String url = getEventUrl(key, experimentId, candidateId);
             if (url != null) {
-                httpClient.get(url);
+                send(url);
             }
         }
     }
 
+    private void enqueue(JsonObject event) {
+        if (eventOutbox == null) {
+            eventBatcher.add(event);
+        } else if (!eventOutbox.append(event)) {
+            metrics.increment(AscendMetrics.Counter.EVENT_FAILED, 1);
+        }
+    }
+
+    private void send(String url) {
+        if (!NoopAscendMetrics.isEnabled(metrics)) {
+            httpClient.get(url);
+            return;
+        }
+
+        long start = System.nanoTime();
+        metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, 1);
+        httpClient.get(url).whenComplete((response, ex) -> {
+            metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, -1);
+            metrics.recordLatency(AscendMetrics.Timer.EVENT_SEND, System.nanoTime() - start);
+            if (ex != null) {
+                metrics.increment(AscendMetrics.Counter.EVENT_FAILED, 1);
+            }
+        });
+    }
+
+    private JsonObject createEvent(String type) {
+        JsonObject event = new JsonObject();
+        event.addProperty("uid", ascendParticipant.getUserId());
+        event.addProperty("sid", ascendParticipant.getSessionId());
+        event.addProperty("type", type);
+        return event;
+    }
+
     String getEventUrl(String type, Double score) {
-        try {
-            String path = String.format("//%s/%s/%s/events", config.getDomain(),
-                    config.getVersion(),
-                    config.getEnvironmentId());
-            String queryString = String.format("uid=%s&sid=%s&type=%s&score=%s",
-                    ascendParticipant.getUserId(),
-                    ascendParticipant.getSessionId(), type, score.toString());
-
-            URI uri = new URI(config.getHttpScheme(), null, path, queryString,
-                    null);
-
-            URL url = uri.toURL();
-
-            return url.toString();
-        } catch (Exception e) {
-            logger.error(e.getMessage());
+        return getEventUrl(type, score, 1);
+    }
+
+    String getEventUrl(String type, Double score, double weight) {
+        String eventsUrl = config.getEventsUrl();
+        if (eventsUrl == null || score == null) {
             return null;
         }
+
+        UrlBuilder url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", ascendParticipant.getUserId())
+                .param("sid", ascendParticipant.getSessionId())
+                .param("type", type)
+                .param("score", score);
+        if (weight != 1) {
+            url.param("weight", weight);
+        }
+        return url.build();
     }
 
     String getEventUrl(String type, String experimentId, String candidateId) {
-        try {
-            String path = String.format("//%s/%s/%s/events", config.getDomain(),
-                    config.getVersion(),
-                    config.getEnvironmentId());
-            String queryString = String.format("uid=%s&sid=%s&eid=%s&cid=%s&type=%s",
-                    ascendParticipant.getUserId(),
-                    ascendParticipant.getSessionId(), experimentId, candidateId, type);
-
-            URI uri = new URI(config.getHttpScheme(), null, path, queryString,
-                    null);
-
-            URL url = uri.toURL();
-
-            return url.toString();
-        } catch (Exception e) {
-            logger.error(e.getMessage());
+        String eventsUrl = config.getEventsUrl();
+        if (eventsUrl == null) {
             return null;
         }
+
+        return UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", ascendParticipant.getUserId())
+                .param("sid", ascendParticipant.getSessionId())
+                .param("eid", experimentId)
+                .param("cid", candidateId)
+                .param("type", type)
+                .build();
     }
 
 }
@@ -0,0 +1,661 @@
+package ai.evolv;
+
+import ai.evolv.exceptions.AscendHttpStatusException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A durable outbox for events, persisted in memory-mapped files on local disk.
+ * <p>
+ *     Events are appended to a log split into fixed size segment files, emitting an
+ *     event only copies it into the mapped segment on the caller's thread. A background
+ *     sender posts the logged events in batches to the events endpoint and, once a
+ *     batch is acknowledged, moves a checkpoint past it and deletes the segments it
+ *     no longer needs. Batches that fail with an error that may pass, such as a
+ *     timeout, a server error or a rate limit, are retried with an exponential backoff
+ *     until they are sent. A batch that keeps failing for another reason, for instance
+ *     because the server rejects it with a client error or the client can not send it
+ *     at all, is appended to a dead letter file in the directory after a few attempts
+ *     so that it does not hold up the rest of the log.
+ * </p>
+ * <p>
+ *     The log and the checkpoint survive crashes and restarts: reopening the directory
+ *     resumes sending from the checkpoint. Delivery is at least once, a batch sent just
+ *     before a crash may be sent again. Call {@link #close()} to force pending writes
+ *     to disk. The directory is locked while the outbox is open, so it can not be
+ *     opened by a second outbox, in this process or another one.
+ * </p>
+ */
+public class EventOutbox implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventOutbox.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    static final int DEFAULT_MAXIMUM_SEGMENTS = 64;
+    static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+    static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final int MAX_FAILED_ATTEMPTS = 5;
+    static final String DEAD_LETTER_FILE = "dead-letter.jsonl";
+
+    private static final int SEGMENT_MAGIC = 0x41534f31;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MINIMUM_SEGMENT_SIZE = 64;
+    private static final int CHECKPOINT_SIZE = 16;
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "lock";
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ascend-event-outbox");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maximumSegments;
+    private final int maxBatchSize;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>();
+    private final MappedByteBuffer checkpoint;
+    private final FileChannel lockChannel;
+    private final AtomicBoolean idle = new AtomicBoolean(true);
+    private final AtomicLong pendingEvents = new AtomicLong();
+
+    // guarded by this
+    private long writeSegment;
+    private int writePosition;
+    private long readSegment;
+    private int readPosition;
+    private boolean closed;
+
+    private volatile HttpClient httpClient;
+    private volatile String eventsUrl;
+    private volatile AscendMetrics metrics = AscendMetrics.noop();
+    private int failedAttempts;
+
+    private EventOutbox(Path directory, int segmentSize, int maximumSegments,
+                        int maxBatchSize) throws IOException {
+        if (segmentSize < MINIMUM_SEGMENT_SIZE || maximumSegments < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("The outbox needs at least one segment of " +
+                    MINIMUM_SEGMENT_SIZE + " bytes and a batch size of at least 1.");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maximumSegments = maximumSegments;
+        this.maxBatchSize = maxBatchSize;
+
+        Files.createDirectories(directory);
+        this.lockChannel = lockDirectory(directory);
+        try {
+            this.checkpoint = mapFile(directory.resolve(CHECKPOINT_FILE), CHECKPOINT_SIZE);
+            recover();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    /**
+     * Returns the number of logged events that were not acknowledged yet.
+     * @return the number of pending events
+     */
+    public long getPendingEventCount() {
+        return pendingEvents.get();
+    }
+
+    /**
+     * Stops sending, forces pending writes to disk and unlocks the directory. Events
+     * that were not acknowledged are sent once the outbox is reopened, including a
+     * batch that is still in flight: its response no longer changes the directory.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (MappedByteBuffer segment : segments.values()) {
+            segment.force();
+        }
+        checkpoint.force();
+        try {
+            // closing the channel releases the lock
+            lockChannel.close();
+        } catch (IOException e) {
+            LOGGER.warn("There was an error unlocking the event outbox {}.", directory, e);
+        }
+    }
+
+    /**
+     * Starts sending the logged events to the environment's events endpoint.
+     * <p>
+     *     Every AscendConfig of the environment may use the outbox. The first one to
+     *     start it supplies the client and the metrics, later calls for the same
+     *     endpoint leave the outbox as it is.
+     * </p>
+     * @param httpClient the client posting the batches
+     * @param eventsUrl the url of the events endpoint
+     * @param metrics receives the latency and failures of the batches
+     * @throws IllegalStateException if the outbox already sends to another endpoint
+     */
+    void start(HttpClient httpClient, String eventsUrl, AscendMetrics metrics) {
+        synchronized (this) {
+            if (this.httpClient != null) {
+                if (!Objects.equals(this.eventsUrl, eventsUrl)) {
+                    throw new IllegalStateException("An EventOutbox can only be shared by " +
+                            "the AscendConfigs of one environment.");
+                }
+                return;
+            }
+            this.metrics = NoopAscendMetrics.orNoop(metrics);
+            this.eventsUrl = eventsUrl;
+            this.httpClient = httpClient;
+        }
+
+        if (eventsUrl == null) {
+            LOGGER.warn("The events url is invalid, events are kept in the outbox.");
+            return;
+        }
+        wakeSender();
+    }
+
+    /**
+     * Appends an event to the log. Events with a number that is not finite, such as a
+     * NaN score, are rejected, as they can not be sent as JSON.
+     * @param event the event to send
+     * @return false if the event could not be logged
+     */
+    boolean append(JsonObject event) {
+        if (!hasFiniteNumbers(event)) {
+            LOGGER.warn("An event with a number that is not finite was dropped.");
+            return false;
+        }
+
+        byte[] payload = event.toString().getBytes(StandardCharsets.UTF_8);
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            LOGGER.warn("An event of {} bytes does not fit in an outbox segment.",
+                    payload.length);
+            return false;
+        }
+
+        int checksum = checksum(payload, payload.length);
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+
+            MappedByteBuffer segment = segments.get(writeSegment);
+            if (writePosition + recordSize > segment.capacity()) {
+                if (segments.size() >= maximumSegments) {
+                    LOGGER.warn("The event outbox {} is full, an event was dropped.", directory);
+                    return false;
+                }
+
+                try {
+                    segment = createSegment(writeSegment + 1);
+                } catch (IOException e) {
+                    LOGGER.error("There was an error creating an outbox segment.", e);
+                    return false;
+                }
+                writeSegment++;
+                writePosition = SEGMENT_HEADER_SIZE;
+            }
+
+            ByteBuffer record = segment.duplicate();
+            record.position(writePosition + RECORD_HEADER_SIZE);
+            record.put(payload);
+            segment.putInt(writePosition + 4, checksum);
+            // the length is written last, a record without one is not read
+            segment.putInt(writePosition, payload.length);
+            writePosition += recordSize;
+        }
+
+        pendingEvents.incrementAndGet();
+        wakeSender();
+        return true;
+    }
+
+    private void wakeSender() {
+        if (httpClient != null && eventsUrl != null && idle.compareAndSet(true, false)) {
+            SCHEDULER.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        Batch batch = readBatch();
+        if (batch == null) {
+            idle.set(true);
+            // an event appended while the sender went idle must not wait for the next one
+            if (pendingEvents.get() > 0 && !isClosed() && idle.compareAndSet(true, false)) {
+                SCHEDULER.execute(this::drain);
+            }
+            return;
+        }
+
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        long start = System.nanoTime();
+        metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, batch.count);
+        CompletableFuture<String> response;
+        try {
+            response = httpClient.post(eventsUrl, batch.body);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+
+        response.whenComplete((body, ex) -> {
+            metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, -batch.count);
+            metrics.recordLatency(AscendMetrics.Timer.EVENT_SEND, System.nanoTime() - start);
+            if (ex == null) {
+                failedAttempts = 0;
+                acknowledge(batch);
+                SCHEDULER.execute(this::drain);
+                return;
+            }
+
+            failedAttempts++;
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                    ? ex.getCause() : ex;
+            if (!isTransient(cause) && failedAttempts >= MAX_FAILED_ATTEMPTS) {
+                failedAttempts = 0;
+                deadLetter(batch, cause);
+                SCHEDULER.execute(this::drain);
+                return;
+            }
+
+            long delay = Math.min(MAX_RETRY_DELAY_MILLIS,
+                    INITIAL_RETRY_DELAY_MILLIS << Math.min(failedAttempts - 1, 20));
+            LOGGER.warn("There was an error sending {} events from the outbox, retrying in " +
+                    "{} ms.", batch.count, delay);
+            SCHEDULER.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Returns whether sending may succeed later: I/O errors such as timeouts, server
+     * errors and rate limits pass, other client errors repeat on every attempt.
+     */
+    private static boolean isTransient(Throwable cause) {
+        if (cause instanceof AscendHttpStatusException) {
+            int status = ((AscendHttpStatusException) cause).getStatusCode();
+            return status < 400 || status >= 500 || status == 408 || status == 429;
+        }
+        return cause instanceof IOException;
+    }
+
+    /**
+     * Moves a batch that can not be sent out of the log, into the dead letter file.
+     */
+    private synchronized void deadLetter(Batch batch, Throwable cause) {
+        if (closed) {
+            // the directory may belong to another outbox by now
+            return;
+        }
+
+        Path file = directory.resolve(DEAD_LETTER_FILE);
+        try {
+            Files.write(file, (batch.body + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            LOGGER.error("{} events could not be sent from the outbox and were moved to {}.",
+                    batch.count, file, cause);
+        } catch (IOException e) {
+            LOGGER.error("{} events could not be sent from the outbox and were dropped.",
+                    batch.count, e);
+        }
+
+        metrics.increment(AscendMetrics.Counter.EVENT_FAILED, batch.count);
+        acknowledge(batch);
+    }
+
+    private static boolean hasFiniteNumbers(JsonObject event) {
+        for (Map.Entry<String, JsonElement> member : event.entrySet()) {
+            JsonElement value = member.getValue();
+            if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()) {
+                double number = value.getAsDouble();
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized Batch readBatch() {
+        if (closed) {
+            return null;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write('[');
+        long segmentId = readSegment;
+        int position = readPosition;
+        int count = 0;
+        while (count < maxBatchSize) {
+            MappedByteBuffer segment = segments.get(segmentId);
+            int length = recordLength(segment, position);
+            if (length <= 0 || (segmentId == writeSegment && position >= writePosition)) {
+                Long next = segments.higherKey(segmentId);
+                if (next == null) {
+                    break;
+                }
+                segmentId = next;
+                position = SEGMENT_HEADER_SIZE;
+                continue;
+            }
+
+            if (count > 0) {
+                body.write(',');
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer record = segment.duplicate();
+            record.position(position + RECORD_HEADER_SIZE);
+            record.get(payload);
+            body.write(payload, 0, length);
+            position += RECORD_HEADER_SIZE + length;
+            count++;
+        }
+
+        if (count == 0) {
+            return null;
+        }
+
+        body.write(']');
+        return new Batch(new String(body.toByteArray(), StandardCharsets.UTF_8), count,
+                segmentId, position);
+    }
+
+    private synchronized void acknowledge(Batch batch) {
+        if (closed) {
+            // the batch is sent again once the outbox is reopened
+            return;
+        }
+
+        readSegment = batch.nextSegment;
+        readPosition = batch.nextPosition;
+        writeCheckpoint(readSegment, readPosition);
+        pendingEvents.addAndGet(-batch.count);
+        deleteSegmentsBefore(readSegment);
+    }
+
+    private void deleteSegmentsBefore(long firstSegment) {
+        Iterator<Map.Entry<Long, MappedByteBuffer>> acknowledged =
+                segments.headMap(firstSegment).entrySet().iterator();
+        while (acknowledged.hasNext()) {
+            long segmentId = acknowledged.next().getKey();
+            acknowledged.remove();
+            try {
+                Files.deleteIfExists(segmentPath(segmentId));
+            } catch (IOException e) {
+                LOGGER.warn("There was an error deleting outbox segment {}.", segmentId, e);
+            }
+        }
+    }
+
+    /**
+     * Maps the existing segments and finds the checkpoint and the end of the log.
+     */
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long segmentId = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+                MappedByteBuffer segment = mapFile(file, 0);
+                if (segment.capacity() < SEGMENT_HEADER_SIZE
+                        || segment.getInt(0) != SEGMENT_MAGIC) {
+                    throw new IOException("Not an event outbox segment: " + file);
+                }
+                segments.put(segmentId, segment);
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected file in the event outbox " + directory, e);
+        }
+
+        if (segments.isEmpty()) {
+            createSegment(0);
+        }
+
+        writeSegment = segments.lastKey();
+        writePosition = recoverWritePosition(segments.lastEntry().getValue());
+
+        readSegment = checkpoint.getLong(0);
+        readPosition = checkpoint.getInt(8);
+        if (checkpoint.getInt(12) != checkpointChecksum(readSegment, readPosition)
+                || !segments.containsKey(readSegment)) {
+            // without a valid checkpoint everything left in the log is sent again
+            readSegment = segments.firstKey();
+            readPosition = SEGMENT_HEADER_SIZE;
+        }
+        deleteSegmentsBefore(readSegment);
+
+        long pending = 0;
+        for (Map.Entry<Long, MappedByteBuffer> entry : segments.tailMap(readSegment).entrySet()) {
+            int position = entry.getKey() == readSegment ? readPosition : SEGMENT_HEADER_SIZE;
+            int end = entry.getKey() == writeSegment
+                    ? writePosition : entry.getValue().capacity();
+            int length;
+            while (position < end && (length = recordLength(entry.getValue(), position)) > 0) {
+                position += RECORD_HEADER_SIZE + length;
+                pending++;
+            }
+        }
+        pendingEvents.set(pending);
+        if (pending > 0) {
+            LOGGER.info("Reopened event outbox {} with {} pending events.", directory, pending);
+        }
+    }
+
+    /**
+     * Returns the end of the complete records in the last segment, clearing any record
+     * that was torn by a crash.
+     */
+    private static int recoverWritePosition(MappedByteBuffer segment) {
+        int position = SEGMENT_HEADER_SIZE;
+        int length;
+        while ((length = recordLength(segment, position)) > 0
+                && segment.getInt(position + 4) == checksum(segment, position, length)) {
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        for (int i = position; i < segment.capacity(); i++) {
+            segment.put(i, (byte) 0);
+        }
+        return position;
+    }
+
+    private static int recordLength(MappedByteBuffer segment, int position) {
+        if (position + RECORD_HEADER_SIZE > segment.capacity()) {
+            return 0;
+        }
+
+        int length = segment.getInt(position);
+        return length > 0 && position + RECORD_HEADER_SIZE + length <= segment.capacity()
+                ? length : 0;
+    }
+
+    private MappedByteBuffer createSegment(long segmentId) throws IOException {
+        MappedByteBuffer segment = mapFile(segmentPath(segmentId), segmentSize);
+        segment.putInt(0, SEGMENT_MAGIC);
+        segments.put(segmentId, segment);
+        return segment;
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segmentId,
+                SEGMENT_SUFFIX));
+    }
+
+    private void writeCheckpoint(long segmentId, int position) {
+        checkpoint.putLong(0, segmentId);
+        checkpoint.putInt(8, position);
+        checkpoint.putInt(12, checkpointChecksum(segmentId, position));
+    }
+
+    private static int checkpointChecksum(long segmentId, int position) {
+        byte[] bytes = ByteBuffer.allocate(12).putLong(segmentId).putInt(position).array();
+        return checksum(bytes, bytes.length);
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(MappedByteBuffer segment, int position, int length) {
+        byte[] payload = new byte[length];
+        ByteBuffer record = segment.duplicate();
+        record.position(position + RECORD_HEADER_SIZE);
+        record.get(payload);
+        return checksum(payload, length);
+    }
+
+    /**
+     * Locks the directory against other outboxes, in this process or another one.
+     */
+    private static FileChannel lockDirectory(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (lock == null) {
+            channel.close();
+            throw new IOException("The event outbox " + directory + " is already open.");
+        }
+        return channel;
+    }
+
+    /**
+     * Maps a file, creating it with the given size if it does not exist.
+     */
+    private static MappedByteBuffer mapFile(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long mappedSize = Math.max(channel.size(), size);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        }
+    }
+
+    private static final class Batch {
+
+        private final String body;
+        private final int count;
+        private final long nextSegment;
+        private final int nextPosition;
+
+        Batch(String body, int count, long nextSegment, int nextPosition) {
+            this.body = body;
+            this.count = count;
+            this.nextSegment = nextSegment;
+            this.nextPosition = nextPosition;
+        }
+    }
+
+    public static class Builder {
+
+        private final Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private int maximumSegments = DEFAULT_MAXIMUM_SEGMENTS;
+        private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+        Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets the size in bytes of new segment files.
+         * @param segmentSize the size of a segment in bytes
+         * @return EventOutbox builder class
+         */
+        public Builder setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of segments the outbox may hold. Once they are all full,
+         * new events are dropped until sent events free a segment.
+         * @param maximumSegments the maximum number of segment files
+         * @return EventOutbox builder class
+         */
+        public Builder setMaximumSegments(int maximumSegments) {
+            this.maximumSegments = maximumSegments;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of events posted in one request.
+         * @param maxBatchSize the maximum batch size
+         * @return EventOutbox builder class
+         */
+        public Builder setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Opens the outbox directory, creating it if it does not exist.
+         * @return an EventOutbox instance
+         * @throws IOException if the outbox files can not be opened or created, or if
+         *                     another outbox has the directory open
+         */
+        public EventOutbox build() throws IOException {
+            return new EventOutbox(directory, segmentSize, maximumSegments, maxBatchSize);
+        }
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package ai.evolv;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides which custom events are sent.
+ * <p>
+ *     An event key can be sampled at a fixed rate, and the decision is the same for
+ *     every event of a participant: it depends only on a hash of the participant's
+ *     user id and the key. Sent events of a sampled key carry the inverse of the rate
+ *     as their weight, so totals can be scaled back up. A key can also be rate limited
+ *     with a token bucket, and a ceiling limits the custom events of every key
+ *     together. The buckets belong to the environment and are shared by the samplers of
+ *     all its configs. Events that are not sent are counted in the metrics.
+ * </p>
+ */
+final class EventSampler {
+
+    /** The weight returned for an event that must not be sent. */
+    static final double DROPPED = 0;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, Double> samplingRates;
+    private final Map<String, TokenBucket> rateLimits;
+    private final TokenBucket ceiling;
+    private final AscendMetrics metrics;
+
+    EventSampler(Map<String, Double> samplingRates, Map<String, TokenBucket> rateLimits,
+                 TokenBucket ceiling, AscendMetrics metrics) {
+        for (double rate : samplingRates.values()) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("A sampling rate must be between 0 and 1.");
+            }
+        }
+
+        this.samplingRates = new HashMap<>(samplingRates);
+        this.rateLimits = new HashMap<>(rateLimits);
+        this.ceiling = ceiling;
+        this.metrics = NoopAscendMetrics.orNoop(metrics);
+    }
+
+    /**
+     * Decides whether a participant's event is sent.
+     * @param userId the participant's user id
+     * @param key the event key
+     * @return the weight of the event, or {@link #DROPPED} if it must not be sent
+     */
+    double sample(String userId, String key) {
+        Double rate = samplingRates.get(key);
+        if (rate != null && samplePoint(userId, key) >= rate) {
+            metrics.increment(AscendMetrics.Counter.EVENT_SAMPLED_OUT, 1);
+            return DROPPED;
+        }
+
+        TokenBucket rateLimit = rateLimits.get(key);
+        if ((rateLimit != null && !rateLimit.tryAcquire())
+                || (ceiling != null && !ceiling.tryAcquire())) {
+            metrics.increment(AscendMetrics.Counter.EVENT_RATE_LIMITED, 1);
+            return DROPPED;
+        }
+
+        return rate != null ? 1 / rate : 1;
+    }
+
+    /**
+     * Maps a participant and a key to a point uniformly spread over [0, 1). The hash
+     * is computed from the UTF-8 bytes, so the point is the same on every JVM.
+     */
+    static double samplePoint(String userId, String key) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, String.valueOf(userId).getBytes(StandardCharsets.UTF_8));
+        hash = (hash ^ 0xff) * FNV_PRIME;
+        hash = hash(hash, key.getBytes(StandardCharsets.UTF_8));
+
+        // FNV spreads short inputs poorly over the high bits, finish with a mixer
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private static long hash(long hash, byte[] bytes) {
+        long result = hash;
+        for (byte b : bytes) {
+            result = (result ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return result;
+    }
+
+}
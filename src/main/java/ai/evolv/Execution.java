@@ -1,20 +1,17 @@
 package ai.evolv;
 
 import ai.evolv.exceptions.AscendKeyError;
-import ai.evolv.generics.GenericClass;
 
-import com.google.gson.JsonArray;
-
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Set;
 
 class Execution<T> {
 
     private final String key;
     private final T defaultValue;
-    private final AscendAction function;
+    private final AscendAction<T> function;
 
-    private Set<String> alreadyExecuted = new HashSet<>();
+    private Set<String> alreadyExecuted = Collections.emptySet();
 
     Execution(String key, T defaultValue, AscendAction<T> function) {
         this.key = key;
@@ -26,13 +23,19 @@ class Execution<T> {
         return key;
     }
 
-    void executeWithAllocation(JsonArray rawAllocations) throws AscendKeyError {
-        GenericClass<T> cls = new GenericClass(defaultValue.getClass());
-        Allocations allocations = new Allocations(rawAllocations);
-        T value = allocations.getValueFromGenome(key, cls.getMyType());
+    @SuppressWarnings("unchecked")
+    Class<T> getType() {
+        return (Class<T>) defaultValue.getClass();
+    }
+
+    void executeWithAllocation(Allocations allocations) throws AscendKeyError {
+        executeWithValue(allocations.getValueFromGenome(key, getType()),
+                allocations.getActiveExperiments());
+    }
 
-        Set<String> activeExperiments = allocations.getActiveExperiments();
-        if (alreadyExecuted.isEmpty() || !alreadyExecuted.equals(activeExperiments)) {
+    void executeWithValue(T value, Set<String> activeExperiments) {
+        if (alreadyExecuted.isEmpty() || (alreadyExecuted != activeExperiments
+                && !alreadyExecuted.equals(activeExperiments))) {
             // there was a change to the allocations after reconciliation, apply changes
             function.apply(value);
         }
@@ -1,9 +1,6 @@
 package ai.evolv;
 
-import ai.evolv.exceptions.AscendKeyError;
-
-import com.google.gson.JsonArray;
-
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.slf4j.Logger;
@@ -14,33 +11,64 @@ class ExecutionQueue {
     private static Logger logger = LoggerFactory.getLogger(ExecutionQueue.class);
 
     private final ConcurrentLinkedQueue<Execution> queue;
+    private final AscendMetrics metrics;
 
     ExecutionQueue() {
+        this(AscendMetrics.noop());
+    }
+
+    ExecutionQueue(AscendMetrics metrics) {
         this.queue = new ConcurrentLinkedQueue<>();
+        this.metrics = NoopAscendMetrics.orNoop(metrics);
     }
 
     void enqueue(Execution execution) {
         this.queue.add(execution);
+        metrics.adjust(AscendMetrics.Gauge.EXECUTION_QUEUE_DEPTH, 1);
     }
 
-    void executeAllWithValuesFromAllocations(JsonArray allocations) {
-        while (!queue.isEmpty()) {
-            Execution execution = queue.remove();
-            try {
-                execution.executeWithAllocation(allocations);
-            } catch (AscendKeyError e) {
+    /**
+     * Runs every queued execution with its value from the allocations.
+     * <p>
+     *     Values are resolved through the snapshot's cache, so executions subscribed to
+     *     the same key and type decode it once. Executions still run in the order they
+     *     were queued.
+     * </p>
+     * @param allocations the participant's allocations
+     */
+    @SuppressWarnings("unchecked")
+    void executeAllWithValuesFromAllocations(Allocations allocations) {
+        long start = System.nanoTime();
+        Set<String> activeExperiments = allocations.getActiveExperiments();
+        Execution execution;
+        while ((execution = dequeue()) != null) {
+            Object value = allocations.resolveValue(execution.getKey(), execution.getType());
+            if (value == Allocations.MISSING_VALUE) {
                 logger.warn("There was an error retrieving the value of %s from the allocation.",
                         execution.getKey());
                 execution.executeWithDefault();
+            } else {
+                execution.executeWithValue(value, activeExperiments);
             }
         }
+        metrics.recordLatency(AscendMetrics.Timer.EXECUTION_DISPATCH, System.nanoTime() - start);
     }
 
     void executeAllWithValuesFromDefaults() {
-        while (!queue.isEmpty()) {
-            Execution execution = queue.remove();
+        long start = System.nanoTime();
+        Execution execution;
+        while ((execution = dequeue()) != null) {
             execution.executeWithDefault();
         }
+        metrics.recordLatency(AscendMetrics.Timer.EXECUTION_DISPATCH, System.nanoTime() - start);
+    }
+
+    private Execution dequeue() {
+        Execution execution = queue.poll();
+        if (execution != null) {
+            metrics.adjust(AscendMetrics.Gauge.EXECUTION_QUEUE_DEPTH, -1);
+        }
+        return execution;
     }
 
 }
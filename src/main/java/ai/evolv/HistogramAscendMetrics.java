@@ -0,0 +1,76 @@
+package ai.evolv;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An AscendMetrics that keeps its measurements in memory.
+ * <p>
+ *     Every timer is recorded into a {@link LatencyHistogram}, counters and gauges are
+ *     plain atomic values. All of them are preallocated per enum constant, so
+ *     recording is allocation free and can stay enabled in production. Read the
+ *     measurements periodically and export them to your monitoring system.
+ * </p>
+ */
+public class HistogramAscendMetrics implements AscendMetrics {
+
+    private final LatencyHistogram[] histograms =
+            new LatencyHistogram[Timer.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final AtomicLongArray gauges = new AtomicLongArray(Gauge.values().length);
+
+    /**
+     * Creates empty histograms, counters and gauges for every metric.
+     */
+    public HistogramAscendMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordLatency(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void increment(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    @Override
+    public void adjust(Gauge gauge, long delta) {
+        gauges.addAndGet(gauge.ordinal(), delta);
+    }
+
+    /**
+     * Returns the histogram of a timer's recorded durations.
+     * @param timer the timer
+     * @return the timer's histogram
+     */
+    public LatencyHistogram getHistogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    /**
+     * Returns the current value of a counter.
+     * @param counter the counter
+     * @return the counter's value
+     */
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Returns the current value of a gauge.
+     * @param gauge the gauge
+     * @return the gauge's value
+     */
+    public long getValue(Gauge gauge) {
+        return gauges.get(gauge.ordinal());
+    }
+
+}
@@ -17,4 +17,24 @@ public interface HttpClient {
      */
     CompletableFuture<String> get(String url);
 
+    /**
+     * Performs a POST request with a JSON body using the provided url.
+     * <p>
+     *     This call is asynchronous and behaves like {@link #get(String)}. It is
+     *     used to send batched events. Implementations that do not support it
+     *     should not override it, the default returns a failed future, and
+     *     {@link AscendConfig.Builder#build()} rejects event batching and the event
+     *     outbox for such implementations.
+     * </p>
+     * @param url a valid url representing a call to the Participant API.
+     * @param body a JSON request body
+     * @return a response future
+     */
+    default CompletableFuture<String> post(String url, String body) {
+        CompletableFuture<String> responseFuture = new CompletableFuture<>();
+        responseFuture.completeExceptionally(new UnsupportedOperationException(
+                "POST requests are not supported by this HttpClient."));
+        return responseFuture;
+    }
+
 }
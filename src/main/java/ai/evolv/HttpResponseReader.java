@@ -0,0 +1,24 @@
+package ai.evolv;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a value directly from the bytes of a response body.
+ * @param <T> the type of value read from the body
+ */
+@FunctionalInterface
+public interface HttpResponseReader<T> {
+
+    /**
+     * Reads a value from a successful response body.
+     * <p>
+     *     The stream is owned by the HttpClient, it is closed after this method returns.
+     * </p>
+     * @param body the raw bytes of the response body
+     * @return the value read from the body
+     * @throws IOException if the body could not be read
+     */
+    T read(InputStream body) throws IOException;
+
+}
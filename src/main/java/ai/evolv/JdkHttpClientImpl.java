@@ -0,0 +1,83 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HttpClient built on the java.net.http client of Java 11 and later.
+ * <p>
+ *     This is the Java 8 version of the class in the multi-release jar, the
+ *     java.net.http client is not available and creating the client throws an
+ *     UnsupportedOperationException. On Java 11 and later the JVM loads the
+ *     implementation from META-INF/versions/11 instead.
+ * </p>
+ */
+public class JdkHttpClientImpl implements ConditionalHttpClient {
+
+    private static final String UNSUPPORTED = "JdkHttpClientImpl requires Java 11 or later.";
+
+    /**
+     * Initializes a client sharing the default java.net.http client.
+     * @param timeout specify a request timeout for the client.
+     * @throws UnsupportedOperationException on Java 8
+     */
+    public JdkHttpClientImpl(long timeout) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public CompletableFuture<String> get(String url) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    @Override
+    public <T> CompletableFuture<ConditionalResponse<T>> getConditional(
+            String url, String etag, HttpResponseReader<T> reader) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    @Override
+    public CompletableFuture<String> post(String url, String body) {
+        throw new UnsupportedOperationException(UNSUPPORTED);
+    }
+
+    public static class Builder {
+
+        public Builder setRequestTimeout(long timeout, TimeUnit unit) {
+            return this;
+        }
+
+        public Builder setConnectTimeout(long timeout, TimeUnit unit) {
+            return this;
+        }
+
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            return this;
+        }
+
+        public Builder setExecutor(Executor executor) {
+            return this;
+        }
+
+        /**
+         * Builds an instance of JdkHttpClientImpl.
+         * @return never on Java 8
+         * @throws UnsupportedOperationException on Java 8
+         */
+        public JdkHttpClientImpl build() {
+            throw new UnsupportedOperationException(UNSUPPORTED);
+        }
+
+    }
+
+}
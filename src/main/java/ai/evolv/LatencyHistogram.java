@@ -0,0 +1,103 @@
+package ai.evolv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations with a bounded relative error.
+ * <p>
+ *     Like an HdrHistogram, values are counted in log-linear buckets: every power of
+ *     two range is split into {@value #SUB_BUCKET_COUNT} equal sub buckets, so any
+ *     recorded value is reported within about 3% of its true value. The buckets
+ *     are a fixed array of counters, recording a value never allocates or locks.
+ *     Reads are not atomic with respect to concurrent recording.
+ * </p>
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram() {}
+
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    static int indexOf(long value) {
+        int shift = Math.max(0, (Long.SIZE - 1 - Long.numberOfLeadingZeros(value))
+                - SUB_BUCKET_BITS);
+        return (int) ((shift << SUB_BUCKET_BITS) + (value >>> shift));
+    }
+
+    static long highestValueAt(int index) {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     * @return the count
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Returns the mean of the recorded durations, or 0 if none were recorded.
+     * @param unit the time unit of the result
+     * @return the mean duration
+     */
+    public double getMean(TimeUnit unit) {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count / unit.toNanos(1);
+    }
+
+    /**
+     * Returns the largest recorded duration.
+     * @param unit the time unit of the result
+     * @return the maximum duration
+     */
+    public long getMax(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the duration at or below which the given percentage of recorded
+     * durations fall, or 0 if none were recorded.
+     * @param percentile a percentile between 0 and 100
+     * @param unit the time unit of the result
+     * @return the duration at the percentile
+     */
+    public long getValueAtPercentile(double percentile, TimeUnit unit) {
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                long value = Math.min(highestValueAt(i), maxNanos.get());
+                return unit.convert(value, TimeUnit.NANOSECONDS);
+            }
+        }
+        return getMax(unit);
+    }
+
+}
@@ -0,0 +1,764 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An allocation store persisted in a memory-mapped file.
+ * <p>
+ *     The file holds a fixed size hash index of user ids followed by an append-only
+ *     log of allocation records. Point lookups probe the index and read a single
+ *     record, so stored allocations are not held on the heap apart from a small cache
+ *     of recently decoded ones. Writes append a new record and repoint the index.
+ *     When the index or the log is full, the live records are compacted in place:
+ *     overwritten and expired records are dropped and, if that does not free enough
+ *     room, the least recently written participants are evicted.
+ * </p>
+ * <p>
+ *     Every record carries a checksum and is bounds checked before it is read, and a
+ *     record that fails either check is treated as missing. A file left behind by a
+ *     crash during compaction is emptied when it is reopened. Otherwise reopening a
+ *     file only maps it, there is no rehydration pass, so the stored allocations
+ *     survive restarts at no startup cost. The file is locked while the store is
+ *     open. Call {@link #close()} to force pending writes to disk and unlock it.
+ * </p>
+ */
+public class MappedAscendAllocationStore implements AscendAllocationStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+            MappedAscendAllocationStore.class);
+
+    static final int DEFAULT_MAXIMUM_ENTRIES = 100000;
+    static final int DEFAULT_MAXIMUM_LOG_SIZE = 256 * 1024 * 1024;
+    static final int DEFAULT_DECODED_CACHE_SIZE = 1024;
+
+    private static final int MAGIC = 0x41534332;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SLOT_COUNT_OFFSET = 4;
+    private static final int ENTRY_COUNT_OFFSET = 8;
+    private static final int STATE_OFFSET = 12;
+    private static final int WRITE_POSITION_OFFSET = 16;
+    private static final int STATE_CLEAN = 0;
+    private static final int STATE_COMPACTING = 1;
+    private static final int SLOT_SIZE = 16;
+    private static final int SLOT_HASH_OFFSET = 8;
+    private static final double MAXIMUM_LOAD_FACTOR = 0.75;
+
+    // keyLength, etagLength (-1 without an etag), valueLength, checksum, writeTime
+    private static final int ETAG_LENGTH_OFFSET = 4;
+    private static final int VALUE_LENGTH_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 12;
+    private static final int WRITE_TIME_OFFSET = 16;
+    private static final int RECORD_HEADER_SIZE = 24;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long expireAfterWriteMillis;
+    private final LongSupplier clock;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicReferenceArray<Decoded> decoded;
+
+    // guarded by lock
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private int dataStart;
+    private long generation;
+    private boolean closed;
+
+    private volatile boolean warnedCorrupt;
+    private volatile boolean warnedOversized;
+    private volatile JsonArray allocations = new JsonArray();
+
+    private MappedAscendAllocationStore(Path file, int maximumEntries, int maximumLogSize,
+                                        long expireAfterWriteMillis, int decodedCacheSize,
+                                        LongSupplier clock) throws IOException {
+        if (maximumEntries < 1 || maximumLogSize < 1 || expireAfterWriteMillis < 0
+                || decodedCacheSize < 0) {
+            throw new IllegalArgumentException("The store needs at least one entry and one " +
+                    "byte of log, and its expiry and cache size must not be negative.");
+        }
+
+        this.file = file;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+        this.clock = clock;
+        this.decoded = decodedCacheSize == 0 ? null
+                : new AtomicReferenceArray<>(tableSizeFor(decodedCacheSize));
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lockFile();
+            if (channel.size() > 0) {
+                reopen();
+            } else {
+                create(slotCountFor(maximumEntries), maximumLogSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static Builder builder(Path file) {
+        return new Builder(file);
+    }
+
+    @Override
+    public JsonArray get() {
+        return allocations;
+    }
+
+    @Override
+    public JsonArray get(String userId) {
+        if (userId == null) {
+            return new JsonArray();
+        }
+
+        int hash = spread(userId.hashCode());
+        lock.readLock().lock();
+        try {
+            long offset = buffer.getLong(slotPosition(findSlot(
+                    userId.getBytes(StandardCharsets.UTF_8), hash)));
+            Decoded cached = decoded == null ? null : decoded.get(hash & (decoded.length() - 1));
+            if (cached != null && cached.position == offset && cached.generation == generation
+                    && cached.userId.equals(userId)) {
+                // the record was checked when it was decoded
+                return isExpired(cached.position) ? new JsonArray() : cached.allocations;
+            }
+
+            int position = validate(offset);
+            JsonArray parsed = position < 0 ? null : parseValue(position);
+            if (parsed == null) {
+                return new JsonArray();
+            }
+
+            if (decoded != null) {
+                decoded.set(hash & (decoded.length() - 1),
+                        new Decoded(userId, position, generation, parsed));
+            }
+            return parsed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isKeyedByUserId() {
+        return true;
+    }
+
+    @Override
+    public String getEtag(String userId) {
+        if (userId == null) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            int position = findRecord(userId.getBytes(StandardCharsets.UTF_8),
+                    spread(userId.hashCode()));
+            if (position < 0) {
+                return null;
+            }
+
+            int etagLength = buffer.getInt(position + ETAG_LENGTH_OFFSET);
+            return etagLength < 0 ? null : readString(position + RECORD_HEADER_SIZE
+                    + buffer.getInt(position), etagLength);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getAgeMillis(String userId) {
+        if (userId == null) {
+            return Long.MAX_VALUE;
+        }
+
+        lock.readLock().lock();
+        try {
+            int position = findRecord(userId.getBytes(StandardCharsets.UTF_8),
+                    spread(userId.hashCode()));
+            return position < 0 ? Long.MAX_VALUE
+                    : Math.max(0, clock.getAsLong() - buffer.getLong(position + WRITE_TIME_OFFSET));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(JsonArray allocations) {
+        this.allocations = allocations;
+    }
+
+    @Override
+    public void put(String userId, JsonArray allocations) {
+        put(userId, allocations, null);
+    }
+
+    @Override
+    public void put(String userId, JsonArray allocations, String etag) {
+        if (userId == null || allocations == null) {
+            return;
+        }
+
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] tag = etag == null ? null : etag.getBytes(StandardCharsets.UTF_8);
+        byte[] value = allocations.toString().getBytes(StandardCharsets.UTF_8);
+        long recordSize = (long) RECORD_HEADER_SIZE + key.length
+                + (tag == null ? 0 : tag.length) + value.length;
+        int hash = spread(userId.hashCode());
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (recordSize > buffer.capacity() - dataStart) {
+                warnOversized(recordSize);
+                return;
+            }
+
+            int slot = findSlot(key, hash);
+            boolean newEntry = buffer.getLong(slotPosition(slot)) == 0;
+            if ((newEntry && getEntryCount() + 1 > entryCapacity())
+                    || getWritePosition() + recordSize > buffer.capacity()) {
+                compact(recordSize, newEntry);
+                slot = findSlot(key, hash);
+                newEntry = buffer.getLong(slotPosition(slot)) == 0;
+            }
+
+            int position = (int) getWritePosition();
+            writeRecord(position, key, tag, value, clock.getAsLong());
+            buffer.putLong(WRITE_POSITION_OFFSET, position + recordSize);
+            buffer.putInt(slotPosition(slot) + SLOT_HASH_OFFSET, hash);
+            buffer.putLong(slotPosition(slot), position);
+            if (newEntry) {
+                buffer.putInt(ENTRY_COUNT_OFFSET, getEntryCount() + 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of participants held in the store, including any whose
+     * allocations expired but were not compacted away yet.
+     * @return the number of stored participants
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return getEntryCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces any pending writes to disk and unlocks the file. Allocations are no longer
+     * stored once the store is closed.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            // closing the channel releases the lock, the mapping stays readable
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("There was an error closing the allocation store {}.", file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int getEntryCount() {
+        return buffer.getInt(ENTRY_COUNT_OFFSET);
+    }
+
+    private long getWritePosition() {
+        return buffer.getLong(WRITE_POSITION_OFFSET);
+    }
+
+    private int entryCapacity() {
+        return (int) (slotCount * MAXIMUM_LOAD_FACTOR);
+    }
+
+    private int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the position of the participant's valid, unexpired record, or -1.
+     */
+    private int findRecord(byte[] key, int hash) {
+        return validate(buffer.getLong(slotPosition(findSlot(key, hash))));
+    }
+
+    /**
+     * Returns the position of the record at the offset if it is in bounds, matches its
+     * checksum and has not expired, or -1.
+     */
+    private int validate(long offset) {
+        if (offset == 0) {
+            return -1;
+        }
+
+        int size = recordSize(offset);
+        if (size < 0 || checksum((int) offset, size)
+                != buffer.getInt((int) offset + CHECKSUM_OFFSET)) {
+            warnCorrupt();
+            return -1;
+        }
+        return isExpired((int) offset) ? -1 : (int) offset;
+    }
+
+    private int findSlot(byte[] key, int hash) {
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (true) {
+            int slotPosition = slotPosition(slot);
+            long offset = buffer.getLong(slotPosition);
+            if (offset == 0) {
+                return slot;
+            }
+
+            if (buffer.getInt(slotPosition + SLOT_HASH_OFFSET) == hash
+                    && keyEquals(offset, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(long offset, byte[] key) {
+        if (recordSize(offset) < 0) {
+            return false;
+        }
+
+        int position = (int) offset;
+        if (buffer.getInt(position) != key.length) {
+            return false;
+        }
+
+        int keyStart = position + RECORD_HEADER_SIZE;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(keyStart + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of the record at the offset, or -1 if it does not fit in the
+     * written part of the log.
+     */
+    private int recordSize(long offset) {
+        long writePosition = getWritePosition();
+        if (offset < dataStart || offset > writePosition - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+
+        int position = (int) offset;
+        int keyLength = buffer.getInt(position);
+        int etagLength = buffer.getInt(position + ETAG_LENGTH_OFFSET);
+        int valueLength = buffer.getInt(position + VALUE_LENGTH_OFFSET);
+        if (keyLength < 0 || etagLength < -1 || valueLength < 0) {
+            return -1;
+        }
+
+        long size = (long) RECORD_HEADER_SIZE + keyLength + Math.max(0, etagLength)
+                + valueLength;
+        return position + size > writePosition ? -1 : (int) size;
+    }
+
+    private boolean isExpired(int position) {
+        return expireAfterWriteMillis > 0 && clock.getAsLong()
+                - buffer.getLong(position + WRITE_TIME_OFFSET) >= expireAfterWriteMillis;
+    }
+
+    private JsonArray parseValue(int position) {
+        int keyLength = buffer.getInt(position);
+        int etagLength = Math.max(0, buffer.getInt(position + ETAG_LENGTH_OFFSET));
+        String value = readString(position + RECORD_HEADER_SIZE + keyLength + etagLength,
+                buffer.getInt(position + VALUE_LENGTH_OFFSET));
+        try {
+            return new JsonParser().parse(value).getAsJsonArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            warnCorrupt();
+            return null;
+        }
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer record = buffer.duplicate();
+        record.position(position);
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeRecord(int position, byte[] key, byte[] etag, byte[] value,
+                             long writeTime) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(position);
+        record.putInt(key.length);
+        record.putInt(etag == null ? -1 : etag.length);
+        record.putInt(value.length);
+        record.putInt(0);
+        record.putLong(writeTime);
+        record.put(key);
+        if (etag != null) {
+            record.put(etag);
+        }
+        record.put(value);
+        buffer.putInt(position + CHECKSUM_OFFSET, checksum(position, record.position() - position));
+    }
+
+    /**
+     * Returns the checksum of a record, which covers everything but the checksum itself.
+     */
+    private int checksum(int position, int size) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = buffer.duplicate();
+        record.position(position).limit(position + CHECKSUM_OFFSET);
+        crc.update(record);
+        record.limit(position + size).position(position + WRITE_TIME_OFFSET);
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Moves the live records to the start of the log and rebuilds the index. Expired
+     * and corrupt records are dropped, then the least recently written participants
+     * are evicted until there is room for a record of the given size.
+     */
+    private void compact(long recordSize, boolean newEntry) {
+        // each live record as its position in the high half and its hash in the low half
+        long[] live = new long[slotCount];
+        int count = 0;
+        long liveBytes = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            long offset = buffer.getLong(slotPosition(slot));
+            int size = recordSize(offset);
+            if (offset == 0 || size < 0) {
+                continue;
+            }
+
+            int position = (int) offset;
+            if (checksum(position, size) != buffer.getInt(position + CHECKSUM_OFFSET)
+                    || isExpired(position)) {
+                continue;
+            }
+            int hash = buffer.getInt(slotPosition(slot) + SLOT_HASH_OFFSET);
+            live[count++] = ((long) position << 32) | (hash & 0xffffffffL);
+            liveBytes += size;
+        }
+
+        int evicted = evictOldest(live, count, liveBytes, recordSize, newEntry);
+        long[] kept = Arrays.copyOfRange(live, evicted, count);
+        Arrays.sort(kept);
+
+        buffer.putInt(STATE_OFFSET, STATE_COMPACTING);
+        for (int slot = 0; slot < slotCount; slot++) {
+            buffer.putLong(slotPosition(slot), 0);
+            buffer.putInt(slotPosition(slot) + SLOT_HASH_OFFSET, 0);
+        }
+
+        // records only move towards the start of the log, past records already moved
+        int writePosition = dataStart;
+        for (long entry : kept) {
+            int position = (int) (entry >>> 32);
+            final int hash = (int) entry;
+            byte[] record = new byte[recordSize(position)];
+            ByteBuffer source = buffer.duplicate();
+            source.position(position);
+            source.get(record);
+            ByteBuffer target = buffer.duplicate();
+            target.position(writePosition);
+            target.put(record);
+
+            int slot = findEmptySlot(hash);
+            buffer.putInt(slotPosition(slot) + SLOT_HASH_OFFSET, hash);
+            buffer.putLong(slotPosition(slot), writePosition);
+            writePosition += record.length;
+        }
+
+        buffer.putInt(ENTRY_COUNT_OFFSET, kept.length);
+        buffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+        buffer.putInt(STATE_OFFSET, STATE_CLEAN);
+        generation++;
+        LOGGER.info("Compacted allocation store {} to {} participants, {} were evicted.",
+                file, kept.length, evicted);
+    }
+
+    /**
+     * Orders the live records from the least to the most recently written if some have
+     * to be evicted, and returns how many of the first ones to evict.
+     */
+    private int evictOldest(long[] live, int count, long liveBytes, long recordSize,
+                            boolean newEntry) {
+        int entryCapacity = entryCapacity();
+        long logCapacity = buffer.capacity() - dataStart;
+        boolean entriesFull = newEntry && count + 1 > entryCapacity;
+        boolean logFull = liveBytes + recordSize > logCapacity;
+        if (!entriesFull && !logFull) {
+            return 0;
+        }
+
+        Long[] byAge = new Long[count];
+        for (int i = 0; i < count; i++) {
+            byAge[i] = live[i];
+        }
+        Arrays.sort(byAge, (left, right) -> Long.compare(writeTime(left), writeTime(right)));
+        for (int i = 0; i < count; i++) {
+            live[i] = byAge[i];
+        }
+
+        // evict a quarter of the store more than needed, so the next writes do not compact
+        int entryTarget = entriesFull ? entryCapacity * 3 / 4 : count;
+        long byteTarget = logFull ? Math.min(logCapacity - recordSize, logCapacity * 3 / 4)
+                : liveBytes;
+        int evicted = 0;
+        while (evicted < count && (count - evicted > entryTarget || liveBytes > byteTarget)) {
+            liveBytes -= recordSize((int) (live[evicted] >>> 32));
+            evicted++;
+        }
+        return evicted;
+    }
+
+    private long writeTime(long entry) {
+        return buffer.getLong((int) (entry >>> 32) + WRITE_TIME_OFFSET);
+    }
+
+    private int findEmptySlot(int hash) {
+        int mask = slotCount - 1;
+        int slot = hash & mask;
+        while (buffer.getLong(slotPosition(slot)) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void warnCorrupt() {
+        if (!warnedCorrupt) {
+            warnedCorrupt = true;
+            LOGGER.warn("Allocation store {} holds corrupt records, they are ignored.", file);
+        }
+    }
+
+    private void warnOversized(long recordSize) {
+        if (!warnedOversized) {
+            warnedOversized = true;
+            LOGGER.warn("Allocations of {} bytes do not fit in the log of allocation store {} " +
+                    "and are not stored.", recordSize, file);
+        }
+    }
+
+    private void lockFile() throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+
+        if (fileLock == null) {
+            throw new IOException("The allocation store " + file + " is already open.");
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Not an allocation store file: " + file);
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("Not an allocation store file: " + file);
+        }
+
+        slotCount = buffer.getInt(SLOT_COUNT_OFFSET);
+        long indexEnd = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+        if (slotCount < 1 || Integer.bitCount(slotCount) != 1 || indexEnd > buffer.capacity()) {
+            throw new IOException("The index of allocation store " + file + " is corrupt.");
+        }
+        dataStart = (int) indexEnd;
+
+        long writePosition = getWritePosition();
+        int entryCount = getEntryCount();
+        if (buffer.getInt(STATE_OFFSET) != STATE_CLEAN || writePosition < dataStart
+                || writePosition > buffer.capacity() || entryCount < 0
+                || entryCount > slotCount) {
+            LOGGER.warn("Allocation store {} was not closed cleanly and was emptied.", file);
+            clear();
+        }
+        LOGGER.info("Reopened allocation store {} with {} entries.", file, getEntryCount());
+    }
+
+    private void create(int slots, int logSize) throws IOException {
+        long fileSize = (long) HEADER_SIZE + (long) slots * SLOT_SIZE + logSize;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("An allocation store file can not exceed 2GB.");
+        }
+
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(SLOT_COUNT_OFFSET, slots);
+        slotCount = slots;
+        dataStart = HEADER_SIZE + slots * SLOT_SIZE;
+        clear();
+        buffer.force();
+    }
+
+    private void clear() {
+        for (int slot = 0; slot < slotCount; slot++) {
+            buffer.putLong(slotPosition(slot), 0);
+            buffer.putInt(slotPosition(slot) + SLOT_HASH_OFFSET, 0);
+        }
+        buffer.putInt(ENTRY_COUNT_OFFSET, 0);
+        buffer.putLong(WRITE_POSITION_OFFSET, dataStart);
+        buffer.putInt(STATE_OFFSET, STATE_CLEAN);
+    }
+
+    private static int slotCountFor(int maximumEntries) {
+        int slotCount = 1;
+        while (slotCount * MAXIMUM_LOAD_FACTOR < maximumEntries) {
+            slotCount <<= 1;
+        }
+        return slotCount;
+    }
+
+    private static int tableSizeFor(int size) {
+        return Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A decoded record, valid while the record stays at the same position.
+     */
+    private static final class Decoded {
+
+        private final String userId;
+        private final int position;
+        private final long generation;
+        private final JsonArray allocations;
+
+        Decoded(String userId, int position, long generation, JsonArray allocations) {
+            this.userId = userId;
+            this.position = position;
+            this.generation = generation;
+            this.allocations = allocations;
+        }
+    }
+
+    public static class Builder {
+
+        private final Path file;
+        private int maximumEntries = DEFAULT_MAXIMUM_ENTRIES;
+        private int maximumLogSize = DEFAULT_MAXIMUM_LOG_SIZE;
+        private long expireAfterWriteMillis;
+        private int decodedCacheSize = DEFAULT_DECODED_CACHE_SIZE;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        Builder(Path file) {
+            this.file = file;
+        }
+
+        /**
+         * Sets the maximum number of participants held in a new store file.
+         * @param maximumEntries the maximum number of participants
+         * @return MappedAscendAllocationStore builder class
+         */
+        public Builder setMaximumEntries(int maximumEntries) {
+            this.maximumEntries = maximumEntries;
+            return this;
+        }
+
+        /**
+         * Sets the size in bytes of a new store file's record log.
+         * @param maximumLogSize the size of the record log in bytes
+         * @return MappedAscendAllocationStore builder class
+         */
+        public Builder setMaximumLogSize(int maximumLogSize) {
+            this.maximumLogSize = maximumLogSize;
+            return this;
+        }
+
+        /**
+         * Expires a participant's allocations a fixed time after they were stored. The
+         * write times are kept in the file, so allocations also expire across restarts.
+         * @param duration the time to keep allocations for
+         * @param unit the time unit of the duration
+         * @return MappedAscendAllocationStore builder class
+         */
+        public Builder setExpireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Sets the number of recently read allocations kept decoded on the heap, so
+         * that they are not parsed again on every read. Zero disables the cache.
+         * @param decodedCacheSize the number of decoded allocations to keep
+         * @return MappedAscendAllocationStore builder class
+         */
+        public Builder setDecodedCacheSize(int decodedCacheSize) {
+            this.decodedCacheSize = decodedCacheSize;
+            return this;
+        }
+
+        Builder setClock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Opens the store file, creating it if it does not exist.
+         * <p>
+         *     The size settings only apply to new files, an existing file keeps the
+         *     layout it was created with.
+         * </p>
+         * @return a MappedAscendAllocationStore instance
+         * @throws IOException if the file can not be opened or created, is not an
+         *                     allocation store, or is already open
+         */
+        public MappedAscendAllocationStore build() throws IOException {
+            return new MappedAscendAllocationStore(file, maximumEntries, maximumLogSize,
+                    expireAfterWriteMillis, decodedCacheSize, clock);
+        }
+
+    }
+
+}
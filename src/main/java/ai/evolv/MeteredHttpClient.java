@@ -0,0 +1,73 @@
+package ai.evolv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Records the latency and failures of the requests of another HttpClient.
+ */
+class MeteredHttpClient implements ConditionalHttpClient {
+
+    private final HttpClient delegate;
+    private final AscendMetrics metrics;
+
+    MeteredHttpClient(HttpClient delegate, AscendMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    HttpClient getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public CompletableFuture<String> get(String url) {
+        return record(System.nanoTime(), delegate.get(url));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader) {
+        long start = System.nanoTime();
+        if (delegate instanceof StreamingHttpClient) {
+            return record(start, ((StreamingHttpClient) delegate).get(url, reader));
+        }
+
+        return record(start, delegate.get(url)).thenApply(body -> {
+            try {
+                return reader.read(new ByteArrayInputStream(
+                        body.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<ConditionalResponse<T>> getConditional(
+            String url, String etag, HttpResponseReader<T> reader) {
+        if (delegate instanceof ConditionalHttpClient) {
+            return record(System.nanoTime(),
+                    ((ConditionalHttpClient) delegate).getConditional(url, etag, reader));
+        }
+
+        return get(url, reader).thenApply(body -> ConditionalResponse.modified(body, null));
+    }
+
+    @Override
+    public CompletableFuture<String> post(String url, String body) {
+        return record(System.nanoTime(), delegate.post(url, body));
+    }
+
+    private <T> CompletableFuture<T> record(long start, CompletableFuture<T> response) {
+        return response.whenComplete((result, ex) -> {
+            metrics.recordLatency(AscendMetrics.Timer.HTTP_REQUEST, System.nanoTime() - start);
+            if (ex != null) {
+                metrics.increment(AscendMetrics.Counter.HTTP_REQUEST_FAILURE, 1);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,34 @@
+package ai.evolv;
+
+/**
+ * The default AscendMetrics, it ignores every measurement.
+ */
+final class NoopAscendMetrics implements AscendMetrics {
+
+    static final NoopAscendMetrics INSTANCE = new NoopAscendMetrics();
+
+    private NoopAscendMetrics() {}
+
+    /**
+     * Returns the given metrics, or the no-op metrics if there are none.
+     * @param metrics configured metrics, possibly null
+     * @return a non null AscendMetrics
+     */
+    static AscendMetrics orNoop(AscendMetrics metrics) {
+        return metrics != null ? metrics : INSTANCE;
+    }
+
+    static boolean isEnabled(AscendMetrics metrics) {
+        return metrics != null && metrics != INSTANCE;
+    }
+
+    @Override
+    public void recordLatency(Timer timer, long nanos) {}
+
+    @Override
+    public void increment(Counter counter, long amount) {}
+
+    @Override
+    public void adjust(Gauge gauge, long delta) {}
+
+}
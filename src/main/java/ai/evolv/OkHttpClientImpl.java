@@ -1,18 +1,37 @@
 package ai.evolv;
 
+import ai.evolv.exceptions.AscendHttpStatusException;
+
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
-public class OkHttpClientImpl implements HttpClient {
+public class OkHttpClientImpl implements ConditionalHttpClient {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ETAG = "ETag";
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    static final long DEFAULT_KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final int DEFAULT_MAX_REQUESTS = 64;
+    // every request of an environment goes to one host, so the host may use the whole limit
+    static final int DEFAULT_MAX_REQUESTS_PER_HOST = DEFAULT_MAX_REQUESTS;
 
     private final OkHttpClient client;
 
@@ -21,10 +40,19 @@ public class OkHttpClientImpl implements HttpClient {
      * @param timeout specify a request timeout for the client.
      */
     public OkHttpClientImpl(long timeout) {
-        this.client = new OkHttpClient.Builder()
-                .callTimeout(timeout, TimeUnit.MILLISECONDS)
-                .connectionPool(new ConnectionPool(3, 1000, TimeUnit.MILLISECONDS))
-                .build();
+        this(builder().setRequestTimeout(timeout, TimeUnit.MILLISECONDS).buildClient());
+    }
+
+    private OkHttpClientImpl(OkHttpClient client) {
+        this.client = client;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    OkHttpClient getClient() {
+        return client;
     }
 
     /**
@@ -35,11 +63,77 @@ public class OkHttpClientImpl implements HttpClient {
      *     the API
      */
     public CompletableFuture<String> get(String url) {
-        CompletableFuture<String> responseFuture = new CompletableFuture<>();
         final Request request = new Request.Builder()
                 .url(url)
                 .build();
 
+        return execute(request, (response, body) -> body.string());
+    }
+
+    /**
+     * Performs a GET request with the given url using the client from
+     * okhttp3, streaming the response body's bytes to the reader.
+     * @param url a valid url representing a call to the Participant API.
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the value read from
+     *     the response
+     */
+    @Override
+    public <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader) {
+        final Request request = new Request.Builder()
+                .url(url)
+                .build();
+
+        return execute(request, (response, body) -> reader.read(body.byteStream()));
+    }
+
+    /**
+     * Performs a conditional GET request with the given url using the client
+     * from okhttp3, streaming the body of a modified response to the reader.
+     * @param url a valid url representing a call to the Participant API.
+     * @param etag the ETag of the stored resource, or null
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the response
+     */
+    @Override
+    public <T> CompletableFuture<ConditionalResponse<T>> getConditional(
+            String url, String etag, HttpResponseReader<T> reader) {
+        Request.Builder request = new Request.Builder().url(url);
+        if (etag != null) {
+            request.header(IF_NONE_MATCH, etag);
+        }
+
+        return execute(request.build(), (response, body) -> {
+            if (response.code() == HTTP_NOT_MODIFIED) {
+                return ConditionalResponse.notModified(etag);
+            }
+            return ConditionalResponse.modified(reader.read(body.byteStream()),
+                    response.header(ETAG));
+        });
+    }
+
+    /**
+     * Performs a POST request with the given url and JSON body using the client
+     * from okhttp3.
+     * @param url a valid url representing a call to the Participant API.
+     * @param body a JSON request body
+     * @return a Completable future instance containing a response from
+     *     the API
+     */
+    @Override
+    public CompletableFuture<String> post(String url, String body) {
+        final Request request = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(JSON, body))
+                .build();
+
+        return execute(request, (response, responseBody) -> responseBody.string());
+    }
+
+    private <T> CompletableFuture<T> execute(Request request, BodyReader<T> bodyReader) {
+        CompletableFuture<T> responseFuture = new CompletableFuture<>();
         client.newCall(request).enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
@@ -48,19 +142,17 @@ public class OkHttpClientImpl implements HttpClient {
 
             @Override
             public void onResponse(Call call, Response response) {
-                String body = "";
                 try (ResponseBody responseBody = response.body()) {
-                    if (responseBody != null) {
-                        body = responseBody.string();
-                    }
-
-                    if (!response.isSuccessful()) {
-                        throw new IOException(String.format("Unexpected response " +
-                                "when making GET request: %s using url: %s with body: %s",
-                                response, request.url(), body));
+                    if (!response.isSuccessful() && !isNotModified(request, response)) {
+                        String body = responseBody == null ? "" : responseBody.string();
+                        throw new AscendHttpStatusException(String.format("Unexpected " +
+                                "response when making %s request: %s using url: %s with " +
+                                "body: %s", request.method(), response, request.url(), body),
+                                response.code());
                     }
 
-                    responseFuture.complete(body);
+                    responseFuture.complete(bodyReader.read(response, responseBody != null
+                            ? responseBody : ResponseBody.create(null, new byte[0])));
                 } catch (Exception e) {
                     responseFuture.completeExceptionally(e);
                 }
@@ -69,4 +161,136 @@ public class OkHttpClientImpl implements HttpClient {
 
         return responseFuture;
     }
+
+    private static boolean isNotModified(Request request, Response response) {
+        return response.code() == HTTP_NOT_MODIFIED && request.header(IF_NONE_MATCH) != null;
+    }
+
+    private interface BodyReader<T> {
+        T read(Response response, ResponseBody body) throws IOException;
+    }
+
+    public static class Builder {
+
+        private long requestTimeoutMillis = 0;
+        private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+        private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+        private int maxRequests = DEFAULT_MAX_REQUESTS;
+        private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+        private boolean http2Enabled = true;
+        private OkHttpClient sharedClient;
+
+        /**
+         * Sets the timeout of a whole request, including connecting and reading the
+         * response. A timeout of 0 means no timeout.
+         * @param timeout the request timeout
+         * @param unit the time unit of the timeout
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setRequestTimeout(long timeout, TimeUnit unit) {
+            this.requestTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the number of idle connections kept open for reuse.
+         * @param maxIdleConnections the maximum number of idle connections
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Sets how long an idle connection is kept open before it is closed.
+         * @param duration the keep alive duration
+         * @param unit the time unit of the duration
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setKeepAlive(long duration, TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests executed concurrently, further
+         * requests are queued.
+         * @param maxRequests the maximum number of concurrent requests
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests executed concurrently against a single
+         * host. Every request of an environment goes to the same host, so this bounds
+         * the throughput of allocation fetches and events.
+         * @param maxRequestsPerHost the maximum number of concurrent requests per host
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Enables or disables HTTP/2. When enabled, HTTP/2 is negotiated over TLS and
+         * concurrent requests to a host are multiplexed over a single connection.
+         * @param http2Enabled whether to negotiate HTTP/2
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            this.http2Enabled = http2Enabled;
+            return this;
+        }
+
+        /**
+         * Shares the connection pool and dispatcher of an existing OkHttpClient.
+         * <p>
+         *     The pool, keep alive and concurrency settings of this builder are not
+         *     applied to a shared client, only the request timeout and protocols are.
+         * </p>
+         * @param client the client to share
+         * @return OkHttpClientImpl builder class
+         */
+        public Builder setOkHttpClient(OkHttpClient client) {
+            this.sharedClient = client;
+            return this;
+        }
+
+        OkHttpClient buildClient() {
+            OkHttpClient.Builder builder;
+            if (sharedClient != null) {
+                builder = sharedClient.newBuilder();
+            } else {
+                Dispatcher dispatcher = new Dispatcher();
+                dispatcher.setMaxRequests(maxRequests);
+                dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+                builder = new OkHttpClient.Builder()
+                        .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis,
+                                TimeUnit.MILLISECONDS))
+                        .dispatcher(dispatcher);
+            }
+
+            return builder
+                    .callTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .protocols(http2Enabled
+                            ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                            : Collections.singletonList(Protocol.HTTP_1_1))
+                    .build();
+        }
+
+        /**
+         * Builds an instance of OkHttpClientImpl.
+         * @return an OkHttpClientImpl instance
+         */
+        public OkHttpClientImpl build() {
+            return new OkHttpClientImpl(buildClient());
+        }
+
+    }
+
 }
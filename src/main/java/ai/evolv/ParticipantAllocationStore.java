@@ -0,0 +1,47 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+/**
+ * A view of a shared allocation store scoped to a single participant.
+ */
+class ParticipantAllocationStore implements AscendAllocationStore {
+
+    private final AscendAllocationStore store;
+    private final String userId;
+
+    ParticipantAllocationStore(AscendAllocationStore store, String userId) {
+        this.store = store;
+        this.userId = userId;
+    }
+
+    @Override
+    public JsonArray get() {
+        return store.get(userId);
+    }
+
+    @Override
+    public String getEtag() {
+        return store.getEtag(userId);
+    }
+
+    @Override
+    public long getAgeMillis() {
+        return store.getAgeMillis(userId);
+    }
+
+    @Override
+    public void put(JsonArray allocations) {
+        store.put(userId, allocations);
+    }
+
+    @Override
+    public void put(JsonArray allocations, String etag) {
+        store.put(userId, allocations, etag);
+    }
+
+    AscendAllocationStore getSharedStore() {
+        return store;
+    }
+
+}
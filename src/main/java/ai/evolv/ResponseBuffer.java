@@ -0,0 +1,92 @@
+package ai.evolv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A growable byte buffer for response bodies that is returned to a shared pool once
+ * the body has been read.
+ * <p>
+ *     Buffers that grew beyond {@link #MAX_POOLED_CAPACITY} are left to the garbage
+ *     collector instead of being pooled, so an occasional large response does not
+ *     pin memory.
+ * </p>
+ */
+final class ResponseBuffer {
+
+    static final int INITIAL_CAPACITY = 8192;
+    static final int MAX_POOLED_CAPACITY = 1 << 20;
+    static final int MAX_POOLED_BUFFERS = 32;
+
+    private static final Queue<ResponseBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED_COUNT = new AtomicInteger();
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int count;
+
+    private ResponseBuffer() {}
+
+    static ResponseBuffer acquire() {
+        ResponseBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return new ResponseBuffer();
+        }
+
+        POOLED_COUNT.decrementAndGet();
+        return buffer;
+    }
+
+    void release() {
+        count = 0;
+        if (bytes.length <= MAX_POOLED_CAPACITY
+                && POOLED_COUNT.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            POOL.offer(this);
+        } else if (bytes.length <= MAX_POOLED_CAPACITY) {
+            POOLED_COUNT.decrementAndGet();
+        }
+    }
+
+    void write(ByteBuffer source) {
+        int length = source.remaining();
+        ensureCapacity(count + length);
+        source.get(bytes, count, length);
+        count += length;
+    }
+
+    void write(InputStream source) throws IOException {
+        int read;
+        do {
+            ensureCapacity(count + 1);
+            read = source.read(bytes, count, bytes.length - count);
+            if (read > 0) {
+                count += read;
+            }
+        } while (read != -1);
+    }
+
+    int size() {
+        return count;
+    }
+
+    InputStream asInputStream() {
+        return new ByteArrayInputStream(bytes, 0, count);
+    }
+
+    String asString() {
+        return new String(bytes, 0, count, StandardCharsets.UTF_8);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+        }
+    }
+
+}
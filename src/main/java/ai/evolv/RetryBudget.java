@@ -0,0 +1,68 @@
+package ai.evolv;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries and hedged requests to a fraction of the requests that were sent.
+ * <p>
+ *     Every request deposits a fraction of a retry into the budget, up to a maximum
+ *     balance, and every retry or hedged request withdraws a whole one. While requests
+ *     succeed the budget fills up, so occasional failures are retried. During an
+ *     outage the balance runs out and retries add at most that fraction of extra load.
+ *     The budget starts empty, so it only allows retries once requests have paid for
+ *     them, and is shared by every config of an environment.
+ * </p>
+ */
+final class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    RetryBudget(double retryRatio, int maxRetries) {
+        this(retryRatio, maxRetries, 0);
+    }
+
+    RetryBudget(double retryRatio, int maxRetries, int initialRetries) {
+        if (retryRatio < 0 || maxRetries < 0 || initialRetries < 0) {
+            throw new IllegalArgumentException("The retry budget must not be negative.");
+        }
+
+        this.depositPerRequest = Math.round(retryRatio * SCALE);
+        this.maxBalance = maxRetries * SCALE;
+        this.balance = new AtomicLong(Math.min(maxBalance, initialRetries * SCALE));
+    }
+
+    void deposit() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maxBalance) {
+                return;
+            }
+        } while (!balance.compareAndSet(current,
+                Math.min(maxBalance, current + depositPerRequest)));
+    }
+
+    boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * Returns the number of whole retries left in the budget.
+     * @return the retries currently allowed
+     */
+    long getAvailableRetries() {
+        return balance.get() / SCALE;
+    }
+
+}
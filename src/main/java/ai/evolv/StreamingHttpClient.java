@@ -0,0 +1,31 @@
+package ai.evolv;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An HttpClient that can hand response bodies to a reader as raw bytes.
+ * <p>
+ *     Allocations fetched through a StreamingHttpClient are parsed straight from the
+ *     response bytes, without first decoding the whole body to a String. The bundled
+ *     OkHttpClientImpl, AsyncHttpClientImpl and JdkHttpClientImpl implement it, other
+ *     HttpClients are read through {@link HttpClient#get(String)}.
+ * </p>
+ */
+public interface StreamingHttpClient extends HttpClient {
+
+    /**
+     * Performs a GET request using the provided url and reads the response body
+     * with the given reader.
+     * <p>
+     *     The reader is handed the raw bytes of a successful response. A failed
+     *     request, or an exception thrown by the reader, completes the returned
+     *     future exceptionally.
+     * </p>
+     * @param url a valid url representing a call to the Participant API.
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a future of the value read from the response
+     */
+    <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader);
+
+}
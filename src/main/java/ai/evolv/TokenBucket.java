@@ -0,0 +1,52 @@
+package ai.evolv;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits a rate of operations while allowing short bursts.
+ * <p>
+ *     The bucket holds up to burst tokens and refills continuously at the configured
+ *     rate. Each permitted operation takes one token, an operation that finds the
+ *     bucket empty is refused.
+ * </p>
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier ticker;
+
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double permitsPerSecond, int burst, LongSupplier ticker) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("A rate limit needs a positive rate and a " +
+                    "burst of at least 1.");
+        }
+
+        this.capacity = burst;
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.ticker = ticker;
+        this.tokens = burst;
+        this.refilledAt = ticker.getAsLong();
+    }
+
+    synchronized boolean tryAcquire() {
+        long now = ticker.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens < 1) {
+            return false;
+        }
+
+        tokens--;
+        return true;
+    }
+
+}
@@ -0,0 +1,100 @@
+package ai.evolv;
+
+/**
+ * Appends percent-encoded query parameters to a precomputed endpoint url.
+ * <p>
+ *     Each thread reuses a single builder and its buffer, so building a url only
+ *     allocates the resulting String. Parameter values are encoded as UTF-8, every
+ *     character other than the unreserved characters of RFC 3986 is escaped.
+ * </p>
+ */
+final class UrlBuilder {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final ThreadLocal<UrlBuilder> BUILDERS =
+            ThreadLocal.withInitial(UrlBuilder::new);
+
+    private final StringBuilder url = new StringBuilder(INITIAL_CAPACITY);
+    private boolean hasQuery;
+
+    private UrlBuilder() {}
+
+    /**
+     * Returns this thread's builder, reset to the given endpoint url.
+     * @param endpointUrl the url to append query parameters to
+     * @return the thread's UrlBuilder
+     */
+    static UrlBuilder forEndpoint(String endpointUrl) {
+        UrlBuilder builder = BUILDERS.get();
+        builder.url.setLength(0);
+        builder.url.append(endpointUrl);
+        builder.hasQuery = false;
+        return builder;
+    }
+
+    UrlBuilder param(String name, String value) {
+        appendName(name);
+        appendEncoded(value);
+        return this;
+    }
+
+    UrlBuilder param(String name, double value) {
+        appendName(name);
+        url.append(value);
+        return this;
+    }
+
+    String build() {
+        return url.toString();
+    }
+
+    private void appendName(String name) {
+        url.append(hasQuery ? '&' : '?').append(name).append('=');
+        hasQuery = true;
+    }
+
+    private void appendEncoded(String value) {
+        if (value == null) {
+            url.append("null");
+            return;
+        }
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                url.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(c);
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >> 6));
+                appendEscaped(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(0xF0 | (codePoint >> 18));
+                appendEscaped(0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?', like String.getBytes does
+                appendEscaped('?');
+            } else {
+                appendEscaped(0xE0 | (c >> 12));
+                appendEscaped(0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void appendEscaped(int b) {
+        url.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+}
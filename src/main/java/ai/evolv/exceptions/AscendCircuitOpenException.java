@@ -0,0 +1,7 @@
+package ai.evolv.exceptions;
+
+public class AscendCircuitOpenException extends Exception {
+    public AscendCircuitOpenException(String errorMessage) {
+        super(errorMessage);
+    }
+}
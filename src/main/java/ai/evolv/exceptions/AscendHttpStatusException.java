@@ -0,0 +1,21 @@
+package ai.evolv.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown by the bundled http clients when a request is answered with an unexpected
+ * status code.
+ */
+public class AscendHttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    public AscendHttpStatusException(String errorMessage, int statusCode) {
+        super(errorMessage);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,306 @@
+package ai.evolv;
+
+import ai.evolv.exceptions.AscendHttpStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An HttpClient built on the java.net.http client of Java 11 and later.
+ * <p>
+ *     HTTP/2 is negotiated over TLS, so the requests of every participant are
+ *     multiplexed over a few connections. Clients created with the default settings
+ *     share a single java.net.http client and its connections, and every client runs
+ *     its responses on one shared executor unless another is supplied. Response bodies
+ *     are collected by the java.net.http client without blocking a thread, then handed
+ *     to the {@link HttpResponseReader} as bytes, so the executor never waits on the
+ *     network.
+ * </p>
+ * <p>
+ *     Requires no dependency besides the JDK. This class is part of the multi-release
+ *     jar, on Java 8 it throws an UnsupportedOperationException.
+ * </p>
+ */
+public class JdkHttpClientImpl implements ConditionalHttpClient {
+
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String ETAG = "ETag";
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private final java.net.http.HttpClient client;
+    private final Duration requestTimeout;
+    private final Executor executor;
+
+    /**
+     * Initializes a client sharing the default java.net.http client.
+     * @param timeout specify a request timeout for the client.
+     */
+    public JdkHttpClientImpl(long timeout) {
+        this(DefaultClient.INSTANCE, timeout, DefaultClient.EXECUTOR);
+    }
+
+    private JdkHttpClientImpl(java.net.http.HttpClient client, long timeoutMillis,
+                              Executor executor) {
+        this.client = client;
+        this.requestTimeout = timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null;
+        this.executor = executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Performs a GET request with the given url using the java.net.http client.
+     * @param url a valid url representing a call to the Participant API.
+     * @return a Completable future instance containing a response from
+     *     the API
+     */
+    @Override
+    public CompletableFuture<String> get(String url) {
+        return execute(request(url).GET().build(), (response, body) -> readString(body));
+    }
+
+    /**
+     * Performs a GET request with the given url using the java.net.http client,
+     * handing the response body's bytes to the reader.
+     * @param url a valid url representing a call to the Participant API.
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the value read from
+     *     the response
+     */
+    @Override
+    public <T> CompletableFuture<T> get(String url, HttpResponseReader<T> reader) {
+        return execute(request(url).GET().build(), (response, body) -> reader.read(body));
+    }
+
+    /**
+     * Performs a conditional GET request with the given url using the java.net.http
+     * client, handing the body of a modified response to the reader.
+     * @param url a valid url representing a call to the Participant API.
+     * @param etag the ETag of the stored resource, or null
+     * @param reader reads a value from the response body
+     * @param <T> the type of value read from the body
+     * @return a Completable future instance containing the response
+     */
+    @Override
+    public <T> CompletableFuture<ConditionalResponse<T>> getConditional(
+            String url, String etag, HttpResponseReader<T> reader) {
+        HttpRequest.Builder request = request(url).GET();
+        if (etag != null) {
+            request.header(IF_NONE_MATCH, etag);
+        }
+
+        return execute(request.build(), (response, body) -> {
+            if (response.statusCode() == HTTP_NOT_MODIFIED) {
+                return ConditionalResponse.notModified(etag);
+            }
+            return ConditionalResponse.modified(reader.read(body),
+                    response.headers().firstValue(ETAG).orElse(null));
+        });
+    }
+
+    /**
+     * Performs a POST request with the given url and JSON body using the
+     * java.net.http client.
+     * @param url a valid url representing a call to the Participant API.
+     * @param body a JSON request body
+     * @return a Completable future instance containing a response from
+     *     the API
+     */
+    @Override
+    public CompletableFuture<String> post(String url, String body) {
+        HttpRequest request = request(url)
+                .header(CONTENT_TYPE, JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        return execute(request, (response, responseBody) -> readString(responseBody));
+    }
+
+    private HttpRequest.Builder request(String url) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        if (requestTimeout != null) {
+            request.timeout(requestTimeout);
+        }
+        return request;
+    }
+
+    private <T> CompletableFuture<T> execute(HttpRequest request, BodyReader<T> bodyReader) {
+        CompletableFuture<T> responseFuture = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<byte[]>> response;
+        try {
+            // completes once the whole body arrived, without blocking a thread meanwhile
+            response = client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            responseFuture.completeExceptionally(e);
+            return responseFuture;
+        }
+        if (requestTimeout != null) {
+            // the request timeout of java.net.http only lasts until the headers arrive
+            response = response.orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        response.whenCompleteAsync((httpResponse, ex) -> {
+            if (ex != null) {
+                responseFuture.completeExceptionally(failure(request, ex));
+                return;
+            }
+
+            try (InputStream body = new ByteArrayInputStream(httpResponse.body())) {
+                if (!isSuccessful(httpResponse) && !isNotModified(request, httpResponse)) {
+                    throw new AscendHttpStatusException(String.format("Unexpected response " +
+                            "when making %s request: %s using url: %s with body: %s",
+                            request.method(), httpResponse, request.uri(), readString(body)),
+                            httpResponse.statusCode());
+                }
+
+                responseFuture.complete(bodyReader.read(httpResponse, body));
+            } catch (Exception e) {
+                responseFuture.completeExceptionally(e);
+            }
+        }, executor);
+
+        return responseFuture;
+    }
+
+    private static Throwable failure(HttpRequest request, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+                ? ex.getCause() : ex;
+        if (cause instanceof TimeoutException) {
+            return new HttpTimeoutException(String.format("The %s request using url: %s " +
+                    "did not complete within the request timeout.", request.method(),
+                    request.uri()));
+        }
+        return cause;
+    }
+
+    private static boolean isSuccessful(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    private static boolean isNotModified(HttpRequest request, HttpResponse<?> response) {
+        return response.statusCode() == HTTP_NOT_MODIFIED
+                && request.headers().firstValue(IF_NONE_MATCH).isPresent();
+    }
+
+    private static String readString(InputStream body) throws IOException {
+        return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private interface BodyReader<T> {
+        T read(HttpResponse<byte[]> response, InputStream body) throws IOException;
+    }
+
+    private static final class DefaultClient {
+
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable,
+                    "ascend-http-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static final java.net.http.HttpClient INSTANCE = new Builder().buildClient();
+    }
+
+    public static class Builder {
+
+        private long requestTimeoutMillis = 0;
+        private long connectTimeoutMillis = 0;
+        private boolean http2Enabled = true;
+        private Executor executor;
+
+        /**
+         * Sets the timeout of a whole request, until the response body has arrived.
+         * A timeout of 0 means no timeout.
+         * @param timeout the request timeout
+         * @param unit the time unit of the timeout
+         * @return JdkHttpClientImpl builder class
+         */
+        public Builder setRequestTimeout(long timeout, TimeUnit unit) {
+            this.requestTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets the timeout of establishing a connection. A timeout of 0 means no
+         * timeout.
+         * @param timeout the connect timeout
+         * @param unit the time unit of the timeout
+         * @return JdkHttpClientImpl builder class
+         */
+        public Builder setConnectTimeout(long timeout, TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Enables or disables HTTP/2. When enabled, HTTP/2 is negotiated over TLS and
+         * concurrent requests to a host are multiplexed over a single connection.
+         * @param http2Enabled whether to negotiate HTTP/2
+         * @return JdkHttpClientImpl builder class
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            this.http2Enabled = http2Enabled;
+            return this;
+        }
+
+        /**
+         * Sets the executor that runs the client's I/O callbacks and reads the
+         * response bodies. Bodies are only read once they have arrived, so a bounded
+         * executor does not block on the network. By default every client shares a
+         * pool of daemon threads.
+         * @param executor the executor of the client
+         * @return JdkHttpClientImpl builder class
+         */
+        public Builder setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        java.net.http.HttpClient buildClient() {
+            java.net.http.HttpClient.Builder builder = java.net.http.HttpClient.newBuilder()
+                    .version(http2Enabled ? java.net.http.HttpClient.Version.HTTP_2
+                            : java.net.http.HttpClient.Version.HTTP_1_1)
+                    .executor(executor != null ? executor : DefaultClient.EXECUTOR);
+            if (connectTimeoutMillis > 0) {
+                builder.connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Builds an instance of JdkHttpClientImpl. Without a connect timeout, an
+         * executor or HTTP/2 disabled, it shares the default java.net.http client.
+         * @return a JdkHttpClientImpl instance
+         */
+        public JdkHttpClientImpl build() {
+            boolean defaults = connectTimeoutMillis == 0 && http2Enabled && executor == null;
+            return new JdkHttpClientImpl(defaults ? DefaultClient.INSTANCE : buildClient(),
+                    requestTimeoutMillis, executor != null ? executor : DefaultClient.EXECUTOR);
+        }
+
+    }
+
+}
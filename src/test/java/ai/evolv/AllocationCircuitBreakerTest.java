@@ -0,0 +1,143 @@
+package ai.evolv;
+
+import ai.evolv.AscendCircuitBreakerListener.State;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AllocationCircuitBreakerTest {
+
+    private final AtomicLong time = new AtomicLong();
+    private final List<String> transitions = new ArrayList<>();
+
+    private AllocationCircuitBreaker breaker(double failureRate, int windowSize) {
+        return new AllocationCircuitBreaker(failureRate, windowSize, 1000, 2,
+                (previous, current) -> transitions.add(previous + "->" + current), time::get);
+    }
+
+    private static long acquire(AllocationCircuitBreaker breaker) {
+        long permit = breaker.tryAcquire();
+        Assert.assertNotEquals(AllocationCircuitBreaker.REJECTED, permit);
+        return permit;
+    }
+
+    @Test
+    public void testOpensOnceTheWindowReachesTheFailureRate() {
+        AllocationCircuitBreaker breaker = breaker(0.5, 4);
+
+        for (boolean success : new boolean[] {true, false, true}) {
+            breaker.record(acquire(breaker), success);
+        }
+        Assert.assertEquals(State.CLOSED, breaker.getState());
+
+        breaker.record(acquire(breaker), false);
+        Assert.assertEquals(State.OPEN, breaker.getState());
+        Assert.assertEquals(AllocationCircuitBreaker.REJECTED, breaker.tryAcquire());
+        Assert.assertEquals(Arrays.asList("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    public void testOldOutcomesLeaveTheWindow() {
+        AllocationCircuitBreaker breaker = breaker(0.5, 4);
+
+        for (boolean success : new boolean[] {false, true, true, true, true, false}) {
+            breaker.record(acquire(breaker), success);
+        }
+
+        Assert.assertEquals(State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testClosesAfterSuccessfulProbes() {
+        AllocationCircuitBreaker breaker = breaker(1, 1);
+        breaker.record(acquire(breaker), false);
+
+        time.set(999);
+        Assert.assertEquals(AllocationCircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        time.set(1000);
+        long firstProbe = acquire(breaker);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+        long secondProbe = acquire(breaker);
+        Assert.assertEquals(AllocationCircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        breaker.record(firstProbe, true);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+        breaker.record(secondProbe, true);
+        Assert.assertEquals(State.CLOSED, breaker.getState());
+        Assert.assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"),
+                transitions);
+    }
+
+    @Test
+    public void testReopensWhenAProbeFails() {
+        AllocationCircuitBreaker breaker = breaker(1, 1);
+        breaker.record(acquire(breaker), false);
+
+        time.set(1000);
+        breaker.record(acquire(breaker), false);
+        Assert.assertEquals(State.OPEN, breaker.getState());
+
+        time.set(1999);
+        Assert.assertEquals(AllocationCircuitBreaker.REJECTED, breaker.tryAcquire());
+        time.set(2000);
+        acquire(breaker);
+    }
+
+    @Test
+    public void testRequestsSentBeforeAStateChangeAreNotCountedAsProbes() {
+        AllocationCircuitBreaker breaker = breaker(1, 1);
+        long slowRequest = acquire(breaker);
+        breaker.record(acquire(breaker), false);
+
+        time.set(1000);
+        acquire(breaker);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+
+        // the slow request was permitted while closed, its failure must not reopen
+        breaker.record(slowRequest, false);
+        Assert.assertEquals(State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testListenerIsCalledWithoutHoldingTheLock() throws Exception {
+        List<State> seen = new ArrayList<>();
+        AllocationCircuitBreaker[] holder = new AllocationCircuitBreaker[1];
+        holder[0] = new AllocationCircuitBreaker(1, 1, 1000, 1, (previous, current) -> {
+            Thread reader = new Thread(() -> seen.add(holder[0].getState()));
+            reader.start();
+            try {
+                reader.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, time::get);
+
+        holder[0].record(acquire(holder[0]), false);
+
+        Assert.assertEquals(Arrays.asList(State.OPEN), seen);
+    }
+
+    @Test
+    public void testListenerFailuresDoNotBreakTheBreaker() {
+        AllocationCircuitBreaker breaker = new AllocationCircuitBreaker(1, 1, 1000, 1,
+                (previous, current) -> {
+                    throw new IllegalStateException("listener failed");
+                }, time::get);
+
+        breaker.record(acquire(breaker), false);
+
+        Assert.assertEquals(State.OPEN, breaker.getState());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFailureRateIsRejected() {
+        breaker(1.5, 10);
+    }
+
+}
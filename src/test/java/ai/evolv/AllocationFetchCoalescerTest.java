@@ -0,0 +1,214 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AllocationFetchCoalescerTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    private static final AscendAllocationStore store = new DefaultAscendAllocationStore();
+
+    private static Allocations allocations() {
+        return new Allocations(new JsonParser().parse(rawAllocation).getAsJsonArray());
+    }
+
+    private static CompletableFuture<Allocations> fetch(
+            AllocationFetchCoalescer coalescer, String userId, String sessionId,
+            Supplier<CompletableFuture<Allocations>> fetcher) {
+        return coalescer.fetch(userId, sessionId, store, fetcher, snapshot -> {
+            throw new AssertionError("The fetch was for the same store.");
+        }, AscendMetrics.noop());
+    }
+
+    @Test
+    public void testConcurrentFetchesForSameParticipantShareOneRequest() throws Exception {
+        AllocationFetchCoalescer coalescer = new AllocationFetchCoalescer();
+        AtomicInteger requests = new AtomicInteger();
+        CompletableFuture<Allocations> response = new CompletableFuture<>();
+
+        CompletableFuture<Allocations> first = fetch(coalescer, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return response;
+        });
+        CompletableFuture<Allocations> second = fetch(coalescer, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return response;
+        });
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, requests.get());
+        Assert.assertEquals(1, coalescer.getCoalescedCount());
+        Assert.assertEquals(1, coalescer.getInFlightCount());
+
+        Allocations snapshot = allocations();
+        response.complete(snapshot);
+        Assert.assertSame(snapshot, first.get());
+        Assert.assertSame(snapshot, second.get());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testFetchesForDifferentParticipantsAreNotShared() {
+        AllocationFetchCoalescer coalescer = new AllocationFetchCoalescer();
+        AtomicInteger requests = new AtomicInteger();
+
+        fetch(coalescer, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        fetch(coalescer, "uid", "other_sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        fetch(coalescer, "other_uid", "sid", () -> {
+            requests.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        Assert.assertEquals(3, requests.get());
+        Assert.assertEquals(0, coalescer.getCoalescedCount());
+        Assert.assertEquals(3, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testCompletedFetchIsNotReused() {
+        AllocationFetchCoalescer coalescer = new AllocationFetchCoalescer();
+        AtomicInteger requests = new AtomicInteger();
+
+        fetch(coalescer, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(allocations());
+        });
+        fetch(coalescer, "uid", "sid", () -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(allocations());
+        });
+
+        Assert.assertEquals(2, requests.get());
+        Assert.assertEquals(0, coalescer.getCoalescedCount());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testFailedFetchIsSharedAndRemoved() throws InterruptedException {
+        AllocationFetchCoalescer coalescer = new AllocationFetchCoalescer();
+        CompletableFuture<Allocations> response = new CompletableFuture<>();
+
+        CompletableFuture<Allocations> first = fetch(coalescer, "uid", "sid", () -> response);
+        CompletableFuture<Allocations> second = fetch(coalescer, "uid", "sid", () -> response);
+        response.completeExceptionally(new IllegalStateException("failed"));
+
+        try {
+            second.get();
+            Assert.fail("Expected the shared fetch to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testAllocatorsForSameParticipantReconcileAndStoreOnce() throws Exception {
+        HttpClient httpClient = mock(HttpClient.class);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        when(httpClient.get(anyString())).thenReturn(response);
+
+        AscendAllocationStore store = mock(AscendAllocationStore.class);
+        when(store.get()).thenReturn(new JsonArray());
+
+        AscendParticipant participant = new AscendParticipant("test_uid", "test_sid");
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setAscendParticipant(participant)
+                .setAscendAllocationStore(store)
+                .build();
+
+        ExecutionQueue firstQueue = mock(ExecutionQueue.class);
+        ExecutionQueue secondQueue = mock(ExecutionQueue.class);
+        Allocator first = new Allocator(config, participant, store, firstQueue,
+                mock(EventEmitter.class));
+        Allocator second = new Allocator(config, participant, store, secondQueue,
+                mock(EventEmitter.class));
+
+        // the coalescer is shared by every config of the environment
+        long coalesced = config.getAllocationFetchCoalescer().getCoalescedCount();
+        CompletableFuture<Allocations> firstFuture = first.fetchAllocations();
+        CompletableFuture<Allocations> secondFuture = second.fetchAllocations();
+        response.complete(rawAllocation);
+
+        Assert.assertSame(firstFuture.get(), secondFuture.get());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, first.getAllocationStatus());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, second.getAllocationStatus());
+        Assert.assertEquals(coalesced + 1,
+                config.getAllocationFetchCoalescer().getCoalescedCount());
+
+        verify(httpClient, times(1)).get(anyString());
+        verify(store, times(1)).put(any(JsonArray.class));
+        verify(firstQueue, times(1)).executeAllWithValuesFromAllocations(firstFuture.get());
+        verify(secondQueue, times(1)).executeAllWithValuesFromAllocations(secondFuture.get());
+    }
+
+    @Test
+    public void testFetchForAnotherStoreAdoptsTheSharedAllocations() throws Exception {
+        AllocationFetchCoalescer coalescer = new AllocationFetchCoalescer();
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        CompletableFuture<Allocations> response = new CompletableFuture<>();
+        Allocations adopted = allocations();
+
+        CompletableFuture<Allocations> first = fetch(coalescer, "uid", "sid", () -> response);
+        CompletableFuture<Allocations> second = coalescer.fetch("uid", "sid",
+                new DefaultAscendAllocationStore(), CompletableFuture::new,
+                snapshot -> adopted, metrics);
+        response.complete(allocations());
+
+        Assert.assertNotSame(first.get(), second.get());
+        Assert.assertSame(adopted, second.get());
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.ALLOCATION_COALESCED));
+    }
+
+    @Test
+    public void testConfigsOfAnEnvironmentShareOneRequest() throws Exception {
+        HttpClient httpClient = mock(HttpClient.class);
+        CompletableFuture<String> response = new CompletableFuture<>();
+        when(httpClient.get(anyString())).thenReturn(response);
+        AscendParticipant participant = new AscendParticipant("classic_uid", "classic_sid");
+        DefaultAscendAllocationStore firstStore = new DefaultAscendAllocationStore();
+        DefaultAscendAllocationStore secondStore = new DefaultAscendAllocationStore();
+
+        Allocator first = new Allocator(AscendConfig.builder(environmentId, httpClient)
+                .setAscendParticipant(participant)
+                .setAscendAllocationStore(firstStore)
+                .build());
+        Allocator second = new Allocator(AscendConfig.builder(environmentId, httpClient)
+                .setAscendParticipant(participant)
+                .setAscendAllocationStore(secondStore)
+                .build());
+        CompletableFuture<Allocations> firstFuture = first.fetchAllocations();
+        CompletableFuture<Allocations> secondFuture = second.fetchAllocations();
+        response.complete(rawAllocation);
+
+        Assert.assertEquals(firstFuture.get().getRawAllocations(),
+                secondFuture.get().getRawAllocations());
+        verify(httpClient, times(1)).get(anyString());
+        Assert.assertEquals(firstStore.get(), secondStore.get());
+        Assert.assertEquals(1, secondStore.get().size());
+    }
+
+}
@@ -0,0 +1,197 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AllocationFetchPolicyTest {
+
+    private static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+
+    @Test
+    public void testRetriesUntilARequestSucceeds() throws Exception {
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(3, 1, 10, false, 0,
+                new RetryBudget(0.1, 10, 10), metrics);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String response = policy.execute(() -> attempts.incrementAndGet() < 3
+                ? failed(new IOException("unavailable")) : CompletableFuture.completedFuture("ok"))
+                .get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("ok", response);
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertEquals(2, metrics.getCount(AscendMetrics.Counter.ALLOCATION_RETRY));
+    }
+
+    @Test
+    public void testFailsAfterMaxAttempts() throws Exception {
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(3, 1, 10, false, 0,
+                new RetryBudget(0.1, 10, 10), null);
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            policy.execute(() -> {
+                attempts.incrementAndGet();
+                return failed(new IOException("unavailable"));
+            }).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the fetch to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testRetriesStopWhenTheBudgetRunsOut() throws Exception {
+        RetryBudget budget = new RetryBudget(0.1, 1, 1);
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(5, 1, 10, false, 0, budget,
+                null);
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                policy.execute(() -> {
+                    attempts.incrementAndGet();
+                    return failed(new IOException("unavailable"));
+                }).get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected the fetch to fail.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        // three first attempts and the single retry the budget allowed
+        Assert.assertEquals(4, attempts.get());
+    }
+
+    @Test
+    public void testBackoffCapGrowsExponentially() {
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(10, 50, 300, false, 0,
+                new RetryBudget(0.1, 10, 10), null);
+
+        Assert.assertEquals(50, policy.backoffCapMillis(1));
+        Assert.assertEquals(100, policy.backoffCapMillis(2));
+        Assert.assertEquals(200, policy.backoffCapMillis(3));
+        Assert.assertEquals(300, policy.backoffCapMillis(4));
+        Assert.assertEquals(300, policy.backoffCapMillis(64));
+    }
+
+    @Test
+    public void testHedgesASlowRequestOnceLatenciesAreKnown() throws Exception {
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(1, 0, 0, true, 10,
+                new RetryBudget(0.1, 10, 10), metrics);
+        Assert.assertEquals(-1, policy.getHedgeDelayNanos());
+
+        for (int i = 0; i < AllocationFetchPolicy.MIN_HEDGE_SAMPLES; i++) {
+            policy.execute(() -> CompletableFuture.completedFuture("fast")).get();
+        }
+        Assert.assertTrue(policy.getHedgeDelayNanos() >= 0);
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        List<CompletableFuture<String>> sent = new CopyOnWriteArrayList<>();
+        String response = policy.execute(() -> {
+            CompletableFuture<String> request = sent.isEmpty()
+                    ? slow : CompletableFuture.completedFuture("hedged");
+            sent.add(request);
+            return request;
+        }).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals("hedged", response);
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.ALLOCATION_HEDGE));
+        Assert.assertEquals(9, policy.getBudget().getAvailableRetries());
+    }
+
+    @Test
+    public void testDoesNotHedgeARequestThatFailsFirst() throws Exception {
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(1, 0, 0, true, 10000,
+                new RetryBudget(0.1, 10, 10), null);
+        for (int i = 0; i < AllocationFetchPolicy.MIN_HEDGE_SAMPLES; i++) {
+            policy.execute(() -> CompletableFuture.completedFuture("fast")).get();
+        }
+
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.execute(() -> {
+                attempts.incrementAndGet();
+                return failed(new IOException("unavailable"));
+            }).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the fetch to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        Assert.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testPoliciesSharingResponseTimesHedgeTogether() throws Exception {
+        AllocationFetchPolicy.ResponseTimes responseTimes =
+                new AllocationFetchPolicy.ResponseTimes();
+        RetryBudget budget = new RetryBudget(0.1, 10);
+        for (int i = 0; i < AllocationFetchPolicy.MIN_HEDGE_SAMPLES; i++) {
+            new AllocationFetchPolicy(1, 0, 0, true, 10, budget, responseTimes, null)
+                    .execute(() -> CompletableFuture.completedFuture("fast")).get();
+        }
+
+        AllocationFetchPolicy policy = new AllocationFetchPolicy(1, 0, 0, true, 10, budget,
+                responseTimes, null);
+        Assert.assertTrue(policy.getHedgeDelayNanos() >= 0);
+        Assert.assertEquals(2, budget.getAvailableRetries());
+    }
+
+    @Test
+    public void testHedgeDelayFollowsRecentResponseTimes() {
+        AtomicLong now = new AtomicLong();
+        long window = TimeUnit.SECONDS.toNanos(60);
+        AllocationFetchPolicy.ResponseTimes responseTimes =
+                new AllocationFetchPolicy.ResponseTimes(window, now::get);
+        for (int i = 0; i < 100; i++) {
+            responseTimes.record(TimeUnit.MILLISECONDS.toNanos(1000));
+        }
+        long slowDelay = responseTimes.getHedgeDelayNanos();
+        Assert.assertTrue(slowDelay >= TimeUnit.MILLISECONDS.toNanos(900));
+
+        // the closed window's delay is kept until the new one has enough samples
+        now.addAndGet(window);
+        for (int i = 1; i < AllocationFetchPolicy.MIN_HEDGE_SAMPLES; i++) {
+            responseTimes.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        Assert.assertEquals(slowDelay, responseTimes.getHedgeDelayNanos());
+
+        responseTimes.record(TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertTrue(responseTimes.getHedgeDelayNanos() < TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testHedgeDelayIsClearedWhenNothingWasRecentlyRecorded() {
+        AtomicLong now = new AtomicLong();
+        long window = TimeUnit.SECONDS.toNanos(60);
+        AllocationFetchPolicy.ResponseTimes responseTimes =
+                new AllocationFetchPolicy.ResponseTimes(window, now::get);
+        for (int i = 0; i < AllocationFetchPolicy.MIN_HEDGE_SAMPLES; i++) {
+            responseTimes.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        Assert.assertTrue(responseTimes.getHedgeDelayNanos() >= 0);
+
+        now.addAndGet(2 * window);
+        Assert.assertEquals(-1, responseTimes.getHedgeDelayNanos());
+
+        responseTimes.record(TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertEquals(-1, responseTimes.getHedgeDelayNanos());
+    }
+
+}
@@ -0,0 +1,62 @@
+package ai.evolv;
+
+import ai.evolv.AllocationFreshnessPolicy.Freshness;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AllocationFreshnessPolicyTest {
+
+    @Test
+    public void testFreshStaleAndExpired() {
+        AllocationFreshnessPolicy policy = new AllocationFreshnessPolicy(1000, 5000, 0);
+
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(0));
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(999));
+        Assert.assertEquals(Freshness.STALE, policy.evaluate(1000));
+        Assert.assertEquals(Freshness.STALE, policy.evaluate(5999));
+        Assert.assertEquals(Freshness.EXPIRED, policy.evaluate(6000));
+        Assert.assertEquals(Freshness.EXPIRED, policy.evaluate(Long.MAX_VALUE));
+        Assert.assertEquals(Freshness.EXPIRED, policy.evaluate(-1));
+    }
+
+    @Test
+    public void testStaleWhileRevalidateOnly() {
+        AllocationFreshnessPolicy policy = new AllocationFreshnessPolicy(0, 5000, 0);
+
+        Assert.assertEquals(Freshness.STALE, policy.evaluate(0));
+        Assert.assertEquals(Freshness.EXPIRED, policy.evaluate(5000));
+    }
+
+    @Test
+    public void testEarlyRefreshGrowsWithAge() {
+        double[] random = {0.5};
+        AllocationFreshnessPolicy policy = new AllocationFreshnessPolicy(1000, 0, 200,
+                () -> random[0]);
+
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(800));
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(899));
+        Assert.assertEquals(Freshness.STALE, policy.evaluate(900));
+
+        random[0] = 0.0;
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(999));
+        random[0] = 0.999;
+        Assert.assertEquals(Freshness.STALE, policy.evaluate(801));
+        Assert.assertEquals(Freshness.EXPIRED, policy.evaluate(1000));
+    }
+
+    @Test
+    public void testEarlyRefreshWindowIsCappedByTimeToLive() {
+        AllocationFreshnessPolicy policy = new AllocationFreshnessPolicy(1000, 0, 5000,
+                () -> 0.0);
+
+        Assert.assertEquals(1000, policy.getEarlyRefreshMillis());
+        Assert.assertEquals(Freshness.FRESH, policy.evaluate(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDurationsAreRejected() {
+        new AllocationFreshnessPolicy(-1, 0, 0);
+    }
+
+}
@@ -0,0 +1,106 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AllocationPrefetcherTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    private static List<AscendParticipant> participants(int count) {
+        List<AscendParticipant> participants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            participants.add(new AscendParticipant("user_" + i, "session_" + i));
+        }
+        return participants;
+    }
+
+    private static Allocations allocations() {
+        return new Allocations(new AllocationsTest().parseRawAllocations(rawAllocation));
+    }
+
+    @Test
+    public void testPrefetchBoundsRequestsInFlight() throws Exception {
+        List<CompletableFuture<Allocations>> pending = new ArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        CompletableFuture<Map<String, JsonArray>> results = new AllocationPrefetcher(
+                participants(10),
+                participant -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    CompletableFuture<Allocations> future = new CompletableFuture<>();
+                    synchronized (pending) {
+                        pending.add(future);
+                    }
+                    return future.whenComplete((allocations, ex) -> inFlight.decrementAndGet());
+                },
+                userId -> new JsonArray()).start(3);
+
+        for (int i = 0; i < 10; i++) {
+            CompletableFuture<Allocations> next;
+            synchronized (pending) {
+                next = pending.get(i);
+            }
+            next.complete(allocations());
+        }
+
+        Map<String, JsonArray> fetched = results.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(10, fetched.size());
+        Assert.assertEquals(1, fetched.get("user_7").size());
+        Assert.assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    public void testPrefetchFallsBackToStoredAllocationsPerParticipant() throws Exception {
+        JsonArray stored = new AllocationsTest().parseRawAllocations(rawAllocation);
+
+        Map<String, JsonArray> fetched = new AllocationPrefetcher(participants(3),
+                participant -> {
+                    CompletableFuture<Allocations> future = new CompletableFuture<>();
+                    if (participant.getUserId().equals("user_1")) {
+                        future.complete(allocations());
+                    } else {
+                        future.completeExceptionally(new IllegalStateException("failed"));
+                    }
+                    return future;
+                },
+                userId -> userId.equals("user_0") ? stored : new JsonArray())
+                .start(2).get(5, TimeUnit.SECONDS);
+
+        Assert.assertSame(stored, fetched.get("user_0"));
+        Assert.assertEquals(1, fetched.get("user_1").size());
+        Assert.assertEquals(0, fetched.get("user_2").size());
+    }
+
+    @Test
+    public void testPrefetchOfManyCompletedFetchesDoesNotRecurse() throws Exception {
+        Allocations allocations = allocations();
+
+        Map<String, JsonArray> fetched = new AllocationPrefetcher(participants(20000),
+                participant -> CompletableFuture.completedFuture(allocations),
+                userId -> new JsonArray()).start(4).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(20000, fetched.size());
+    }
+
+    @Test
+    public void testPrefetchOfNoParticipantsCompletesImmediately() {
+        CompletableFuture<Map<String, JsonArray>> results = new AllocationPrefetcher(
+                new ArrayList<>(), participant -> new CompletableFuture<>(),
+                userId -> new JsonArray()).start(4);
+
+        Assert.assertTrue(results.isDone());
+        Assert.assertTrue(results.join().isEmpty());
+    }
+
+}
@@ -1,14 +1,24 @@
 package ai.evolv;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
 import org.junit.Assert;
 import org.junit.Test;
 
 import ai.evolv.exceptions.AscendKeyError;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class AllocationsTest {
@@ -99,5 +109,181 @@ public class AllocationsTest {
         Assert.assertEquals(expected, activeExperiments);
     }
 
+    @Test
+    public void testGetSubtreeValueFromIndexedGenome() {
+        try {
+            Allocations allocations = new Allocations(parseRawAllocations(rawMultiAllocation));
+            JsonObject weighting = allocations.getValueFromGenome("search.weighting", JsonObject.class);
+            Assert.assertEquals(2.5, weighting.get("dealer_score").getAsDouble(), 0);
+            String spoon = allocations.getValueFromGenome("utensils.spoons.wooden", String.class);
+            Assert.assertEquals("oak", spoon);
+        } catch (AscendKeyError e) {
+            Assert.fail(e.getMessage());
+        }
+    }
+
+    @Test(expected = AscendKeyError.class)
+    public void testGetValueFromIndexedGenomeThroughArrayThrowsKeyError() throws AscendKeyError {
+        Allocations allocations = new Allocations(parseRawAllocations(rawAllocation));
+        allocations.getValueFromGenome("pages.all_pages.header_footer.0", String.class);
+    }
+
+    @Test(expected = AscendKeyError.class)
+    public void testGetValueFromEmptyAllocationsThrowsKeyError() throws AscendKeyError {
+        Allocations allocations = new Allocations(new JsonArray());
+        Assert.assertTrue(allocations.isEmpty());
+        allocations.getValueFromGenome("search.weighting.distance", Double.class);
+    }
+
+    @Test
+    public void testGetValueFromGenomeReusesDecodedValue() throws AscendKeyError {
+        Allocations allocations = new Allocations(parseRawAllocations(rawAllocation));
+        List first = allocations.getValueFromGenome("pages.all_pages.header_footer", List.class);
+        List second = allocations.getValueFromGenome("pages.all_pages.header_footer", List.class);
+        Assert.assertSame(first, second);
+
+        String header = allocations.getValueFromGenome("pages.testing_page.header", String.class);
+        Assert.assertEquals("white", header);
+        JsonElement headerElement = allocations.getValueFromGenome("pages.testing_page.header",
+                JsonElement.class);
+        Assert.assertEquals("white", headerElement.getAsString());
+    }
+
+    @Test
+    public void testResolveValueSharesTheDecodedValueAndReportsMissingKeys()
+            throws AscendKeyError {
+        Allocations allocations = new Allocations(parseRawAllocations(rawAllocation));
+        Object resolved = allocations.resolveValue("pages.all_pages.header_footer", List.class);
+        Assert.assertSame(resolved,
+                allocations.getValueFromGenome("pages.all_pages.header_footer", List.class));
+        Assert.assertSame(Allocations.MISSING_VALUE,
+                allocations.resolveValue("missing.key", String.class));
+    }
+
+    @Test
+    public void testGetValueFromGenomeUsesSuppliedGson() throws AscendKeyError {
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(Weighting.class, new TypeAdapter<Weighting>() {
+                    @Override
+                    public void write(JsonWriter out, Weighting value) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public Weighting read(JsonReader in) throws IOException {
+                        Weighting weighting = new Weighting();
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String name = in.nextName();
+                            double value = in.nextDouble();
+                            if (name.equals("distance")) {
+                                weighting.distance = value;
+                            }
+                        }
+                        in.endObject();
+                        return weighting;
+                    }
+                }).create();
+
+        Allocations allocations = new Allocations(parseRawAllocations(rawAllocation), gson);
+        Weighting weighting = allocations.getValueFromGenome("search.weighting", Weighting.class);
+        Assert.assertEquals(2.5, weighting.distance, 0);
+    }
+
+    private static JsonObject allocation(String eid, String cid) {
+        JsonObject allocation = new JsonObject();
+        allocation.addProperty("uid", "test_uid");
+        allocation.addProperty("eid", eid);
+        allocation.addProperty("cid", cid);
+        allocation.add("genome", new JsonObject());
+        return allocation;
+    }
+
+    private static JsonArray allocationsOf(JsonObject... allocations) {
+        JsonArray array = new JsonArray();
+        for (JsonObject allocation : allocations) {
+            array.add(allocation);
+        }
+        return array;
+    }
+
+    @Test
+    public void testReconcileKeepsPreviousAndAddsNewExperiments() {
+        JsonObject previousFirst = allocation("eid_1", "previous_cid_1");
+        JsonObject previousDropped = allocation("eid_3", "previous_cid_3");
+        JsonObject currentFirst = allocation("eid_1", "current_cid_1");
+        JsonObject currentAdded = allocation("eid_2", "current_cid_2");
+
+        AllocationsDiff diff = Allocations.reconcile(
+                allocationsOf(previousFirst, previousDropped),
+                allocationsOf(currentFirst, currentAdded));
+
+        Assert.assertEquals(allocationsOf(previousFirst, currentAdded), diff.getAllocations());
+        Assert.assertSame(previousFirst, diff.getAllocations().get(0));
+        Assert.assertEquals(Collections.singleton("eid_1"), diff.getKeptExperiments());
+        Assert.assertEquals(Collections.singleton("eid_2"), diff.getAddedExperiments());
+        Assert.assertEquals(Collections.singleton("eid_3"), diff.getDroppedExperiments());
+        Assert.assertFalse(diff.isUnchanged());
+    }
+
+    @Test
+    public void testReconcileReturnsPreviousAllocationsWhenUnchanged() {
+        JsonArray previous = allocationsOf(allocation("eid_1", "previous_cid_1"),
+                allocation("eid_2", "previous_cid_2"));
+        JsonArray current = allocationsOf(allocation("eid_1", "current_cid_1"),
+                allocation("eid_2", "current_cid_2"));
+
+        AllocationsDiff diff = Allocations.reconcile(previous, current);
+
+        Assert.assertTrue(diff.isUnchanged());
+        Assert.assertSame(previous, diff.getAllocations());
+        Assert.assertEquals(2, diff.getKeptExperiments().size());
+        Assert.assertTrue(diff.getAddedExperiments().isEmpty());
+        Assert.assertTrue(diff.getDroppedExperiments().isEmpty());
+    }
+
+    @Test
+    public void testReconcileIsChangedWhenExperimentsAreReordered() {
+        JsonObject first = allocation("eid_1", "previous_cid_1");
+        JsonObject second = allocation("eid_2", "previous_cid_2");
+
+        AllocationsDiff diff = Allocations.reconcile(allocationsOf(first, second),
+                allocationsOf(allocation("eid_2", "cid_2"), allocation("eid_1", "cid_1")));
+
+        Assert.assertFalse(diff.isUnchanged());
+        Assert.assertEquals(allocationsOf(second, first), diff.getAllocations());
+    }
+
+    @Test
+    public void testReconcileDeduplicatesRepeatedExperiments() {
+        JsonObject previous = allocation("eid_1", "previous_cid_1");
+
+        AllocationsDiff diff = Allocations.reconcile(
+                allocationsOf(previous, allocation("eid_1", "previous_cid_duplicate")),
+                allocationsOf(allocation("eid_1", "current_cid_1"),
+                        allocation("eid_2", "current_cid_2"),
+                        allocation("eid_2", "current_cid_duplicate")));
+
+        Assert.assertEquals(2, diff.getAllocations().size());
+        Assert.assertSame(previous, diff.getAllocations().get(0));
+        Assert.assertEquals("current_cid_2",
+                diff.getAllocations().get(1).getAsJsonObject().get("cid").getAsString());
+        Assert.assertTrue(diff.getDroppedExperiments().isEmpty());
+        Assert.assertFalse(diff.isUnchanged());
+    }
+
+    @Test
+    public void testReconcileAllocationsReturnsReconciledArray() {
+        JsonObject previous = allocation("eid_1", "previous_cid_1");
+        JsonArray reconciled = Allocations.reconcileAllocations(allocationsOf(previous),
+                allocationsOf(allocation("eid_1", "current_cid_1")));
+
+        Assert.assertEquals(1, reconciled.size());
+        Assert.assertSame(previous, reconciled.get(0));
+    }
+
+    static class Weighting {
+        double distance;
+    }
 
 }
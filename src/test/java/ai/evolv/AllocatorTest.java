@@ -13,7 +13,16 @@ import static org.mockito.Mockito.*;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class AllocatorTest {
 
@@ -65,11 +74,14 @@ public class AllocatorTest {
         when(mockedConfig.getDomain()).thenReturn(actualConfig.getDomain());
         when(mockedConfig.getVersion()).thenReturn(actualConfig.getVersion());
         when(mockedConfig.getEnvironmentId()).thenReturn(actualConfig.getEnvironmentId());
+        when(mockedConfig.getAllocationsUrl()).thenReturn(actualConfig.getAllocationsUrl());
+        when(mockedConfig.getEventsUrl()).thenReturn(actualConfig.getEventsUrl());
         when(mockedConfig.getAscendAllocationStore())
                 .thenReturn(mockAllocationStore);
 
         when(mockedConfig.getExecutionQueue()).thenReturn(mockExecutionQueue);
         when(mockedConfig.getHttpClient()).thenReturn(mockHttpClient);
+        when(mockedConfig.getGson()).thenReturn(actualConfig.getGson());
 
         return mockedConfig;
     }
@@ -84,6 +96,10 @@ public class AllocatorTest {
                 config.getAscendParticipant().getSessionId());
     }
 
+    static Allocations allocationsOf(JsonArray allocations) {
+        return argThat(snapshot -> allocations.equals(snapshot.getRawAllocations()));
+    }
+
     static String createConfirmationUrl(AscendConfig config, JsonObject allocation) {
         return String.format("%s://%s/%s/%s/events?uid=%s&sid=%s&eid=%s&cid=%s&type=%s",
                 config.getHttpScheme(),
@@ -142,11 +158,11 @@ public class AllocatorTest {
         mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
                 mockHttpClient, mockAllocationStore);
         Allocator allocator = new Allocator(mockConfig);
-        JsonArray actualAllocations = allocator.resolveAllocationFailure();
+        Allocations actualAllocations = allocator.resolveAllocationFailure();
 
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocations);
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        Assert.assertEquals(allocations, actualAllocations);
+        Assert.assertEquals(allocations, actualAllocations.getRawAllocations());
     }
 
     @Test
@@ -159,14 +175,14 @@ public class AllocatorTest {
 
         Allocator allocator = new Allocator(mockConfig);
         allocator.sandBagConfirmation();
-        JsonArray actualAllocations = allocator.resolveAllocationFailure();
+        Allocations actualAllocations = allocator.resolveAllocationFailure();
 
         verify(mockHttpClient, times(1))
                 .get(createConfirmationUrl(actualConfig, allocations.get(0).getAsJsonObject()));
         verify(mockExecutionQueue, times(1))
-                .executeAllWithValuesFromAllocations(allocations);
+                .executeAllWithValuesFromAllocations(allocationsOf(allocations));
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        Assert.assertEquals(allocations, actualAllocations);
+        Assert.assertEquals(allocations, actualAllocations.getRawAllocations());
     }
 
     @Test
@@ -179,14 +195,14 @@ public class AllocatorTest {
 
         Allocator allocator = new Allocator(mockConfig);
         allocator.sandBagContamination();
-        JsonArray actualAllocations = allocator.resolveAllocationFailure();
+        Allocations actualAllocations = allocator.resolveAllocationFailure();
 
         verify(mockHttpClient, times(1))
                 .get(createContaminationUrl(actualConfig, allocations.get(0).getAsJsonObject()));
         verify(mockExecutionQueue, times(1))
-                .executeAllWithValuesFromAllocations(allocations);
+                .executeAllWithValuesFromAllocations(allocationsOf(allocations));
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        Assert.assertEquals(allocations, actualAllocations);
+        Assert.assertEquals(allocations, actualAllocations.getRawAllocations());
     }
 
     @Test
@@ -198,12 +214,12 @@ public class AllocatorTest {
 
         Allocator allocator = new Allocator(mockConfig);
         allocator.sandBagContamination();
-        JsonArray actualAllocations = allocator.resolveAllocationFailure();
+        Allocations actualAllocations = allocator.resolveAllocationFailure();
 
         verify(mockExecutionQueue, times(1))
                 .executeAllWithValuesFromDefaults();
         Assert.assertEquals(Allocator.AllocationStatus.FAILED, allocator.getAllocationStatus());
-        Assert.assertEquals(new JsonArray(), actualAllocations);
+        Assert.assertEquals(new JsonArray(), actualAllocations.getRawAllocations());
     }
 
     @Test
@@ -218,12 +234,12 @@ public class AllocatorTest {
                 mockHttpClient, mockAllocationStore);
 
         Allocator allocator = new Allocator(mockConfig);
-        CompletableFuture<JsonArray> allocationsFuture = allocator.fetchAllocations();
+        CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
 
         verify(mockAllocationStore, times(1)).get();
         verify(mockAllocationStore, times(1)).put(allocations);
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocations);
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
     }
 
     @Test
@@ -238,12 +254,342 @@ public class AllocatorTest {
                 mockHttpClient, mockAllocationStore);
 
         Allocator allocator = new Allocator(mockConfig);
-        CompletableFuture<JsonArray> allocationsFuture = allocator.fetchAllocations();
+        CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+
+        verify(mockAllocationStore, times(1)).get();
+        // the fetched allocations match the stored ones, so nothing is written
+        verify(mockAllocationStore, never()).put(any(JsonArray.class));
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsDecodesAndDispatchesOffTheIoThread() throws Exception {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+
+        ExecutorService decodeExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "test-decode"));
+        ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "test-callback"));
+        when(mockConfig.getDecodeExecutor()).thenReturn(decodeExecutor);
+        when(mockConfig.getCallbackExecutor()).thenReturn(callbackExecutor);
+
+        List<String> threads = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> threads.add("put:" + Thread.currentThread().getName()))
+                .when(mockAllocationStore).put(allocations);
+        doAnswer(invocation -> threads.add("execute:" + Thread.currentThread().getName()))
+                .when(mockExecutionQueue).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+
+        try {
+            Allocator allocator = new Allocator(mockConfig);
+            CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+
+            Thread ioThread = new Thread(() -> allocationsResponseFuture.complete(rawAllocation),
+                    "test-io");
+            ioThread.start();
+            ioThread.join();
+
+            Assert.assertEquals(allocations, allocationsFuture.get(5, TimeUnit.SECONDS).getRawAllocations());
+            Assert.assertEquals(Arrays.asList("put:test-decode", "execute:test-callback"), threads);
+            Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        } finally {
+            decodeExecutor.shutdown();
+            callbackExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchAllocationsFallsBackWhenTheDecodeExecutorRejects() throws Exception {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getDecodeExecutor()).thenReturn(task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        Allocator allocator = new Allocator(mockConfig);
+        CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+        allocationsResponseFuture.complete(rawAllocation);
+
+        Assert.assertEquals(allocations, allocationsFuture.get(5, TimeUnit.SECONDS).getRawAllocations());
+        verify(mockAllocationStore, never()).put(any(JsonArray.class));
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsAppliesThemWhenTheCallbackExecutorRejects() throws Exception {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getCallbackExecutor()).thenReturn(task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        Allocator allocator = new Allocator(mockConfig);
+        allocator.sandBagConfirmation();
+        CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+        allocationsResponseFuture.complete(rawAllocation);
+
+        Assert.assertEquals(allocations, allocationsFuture.get(5, TimeUnit.SECONDS).getRawAllocations());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+        verify(mockHttpClient, times(1)).get(createConfirmationUrl(actualConfig,
+                allocations.get(0).getAsJsonObject()));
+    }
+
+    @Test
+    public void testQueuedActionsRunWhenTheBoundedCallbackExecutorIsFull() throws Exception {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        ExecutionQueue executionQueue = new ExecutionQueue();
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, executionQueue,
+                mockHttpClient, mockAllocationStore);
+        ExecutorService callbackThread = Executors.newSingleThreadExecutor();
+        CompletableFuture<Void> blocker = new CompletableFuture<>();
+        try {
+            Executor callbackExecutor = AscendExecutors.bounded(callbackThread, 1);
+            callbackExecutor.execute(blocker::join);
+            when(mockConfig.getCallbackExecutor()).thenReturn(callbackExecutor);
+
+            List<Double> applied = new CopyOnWriteArrayList<>();
+            executionQueue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+            Allocator allocator = new Allocator(mockConfig);
+            CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+            allocationsResponseFuture.complete(rawAllocation);
+
+            allocationsFuture.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(Arrays.asList(2.5), applied);
+            Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        } finally {
+            blocker.complete(null);
+            callbackThread.shutdown();
+        }
+    }
+
+    @Test
+    public void testFetchAllocationsNotModifiedKeepsStoredAllocations() {
+        ConditionalHttpClient conditionalClient = mock(ConditionalHttpClient.class);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, conditionalClient).build();
+        when(conditionalClient.<JsonArray>getConditional(eq(createAllocationsUrl(actualConfig)),
+                eq("\"v1\""), any()))
+                .thenReturn(CompletableFuture.completedFuture(ConditionalResponse.notModified("\"v1\"")));
+        when(mockAllocationStore.getEtag()).thenReturn("\"v1\"");
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                conditionalClient, mockAllocationStore);
+
+        Allocator allocator = new Allocator(mockConfig);
+        allocator.fetchAllocations();
+
+        verify(mockAllocationStore, never()).put(any(JsonArray.class));
+        verify(mockAllocationStore, never()).put(any(JsonArray.class), anyString());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsStoresEtagOfModifiedAllocations() {
+        ConditionalHttpClient conditionalClient = mock(ConditionalHttpClient.class);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, conditionalClient).build();
+        when(conditionalClient.<JsonArray>getConditional(eq(createAllocationsUrl(actualConfig)),
+                isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(
+                        ConditionalResponse.modified(allocations, "\"v2\"")));
+        when(mockAllocationStore.getEtag()).thenReturn("\"v1\"");
+        when(mockAllocationStore.get()).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                conditionalClient, mockAllocationStore);
+
+        Allocator allocator = new Allocator(mockConfig);
+        allocator.fetchAllocations();
+
+        // nothing is stored, so the stale etag is not sent
+        verify(conditionalClient, times(1)).getConditional(anyString(), isNull(), any());
+        verify(mockAllocationStore, times(1)).put(allocations, "\"v2\"");
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsReadsTheStoreOnce() {
+        ConditionalHttpClient conditionalClient = mock(ConditionalHttpClient.class);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, conditionalClient).build();
+        CompletableFuture<ConditionalResponse<JsonArray>> failedResponse = new CompletableFuture<>();
+        failedResponse.completeExceptionally(new IOException("unavailable"));
+        when(conditionalClient.<JsonArray>getConditional(anyString(), anyString(), any()))
+                .thenReturn(failedResponse);
+        when(mockAllocationStore.getEtag()).thenReturn("\"v1\"");
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                conditionalClient, mockAllocationStore);
+
+        Allocator allocator = new Allocator(mockConfig);
+        allocator.fetchAllocations();
 
+        verify(conditionalClient, times(1)).getConditional(anyString(), eq("\"v1\""), any());
+        verify(mockAllocationStore, times(1)).getEtag();
         verify(mockAllocationStore, times(1)).get();
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsUsesFreshStoredAllocationsWithoutARequest() throws Exception {
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockAllocationStore.getAgeMillis()).thenReturn(1000L);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getAllocationFreshnessPolicy())
+                .thenReturn(new AllocationFreshnessPolicy(60000, 60000, 0));
+
+        Allocator allocator = new Allocator(mockConfig);
+        Allocations snapshot = allocator.fetchAllocations().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(allocations, snapshot.getRawAllocations());
+        verify(mockHttpClient, never()).get(anyString());
+        verify(mockAllocationStore, never()).put(any(JsonArray.class));
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+    }
+
+    @Test
+    public void testFetchAllocationsUsesStaleStoredAllocationsAndRefreshes() throws Exception {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        when(mockAllocationStore.getAgeMillis()).thenReturn(90000L);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getAllocationFreshnessPolicy())
+                .thenReturn(new AllocationFreshnessPolicy(60000, 60000, 0));
+
+        Allocator allocator = new Allocator(mockConfig);
+        Allocations snapshot = allocator.fetchAllocations().get(5, TimeUnit.SECONDS);
+
+        // the stored allocations are used before the refresh completes
+        Assert.assertEquals(allocations, snapshot.getRawAllocations());
+        verify(mockHttpClient, times(1)).get(createAllocationsUrl(actualConfig));
+        verify(mockAllocationStore, never()).put(any(JsonArray.class));
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocationsOf(allocations));
+
+        allocationsResponseFuture.complete(rawAllocation);
+        verify(mockAllocationStore, times(1)).put(allocations);
+        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(any());
+    }
+
+    @Test
+    public void testFetchAllocationsFetchesExpiredStoredAllocations() {
+        CompletableFuture<String> allocationsResponseFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(allocationsResponseFuture);
+        when(mockAllocationStore.getAgeMillis()).thenReturn(Long.MAX_VALUE);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getAllocationFreshnessPolicy())
+                .thenReturn(new AllocationFreshnessPolicy(60000, 60000, 0));
+
+        Allocator allocator = new Allocator(mockConfig);
+        CompletableFuture<Allocations> allocationsFuture = allocator.fetchAllocations();
+        Assert.assertFalse(allocationsFuture.isDone());
+
+        allocationsResponseFuture.complete(rawAllocation);
+        verify(mockAllocationStore, times(1)).put(allocations);
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+    }
+
+    @Test
+    public void testFetchAllocationsNotModifiedRestartsTheAgeOfStoredAllocations() {
+        ConditionalHttpClient conditionalClient = mock(ConditionalHttpClient.class);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, conditionalClient).build();
+        when(conditionalClient.<JsonArray>getConditional(eq(createAllocationsUrl(actualConfig)),
+                eq("\"v1\""), any()))
+                .thenReturn(CompletableFuture.completedFuture(ConditionalResponse.notModified("\"v1\"")));
+        when(mockAllocationStore.getEtag()).thenReturn("\"v1\"");
+        when(mockAllocationStore.getAgeMillis()).thenReturn(Long.MAX_VALUE);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                conditionalClient, mockAllocationStore);
+        when(mockConfig.getAllocationFreshnessPolicy())
+                .thenReturn(new AllocationFreshnessPolicy(60000, 60000, 0));
+
+        Allocator allocator = new Allocator(mockConfig);
+        allocator.fetchAllocations();
+
+        verify(mockAllocationStore, times(1)).put(allocations, "\"v1\"");
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
+    }
+
+    @Test
+    public void testFetchAllocationsRetriesAFailedRequest() throws Exception {
+        CompletableFuture<String> failedResponseFuture = new CompletableFuture<>();
+        failedResponseFuture.completeExceptionally(new IOException("unavailable"));
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig)))
+                .thenReturn(failedResponseFuture)
+                .thenReturn(CompletableFuture.completedFuture(rawAllocation));
+        when(mockAllocationStore.get()).thenReturn(new JsonArray());
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        when(mockConfig.getAllocationFetchPolicy()).thenReturn(new AllocationFetchPolicy(2, 1, 1,
+                false, 0, new RetryBudget(0.1, 10, 10), null));
+
+        Allocator allocator = new Allocator(mockConfig);
+        Allocations snapshot = allocator.fetchAllocations().get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(allocations, snapshot.getRawAllocations());
+        verify(mockHttpClient, times(2)).get(createAllocationsUrl(actualConfig));
         verify(mockAllocationStore, times(1)).put(allocations);
         Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
-        verify(mockExecutionQueue, times(1)).executeAllWithValuesFromAllocations(allocations);
+    }
+
+    @Test
+    public void testFetchAllocationsFailsFastWhileTheCircuitIsOpen() throws Exception {
+        CompletableFuture<String> failedResponseFuture = new CompletableFuture<>();
+        failedResponseFuture.completeExceptionally(new IOException("unavailable"));
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        when(mockHttpClient.get(createAllocationsUrl(actualConfig))).thenReturn(failedResponseFuture);
+        when(mockAllocationStore.get()).thenReturn(allocations);
+        mockConfig = setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig, mockExecutionQueue,
+                mockHttpClient, mockAllocationStore);
+        AllocationCircuitBreaker breaker = new AllocationCircuitBreaker(1, 1, Long.MAX_VALUE, 1,
+                null, System::nanoTime);
+        when(mockConfig.getAllocationCircuitBreaker()).thenReturn(breaker);
+
+        new Allocator(mockConfig).fetchAllocations().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(AscendCircuitBreakerListener.State.OPEN, breaker.getState());
+
+        Allocator allocator = new Allocator(mockConfig);
+        Allocations snapshot = allocator.fetchAllocations().get(5, TimeUnit.SECONDS);
+
+        // only the first fetch sent a request, the second fell back to the stored allocations
+        verify(mockHttpClient, times(1)).get(createAllocationsUrl(actualConfig));
+        Assert.assertEquals(allocations, snapshot.getRawAllocations());
+        Assert.assertEquals(Allocator.AllocationStatus.RETRIEVED, allocator.getAllocationStatus());
     }
 
 }
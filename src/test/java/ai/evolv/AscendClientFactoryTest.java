@@ -96,4 +96,24 @@ public class AscendClientFactoryTest {
         Assert.assertTrue(client instanceof AscendClient);
         Assert.assertEquals(previousUid, mockConfig.getAscendParticipant().getUserId());
     }
+
+    @Test
+    public void testClientInitWithStoreKeyedByUserId() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        store.put("user_2", new JsonParser().parse(rawAllocation).getAsJsonArray());
+        AscendParticipant participant = new AscendParticipant.Builder()
+                .setUserId("user_1")
+                .build();
+        AscendConfig config = AscendConfig.builder(environmentId, new MockHttpClient(rawAllocation))
+                .setAscendAllocationStore(store)
+                .setAscendParticipant(participant)
+                .build();
+
+        AscendClient client = AscendClientFactory.init(config);
+        Assert.assertEquals(Double.valueOf(2.5), client.get("search.weighting.distance", .001));
+
+        Assert.assertEquals("user_1", participant.getUserId());
+        Assert.assertEquals(1, store.get("user_1").size());
+        Assert.assertEquals(0, store.get().size());
+    }
 }
@@ -11,6 +11,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.*;
 
@@ -90,9 +91,9 @@ public class AscendClientImplTest {
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -108,9 +109,9 @@ public class AscendClientImplTest {
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -125,9 +126,9 @@ public class AscendClientImplTest {
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -136,15 +137,97 @@ public class AscendClientImplTest {
         Assert.assertEquals(expected, result);
     }
 
+    @Test
+    public void testGetWithTimeoutReturnsValueWhenAllocationsAvailable() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        allocationsFuture.complete(new Allocations(allocations));
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false);
+        Double result = client.get("search.weighting.distance", .001, 10, TimeUnit.MILLISECONDS);
+        Double expected = 2.5;
+        Assert.assertEquals(expected, result);
+    }
+
+    @Test
+    public void testGetWithTimeoutReturnsStoredValueUponTimeout() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        when(mockAllocationStore.get()).thenReturn(allocations);
+
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                true);
+        Double result = client.get("search.weighting.distance", .001, 10, TimeUnit.MILLISECONDS);
+        Double expected = 2.5;
+        Assert.assertEquals(expected, result);
+        Assert.assertFalse(allocationsFuture.isDone());
+    }
+
+    @Test
+    public void testGetWithTimeoutReturnsDefaultUponTimeoutWithEmptyStore() {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+        when(mockAllocationStore.get()).thenReturn(new JsonArray());
+
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false);
+        Double expectedValue = .001;
+        Double result = client.get("search.weighting.distance", expectedValue, 10, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(expectedValue, result);
+    }
+
+    @Test
+    public void testGetAsyncCompletesWhenAllocationsArrive() throws Exception {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
+                false);
+        CompletableFuture<Double> distance = client.getAsync("search.weighting.distance", .001);
+        CompletableFuture<Double> missing = client.getAsync("not.a.real.key", .001);
+        Assert.assertFalse(distance.isDone());
+
+        allocationsFuture.complete(new Allocations(allocations));
+        Assert.assertEquals(Double.valueOf(2.5), distance.get());
+        Assert.assertEquals(Double.valueOf(.001), missing.get());
+    }
+
+    @Test
+    public void testGetAsyncReturnsDefaultsUponNullFuture() throws Exception {
+        AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
+        mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
+                mockExecutionQueue, mockHttpClient, mockAllocationStore);
+
+        AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, null, mockAllocator,
+                false);
+        Assert.assertEquals(Double.valueOf(.001), client.getAsync("search.weighting.distance", .001).get());
+    }
+
     @Test
     public void testEmitEventWithScore() {
         AscendConfig actualConfig = AscendConfig.builder(environmentId, mockHttpClient).build();
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -161,9 +244,9 @@ public class AscendClientImplTest {
         mockConfig = new AllocatorTest().setUpMockedAscendConfigWithMockedClient(mockConfig, actualConfig,
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -180,9 +263,9 @@ public class AscendClientImplTest {
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -200,8 +283,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -217,9 +300,9 @@ public class AscendClientImplTest {
                 mockExecutionQueue, mockHttpClient, mockAllocationStore);
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
         JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
-        allocationsFuture.complete(allocations);
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -237,8 +320,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -256,8 +339,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FETCHING);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -284,8 +367,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -314,8 +397,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.FAILED);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -342,8 +425,8 @@ public class AscendClientImplTest {
         when(mockAllocator.getAllocationStatus()).thenReturn(Allocator.AllocationStatus.RETRIEVED);
         when(mockAllocationStore.get()).thenReturn(allocations);
 
-        CompletableFuture<JsonArray> allocationsFuture = new CompletableFuture<>();
-        allocationsFuture.complete(allocations);
+        CompletableFuture<Allocations> allocationsFuture = new CompletableFuture<>();
+        allocationsFuture.complete(new Allocations(allocations));
 
         AscendClient client = new AscendClientImpl(mockConfig, mockEventEmitter, allocationsFuture, mockAllocator,
                 false);
@@ -361,4 +444,64 @@ public class AscendClientImplTest {
         testValue = 0.0;
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testDefaultGetAsyncCompletesWithTheSubscribedValue() throws Exception {
+        AscendClient client = new SubscribeOnlyClient(2.5);
+
+        Assert.assertEquals(Double.valueOf(2.5), client.getAsync("search.weighting.distance", .01)
+                .get(1, TimeUnit.SECONDS));
+        Assert.assertEquals(Double.valueOf(2.5), client.get("search.weighting.distance", .01,
+                1, TimeUnit.SECONDS));
+        client.flush();
+    }
+
+    @Test
+    public void testDefaultTimedGetReturnsTheDefaultWhenNothingIsApplied() {
+        AscendClient client = new SubscribeOnlyClient(null);
+
+        Assert.assertEquals(Double.valueOf(.01), client.get("search.weighting.distance", .01,
+                10, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * A client that only implements the abstract methods of AscendClient.
+     */
+    private static class SubscribeOnlyClient implements AscendClient {
+
+        private final Object value;
+
+        SubscribeOnlyClient(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public <T> T get(String key, T defaultValue) {
+            return defaultValue;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> void subscribe(String key, T defaultValue, AscendAction<T> function) {
+            if (value != null) {
+                function.apply((T) value);
+            }
+        }
+
+        @Override
+        public void emitEvent(String key, Double score) {
+        }
+
+        @Override
+        public void emitEvent(String key) {
+        }
+
+        @Override
+        public void confirm() {
+        }
+
+        @Override
+        public void contaminate() {
+        }
+    }
+
+}
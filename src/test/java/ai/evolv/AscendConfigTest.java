@@ -1,5 +1,9 @@
 package ai.evolv;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -7,6 +11,14 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 public class AscendConfigTest {
 
     private static final String ENVIRONMENT_ID = "test_12345";
@@ -35,11 +47,22 @@ public class AscendConfigTest {
         Assert.assertEquals(AscendConfig.DEFAULT_HTTP_SCHEME, config.getHttpScheme());
         Assert.assertEquals(AscendConfig.DEFAULT_DOMAIN, config.getDomain());
         Assert.assertEquals(AscendConfig.DEFAULT_API_VERSION, config.getVersion());
-        Assert.assertEquals(AscendConfig.DEFAULT_ALLOCATION_STORE, config.getAscendAllocationStore());
+        Assert.assertTrue(config.getAscendAllocationStore() instanceof DefaultAscendAllocationStore);
         Assert.assertEquals(AscendConfig.DEFAULT_ASCEND_PARTICIPANT, config.getAscendParticipant());
         Assert.assertEquals(AscendConfig.DEFAULT_HTTP_SCHEME, config.getHttpScheme());
         Assert.assertEquals(mockHttpClient, config.getHttpClient());
         Assert.assertNotNull(config.getExecutionQueue());
+        Assert.assertSame(AscendConfig.DEFAULT_GSON, config.getGson());
+        Assert.assertNull(config.getEventBatcher());
+    }
+
+    @Test
+    public void testDefaultAllocationStoreIsNotShared() {
+        AscendConfig first = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        AscendConfig second = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+
+        Assert.assertNotSame(first.getAscendAllocationStore(),
+                second.getAscendAllocationStore());
     }
 
     @Test
@@ -67,4 +90,246 @@ public class AscendConfigTest {
         Assert.assertEquals(httpScheme, config.getHttpScheme());
     }
 
+    @Test
+    public void testBuildConfigPrecomputesEndpointUrls() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setHttpScheme("http")
+                .setDomain("test.evolv.ai")
+                .setVersion("v2")
+                .build();
+
+        Assert.assertEquals("http://test.evolv.ai/v2/" + ENVIRONMENT_ID + "/allocations",
+                config.getAllocationsUrl());
+        Assert.assertEquals("http://test.evolv.ai/v2/" + ENVIRONMENT_ID + "/events",
+                config.getEventsUrl());
+    }
+
+    @Test
+    public void testBuildConfigWithTypeAdapter() throws IOException {
+        TypeAdapter<StringBuilder> adapter = new TypeAdapter<StringBuilder>() {
+            @Override
+            public void write(JsonWriter out, StringBuilder value) throws IOException {
+                out.value(value.toString());
+            }
+
+            @Override
+            public StringBuilder read(JsonReader in) throws IOException {
+                return new StringBuilder("adapted:").append(in.nextString());
+            }
+        };
+
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .registerTypeAdapter(StringBuilder.class, adapter)
+                .build();
+
+        Assert.assertNotSame(AscendConfig.DEFAULT_GSON, config.getGson());
+        Assert.assertEquals("adapted:value",
+                config.getGson().fromJson("\"value\"", StringBuilder.class).toString());
+    }
+
+    @Test
+    public void testBuildConfigWithMetricsMetersHttpClient() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertSame(mockHttpClient, config.getHttpClient());
+
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setMetrics(metrics)
+                .build();
+        Assert.assertSame(metrics, config.getMetrics());
+        Assert.assertTrue(config.getHttpClient() instanceof MeteredHttpClient);
+        Assert.assertSame(mockHttpClient,
+                ((MeteredHttpClient) config.getHttpClient()).getDelegate());
+    }
+
+    @Test
+    public void testBuildConfigWithExecutors() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getDecodeExecutor());
+        Assert.assertNull(config.getCallbackExecutor());
+
+        Executor decodeExecutor = Runnable::run;
+        Executor callbackExecutor = AscendExecutors.bounded(Runnable::run, 10);
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setDecodeExecutor(decodeExecutor)
+                .setCallbackExecutor(callbackExecutor)
+                .build();
+        Assert.assertSame(decodeExecutor, config.getDecodeExecutor());
+        Assert.assertSame(callbackExecutor, config.getCallbackExecutor());
+    }
+
+    @Test
+    public void testBuildConfigWithAllocationFreshness() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getAllocationFreshnessPolicy());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationFreshness(30, 300, TimeUnit.SECONDS)
+                .setAllocationEarlyRefresh(5, TimeUnit.SECONDS)
+                .build();
+        AllocationFreshnessPolicy policy = config.getAllocationFreshnessPolicy();
+        Assert.assertEquals(30000, policy.getTimeToLiveMillis());
+        Assert.assertEquals(300000, policy.getStaleWhileRevalidateMillis());
+        Assert.assertEquals(5000, policy.getEarlyRefreshMillis());
+    }
+
+    @Test
+    public void testBuildConfigWithAllocationRetries() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getAllocationFetchPolicy());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationRetries(3, 50, 1000, TimeUnit.MILLISECONDS)
+                .setAllocationRetryBudget(0.2, 5)
+                .build();
+        AllocationFetchPolicy policy = config.getAllocationFetchPolicy();
+        Assert.assertEquals(3, policy.getMaxAttempts());
+        Assert.assertFalse(policy.isHedging());
+        Assert.assertEquals(50, policy.backoffCapMillis(1));
+        Assert.assertEquals(1000, policy.backoffCapMillis(10));
+        Assert.assertEquals(0, policy.getBudget().getAvailableRetries());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationHedging(20, TimeUnit.MILLISECONDS)
+                .build();
+        Assert.assertEquals(1, config.getAllocationFetchPolicy().getMaxAttempts());
+        Assert.assertTrue(config.getAllocationFetchPolicy().isHedging());
+    }
+
+    @Test
+    public void testConfigsOfAnEnvironmentShareTheRetryBudget() {
+        AllocationFetchPolicy first = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationHedging(20, TimeUnit.MILLISECONDS)
+                .build().getAllocationFetchPolicy();
+        AllocationFetchPolicy second = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setAllocationHedging(20, TimeUnit.MILLISECONDS)
+                .build().getAllocationFetchPolicy();
+        AllocationFetchPolicy other = AscendConfig.builder("other_environment", mockHttpClient)
+                .setAllocationHedging(20, TimeUnit.MILLISECONDS)
+                .build().getAllocationFetchPolicy();
+
+        Assert.assertSame(first.getBudget(), second.getBudget());
+        Assert.assertSame(first.getResponseTimes(), second.getResponseTimes());
+        Assert.assertNotSame(first.getBudget(), other.getBudget());
+        Assert.assertNotSame(first.getResponseTimes(), other.getResponseTimes());
+    }
+
+    @Test
+    public void testBuildConfigWithCircuitBreaker() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getAllocationCircuitBreaker());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setCircuitBreaker(0.5, 20, 30, TimeUnit.SECONDS)
+                .setCircuitBreakerListener((previous, current) -> { })
+                .build();
+        Assert.assertEquals(AscendCircuitBreakerListener.State.CLOSED,
+                config.getAllocationCircuitBreaker().getState());
+
+        AscendConfig sameSettings = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setCircuitBreaker(0.5, 20, 30, TimeUnit.SECONDS)
+                .build();
+        AscendConfig otherSettings = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setCircuitBreaker(0.5, 10, 30, TimeUnit.SECONDS)
+                .build();
+        Assert.assertSame(config.getAllocationCircuitBreaker(),
+                sameSettings.getAllocationCircuitBreaker());
+        Assert.assertNotSame(config.getAllocationCircuitBreaker(),
+                otherSettings.getAllocationCircuitBreaker());
+    }
+
+    @Test
+    public void testEveryConfigsCircuitBreakerListenerIsCalled() {
+        List<String> changes = new CopyOnWriteArrayList<>();
+        AscendCircuitBreakerListener first = (previous, current) -> changes.add("first " + current);
+        AscendCircuitBreakerListener second = (previous, current) -> changes.add("second " + current);
+        AscendConfig config = AscendConfig.builder("listener_environment", mockHttpClient)
+                .setCircuitBreaker(1, 1, 30, TimeUnit.SECONDS)
+                .setCircuitBreakerListener(first)
+                .build();
+        AscendConfig.builder("listener_environment", mockHttpClient)
+                .setCircuitBreaker(1, 1, 30, TimeUnit.SECONDS)
+                .setCircuitBreakerListener(second)
+                .build();
+        AscendConfig.builder("listener_environment", mockHttpClient)
+                .setCircuitBreaker(1, 1, 30, TimeUnit.SECONDS)
+                .setCircuitBreakerListener(first)
+                .build();
+
+        AllocationCircuitBreaker breaker = config.getAllocationCircuitBreaker();
+        breaker.record(breaker.tryAcquire(), false);
+
+        Assert.assertEquals(Arrays.asList("first OPEN", "second OPEN"), changes);
+    }
+
+    @Test
+    public void testBuildConfigWithEventSampling() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getEventSampler());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventSampling("scroll", 0.1)
+                .setEventRateLimit("impression", 100, 10)
+                .setEventRateCeiling(1000, 100)
+                .build();
+        Assert.assertNotNull(config.getEventSampler());
+        Assert.assertEquals(1, config.getEventSampler().sample("user", "click"), 0);
+    }
+
+    @Test
+    public void testConfigsOfAnEnvironmentShareEventRateLimits() {
+        AscendConfig first = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventRateLimit("shared_limit", 0.001, 1)
+                .build();
+        AscendConfig second = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventRateLimit("shared_limit", 0.001, 1)
+                .build();
+        AscendConfig other = AscendConfig.builder("other_environment", mockHttpClient)
+                .setEventRateLimit("shared_limit", 0.001, 1)
+                .build();
+
+        Assert.assertEquals(1, first.getEventSampler().sample("user", "shared_limit"), 0);
+        Assert.assertEquals(EventSampler.DROPPED,
+                second.getEventSampler().sample("user", "shared_limit"), 0);
+        Assert.assertEquals(1, other.getEventSampler().sample("user", "shared_limit"), 0);
+    }
+
+    @Test
+    public void testBuildConfigWithEventAggregation() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).build();
+        Assert.assertNull(config.getEventAggregator());
+
+        config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventAggregation("dwell_time", 1, TimeUnit.MINUTES, true)
+                .build();
+        Assert.assertTrue(config.getEventAggregator().isAggregated("dwell_time"));
+        Assert.assertFalse(config.getEventAggregator().isAggregated("clicked"));
+    }
+
+    @Test
+    public void testBuildConfigWithEventBatching() {
+        AscendConfig config = AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient)
+                .setEventBatching(10, 100)
+                .build();
+        Assert.assertNotNull(config.getEventBatcher());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEventBatchingRequiresPostSupport() {
+        HttpClient getOnlyClient = url -> new CompletableFuture<>();
+        AscendConfig.builder(ENVIRONMENT_ID, getOnlyClient)
+                .setEventBatching(10, 100)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEventBatchingRejectsEmptyBatches() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).setEventBatching(0, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEventBatchingRejectsNegativeLinger() {
+        AscendConfig.builder(ENVIRONMENT_ID, mockHttpClient).setEventBatching(10, -1);
+    }
+
 }
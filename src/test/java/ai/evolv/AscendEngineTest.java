@@ -0,0 +1,195 @@
+package ai.evolv;
+
+import ai.evolv.utils.MockAllocationStore;
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class AscendEngineTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+
+    private StandInServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+        server.setResponseBody(rawAllocation);
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    private AscendConfig buildConfig(AscendAllocationStore store) {
+        return AscendConfig.builder(environmentId, new OkHttpClientImpl(5000))
+                .setHttpScheme("http")
+                .setDomain(server.getDomain())
+                .setAscendAllocationStore(store)
+                .build();
+    }
+
+    @Test
+    public void testForParticipantFetchesAllocationsPerParticipant() {
+        AscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        AscendEngine engine = AscendEngine.init(buildConfig(store));
+
+        AscendClient first = engine.forParticipant("user_1", "session_1");
+        AscendClient second = engine.forParticipant("user_2", "session_2");
+
+        Assert.assertEquals(Double.valueOf(2.5), first.get("search.weighting.distance", .001));
+        Assert.assertEquals(Double.valueOf(2.5), second.get("search.weighting.distance", .001));
+
+        List<StandInServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertTrue(containsRequest(requests, "uid=user_1&sid=session_1"));
+        Assert.assertTrue(containsRequest(requests, "uid=user_2&sid=session_2"));
+
+        Assert.assertEquals(1, store.get("user_1").size());
+        Assert.assertEquals(1, store.get("user_2").size());
+        Assert.assertEquals(0, store.get("user_3").size());
+    }
+
+    @Test
+    public void testForParticipantEmitsEventsForItsParticipant() throws InterruptedException {
+        AscendEngine engine = AscendEngine.init(buildConfig(new DefaultAscendAllocationStore()));
+
+        AscendClient client = engine.forParticipant("user_1", "session_1");
+        client.get("search.weighting.distance", .001);
+        client.emitEvent("clicked");
+
+        Assert.assertTrue(server.awaitRequestCount(2, 5, TimeUnit.SECONDS));
+        Assert.assertTrue(containsRequest(server.getRequests(),
+                "/events?uid=user_1&sid=session_1&type=clicked"));
+    }
+
+    @Test
+    public void testForParticipantUsesStoredAllocationsWhenFetchFails() {
+        server.close();
+        server = null;
+
+        AscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put("user_1", allocations);
+
+        AscendConfig config = AscendConfig.builder(environmentId, new OkHttpClientImpl(500))
+                .setHttpScheme("http")
+                .setDomain("localhost:1")
+                .setAscendAllocationStore(store)
+                .build();
+        AscendEngine engine = AscendEngine.init(config);
+
+        Assert.assertEquals(Double.valueOf(2.5), engine.forParticipant("user_1", "session_1")
+                .get("search.weighting.distance", .001));
+        Assert.assertEquals(Double.valueOf(.001), engine.forParticipant("user_2", "session_2")
+                .get("search.weighting.distance", .001));
+    }
+
+    @Test
+    public void testForParticipantKeepsItsUserIdWithStoredAllocations() {
+        AscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        store.put("user_1", new AllocationsTest().parseRawAllocations(rawAllocation));
+        AscendEngine engine = AscendEngine.init(buildConfig(store));
+
+        engine.forParticipant("user_1", "session_1").get("search.weighting.distance", .001);
+        engine.forParticipant("user_2", "session_2").get("search.weighting.distance", .001);
+
+        List<StandInServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertTrue(containsRequest(requests, "uid=user_1&sid=session_1"));
+        Assert.assertTrue(containsRequest(requests, "uid=user_2&sid=session_2"));
+        Assert.assertFalse(containsRequest(requests, "uid=test_uid"));
+    }
+
+    @Test
+    public void testDefaultStoreIsReplacedByAStoreKeyedByUserId() {
+        AscendAllocationStore store = new DefaultAscendAllocationStore();
+        AscendEngine engine = AscendEngine.init(buildConfig(store));
+
+        engine.forParticipant("user_1", "session_1").get("search.weighting.distance", .001);
+        engine.forParticipant("user_2", "session_2").get("search.weighting.distance", .001);
+
+        List<StandInServer.RecordedRequest> requests = server.getRequests();
+        Assert.assertTrue(containsRequest(requests, "uid=user_1&sid=session_1"));
+        Assert.assertTrue(containsRequest(requests, "uid=user_2&sid=session_2"));
+        Assert.assertEquals(0, store.get().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitRejectsStoresNotKeyedByUserId() {
+        AscendEngine.init(buildConfig(new MockAllocationStore(new JsonArray())));
+    }
+
+    @Test
+    public void testPrefetchFillsStoreForEachParticipant() throws Exception {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        AscendEngine engine = AscendEngine.init(buildConfig(store));
+
+        List<AscendParticipant> participants = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            participants.add(new AscendParticipant("user_" + i, "session_" + i));
+        }
+
+        Map<String, JsonArray> prefetched = engine.prefetch(participants, 4)
+                .get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(25, prefetched.size());
+        Assert.assertEquals(25, server.getRequestCount());
+        Assert.assertEquals(25, store.size());
+        Assert.assertSame(prefetched.get("user_3"), store.get("user_3"));
+
+        // prefetching does not send any events
+        Assert.assertFalse(containsRequest(server.getRequests(), "/events"));
+    }
+
+    @Test
+    public void testPrefetchFallsBackToStoredAllocations() throws Exception {
+        server.close();
+        server = null;
+
+        AscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put("user_1", allocations);
+
+        AscendConfig config = AscendConfig.builder(environmentId, new OkHttpClientImpl(500))
+                .setHttpScheme("http")
+                .setDomain("localhost:1")
+                .setAscendAllocationStore(store)
+                .build();
+        AscendEngine engine = AscendEngine.init(config);
+
+        Map<String, JsonArray> prefetched = engine.prefetch(Arrays.asList(
+                new AscendParticipant("user_1", "session_1"),
+                new AscendParticipant("user_2", "session_2"))).get(10, TimeUnit.SECONDS);
+
+        Assert.assertSame(allocations, prefetched.get("user_1"));
+        Assert.assertEquals(0, prefetched.get("user_2").size());
+    }
+
+    private static boolean containsRequest(List<StandInServer.RecordedRequest> requests,
+                                           String fragment) {
+        for (StandInServer.RecordedRequest request : requests) {
+            if (request.getUri().contains(fragment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
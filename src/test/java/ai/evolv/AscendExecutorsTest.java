@@ -0,0 +1,136 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AscendExecutorsTest {
+
+    @Test
+    public void testBoundedExecutorRejectsOnceFull() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            BoundedExecutor bounded = new BoundedExecutor(pool, 2);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch finished = new CountDownLatch(2);
+            bounded.execute(() -> awaitAndCountDown(release, finished));
+            bounded.execute(() -> awaitAndCountDown(release, finished));
+
+            try {
+                bounded.execute(() -> { });
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                Assert.assertEquals(0, bounded.availablePermits());
+            }
+
+            release.countDown();
+            Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+            CountDownLatch ran = new CountDownLatch(1);
+            bounded.execute(ran::countDown);
+            Assert.assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBoundedExecutorReleasesRejectedTasks() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.shutdown();
+        BoundedExecutor bounded = new BoundedExecutor(pool, 1);
+        for (int i = 0; i < 3; i++) {
+            try {
+                bounded.execute(() -> { });
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                Assert.assertEquals(1, bounded.availablePermits());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBoundedExecutorRequiresAPendingTask() {
+        AscendExecutors.bounded(Runnable::run, 0);
+    }
+
+    @Test
+    public void testVirtualThreadPerTaskExecutor() throws Exception {
+        if (!AscendExecutors.isVirtualThreadSupported()) {
+            try {
+                AscendExecutors.newVirtualThreadPerTaskExecutor();
+                Assert.fail();
+            } catch (UnsupportedOperationException e) {
+                return;
+            }
+        }
+
+        ExecutorService executor = AscendExecutors.newVirtualThreadPerTaskExecutor();
+        try {
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            executor.submit(() -> thread.set(Thread.currentThread())).get(5, TimeUnit.SECONDS);
+            Assert.assertNotEquals(Thread.currentThread(), thread.get());
+            Assert.assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual")
+                    .invoke(thread.get()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testHandleAsyncFailsWhenTheExecutorRejects() throws Exception {
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("full");
+        };
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> result = AscendExecutors.thenApplyAsync(source,
+                String::toUpperCase, rejecting);
+
+        source.complete("value");
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testThenApplyAsyncRunsOnTheExecutor() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor(
+                runnable -> new Thread(runnable, "test-pool"));
+        try {
+            CompletableFuture<String> result = AscendExecutors.thenApplyAsync(
+                    CompletableFuture.completedFuture("value"),
+                    value -> value + ":" + Thread.currentThread().getName(), pool);
+            Assert.assertEquals("value:test-pool", result.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrDirect() {
+        Executor executor = Runnable::run;
+        Assert.assertSame(executor, AscendExecutors.orDirect(executor));
+        Assert.assertSame(AscendExecutors.directExecutor(), AscendExecutors.orDirect(null));
+    }
+
+    private static void awaitAndCountDown(CountDownLatch latch, CountDownLatch finished) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finished.countDown();
+    }
+
+}
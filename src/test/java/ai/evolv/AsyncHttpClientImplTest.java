@@ -0,0 +1,171 @@
+package ai.evolv;
+
+import ai.evolv.exceptions.AscendHttpStatusException;
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.asynchttpclient.AsyncHttpClient;
+import org.asynchttpclient.Dsl;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncHttpClientImplTest {
+
+    private StandInServer server;
+    private AsyncHttpClientImpl httpClient;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+        httpClient = new AsyncHttpClientImpl(5000);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    static String largeAllocationWithWhitespace() {
+        char[] spaces = new char[200000];
+        Arrays.fill(spaces, ' ');
+        return "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\"," +
+                "\"cid\":\"test_cid\",\"genome\":{\"value\":\"x" + new String(spaces) +
+                "y\",\"label\":\"café\"}}]\n";
+    }
+
+    private String url() {
+        return "http://" + server.getDomain() + "/v1/test_12345/allocations";
+    }
+
+    @Test
+    public void testGetPreservesWhitespaceAcrossBodyParts() throws Exception {
+        String body = largeAllocationWithWhitespace();
+        server.setResponseBody(body);
+
+        Assert.assertEquals(body, httpClient.get(url()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGetWithReaderParsesResponseBytes() throws Exception {
+        server.setResponseBody(largeAllocationWithWhitespace());
+
+        JsonArray allocations = httpClient.get(url(), Allocator::readAllocations)
+                .get(5, TimeUnit.SECONDS);
+
+        String value = allocations.get(0).getAsJsonObject().getAsJsonObject("genome")
+                .get("value").getAsString();
+        Assert.assertEquals(200002, value.length());
+        Assert.assertEquals("café", allocations.get(0).getAsJsonObject()
+                .getAsJsonObject("genome").get("label").getAsString());
+    }
+
+    @Test
+    public void testGetWithReaderFailsWhenReaderFails() throws Exception {
+        server.setResponseBody("not json");
+
+        try {
+            httpClient.get(url(), Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the response to fail to parse.");
+        } catch (ExecutionException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyAndEtag() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), null,
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertNull(server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsNotModifiedWhenEtagMatches() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(response.isNotModified());
+        Assert.assertNull(response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertEquals("\"v1\"", server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyWhenEtagChanged() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v2\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v2\"", response.getEtag());
+    }
+
+    @Test
+    public void testBuilderCreatesWorkingClient() throws Exception {
+        AsyncHttpClientImpl builtClient = AsyncHttpClientImpl.builder()
+                .setRequestTimeout(2, TimeUnit.SECONDS)
+                .setMaxConnectionsPerHost(8)
+                .setKeepAlive(5, TimeUnit.MINUTES)
+                .build();
+
+        server.setResponseBody("[]");
+        Assert.assertEquals("[]", builtClient.get(url()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBuilderAppliesRequestTimeoutToSharedClient() throws Exception {
+        AsyncHttpClient shared = Dsl.asyncHttpClient();
+        try {
+            AsyncHttpClientImpl builtClient = AsyncHttpClientImpl.builder()
+                    .setAsyncHttpClient(shared)
+                    .setRequestTimeout(100, TimeUnit.MILLISECONDS)
+                    .build();
+            server.setResponseDelay(1000);
+
+            try {
+                builtClient.get(url()).get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected the request to time out.");
+            } catch (ExecutionException e) {
+                Assert.assertNotNull(e.getCause());
+            }
+        } finally {
+            shared.close();
+        }
+    }
+
+    @Test
+    public void testErrorStatusFailsWithTheStatusCode() throws Exception {
+        server.setResponseStatus(400);
+
+        try {
+            httpClient.get(url()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AscendHttpStatusException);
+            Assert.assertEquals(400,
+                    ((AscendHttpStatusException) e.getCause()).getStatusCode());
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BoundedAscendAllocationStoreTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}}},\"excluded\":false}]";
+    private static final String rawMultiAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{},\"excluded\":false}," +
+            "{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid_2\",\"cid\":\"test_cid_2\",\"genome\":{},\"excluded\":false}]";
+
+    private static JsonArray allocations() {
+        return new AllocationsTest().parseRawAllocations(rawAllocation);
+    }
+
+    @Test
+    public void testPutAndGetByUserId() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        JsonArray allocations = allocations();
+        store.put("user_1", allocations);
+
+        Assert.assertSame(allocations, store.get("user_1"));
+        Assert.assertEquals(new JsonArray(), store.get("user_2"));
+        Assert.assertEquals(new JsonArray(), store.get(null));
+
+        AscendAllocationStoreStats stats = store.stats();
+        Assert.assertEquals(1, stats.getHitCount());
+        Assert.assertEquals(2, stats.getMissCount());
+        Assert.assertEquals(0, stats.getEvictionCount());
+        Assert.assertEquals(1.0 / 3, stats.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setMaximumSize(2)
+                .setConcurrencyLevel(1)
+                .build();
+        store.put("user_1", allocations());
+        store.put("user_2", allocations());
+        store.get("user_1");
+        store.put("user_3", allocations());
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(1, store.get("user_1").size());
+        Assert.assertEquals(0, store.get("user_2").size());
+        Assert.assertEquals(1, store.get("user_3").size());
+        Assert.assertEquals(1, store.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setMaximumWeight(3, JsonArray::size)
+                .setConcurrencyLevel(1)
+                .build();
+        store.put("user_1", allocations());
+        store.put("user_2", new AllocationsTest().parseRawAllocations(rawMultiAllocation));
+        Assert.assertEquals(2, store.size());
+
+        store.put("user_3", allocations());
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(0, store.get("user_1").size());
+        Assert.assertEquals(1, store.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testExpiresAfterWrite() {
+        AtomicLong time = new AtomicLong();
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setExpireAfterWrite(10, TimeUnit.SECONDS)
+                .setTicker(time::get)
+                .build();
+        store.put("user_1", allocations());
+
+        time.set(TimeUnit.SECONDS.toNanos(9));
+        Assert.assertEquals(1, store.get("user_1").size());
+
+        time.set(TimeUnit.SECONDS.toNanos(10));
+        Assert.assertEquals(0, store.get("user_1").size());
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(1, store.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testPutWithEtagByUserId() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        store.put("user_1", allocations(), "\"v1\"");
+
+        Assert.assertEquals("\"v1\"", store.getEtag("user_1"));
+        Assert.assertNull(store.getEtag("user_2"));
+        Assert.assertEquals(0, store.stats().getHitCount() + store.stats().getMissCount());
+
+        store.put("user_1", allocations());
+        Assert.assertNull(store.getEtag("user_1"));
+    }
+
+    @Test
+    public void testAgeOfStoredAllocations() {
+        AtomicLong time = new AtomicLong();
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setTicker(time::get)
+                .build();
+        Assert.assertEquals(Long.MAX_VALUE, store.getAgeMillis());
+        Assert.assertEquals(Long.MAX_VALUE, store.getAgeMillis("user_1"));
+
+        store.put(allocations());
+        store.put("user_1", allocations());
+        time.set(TimeUnit.SECONDS.toNanos(3));
+        Assert.assertEquals(3000, store.getAgeMillis());
+        Assert.assertEquals(3000, store.getAgeMillis("user_1"));
+
+        store.put("user_1", allocations());
+        Assert.assertEquals(0, store.getAgeMillis("user_1"));
+        Assert.assertEquals(0, store.stats().getHitCount() + store.stats().getMissCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder().build();
+        store.put("user_1", allocations());
+        store.invalidate("user_1");
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(0, store.get("user_1").size());
+    }
+
+    @Test
+    public void testConcurrentAccessStaysBounded() throws InterruptedException {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setMaximumSize(1000)
+                .build();
+        JsonArray allocations = allocations();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String userId = "user_" + (i * threads + offset);
+                    store.put(userId, allocations);
+                    store.get(userId);
+                }
+                done.countDown();
+            });
+        }
+
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Assert.assertTrue(store.size() <= 1000);
+        AscendAllocationStoreStats stats = store.stats();
+        Assert.assertEquals(80000, stats.getHitCount() + stats.getMissCount());
+        Assert.assertEquals(80000 - store.size(), stats.getEvictionCount());
+    }
+
+    @Test
+    public void testMaximumSizeBelowConcurrencyLevelIsExact() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setMaximumSize(10)
+                .setConcurrencyLevel(16)
+                .build();
+        JsonArray allocations = allocations();
+        for (int i = 0; i < 1000; i++) {
+            store.put("user_" + i, allocations);
+        }
+
+        Assert.assertEquals(10, store.size());
+        Assert.assertEquals(990, store.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testMaximumSizeNotDivisibleBySegmentsIsExact() {
+        BoundedAscendAllocationStore store = BoundedAscendAllocationStore.builder()
+                .setMaximumSize(1003)
+                .setConcurrencyLevel(16)
+                .build();
+        JsonArray allocations = allocations();
+        for (int i = 0; i < 100000; i++) {
+            store.put("user_" + i, allocations);
+        }
+
+        Assert.assertEquals(1003, store.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyMaximumSize() {
+        BoundedAscendAllocationStore.builder().setMaximumSize(0).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyConcurrencyLevel() {
+        BoundedAscendAllocationStore.builder().setConcurrencyLevel(0).build();
+    }
+
+}
@@ -27,4 +27,34 @@ public class DefaultAscendAllocationStoreTest {
         Assert.assertNotEquals(new JsonArray(), storedAllocations);
         Assert.assertEquals(allocations, storedAllocations);
     }
+
+    @Test
+    public void testIsNotKeyedByUserId() {
+        AscendAllocationStore store = new DefaultAscendAllocationStore();
+        Assert.assertFalse(store.isKeyedByUserId());
+    }
+
+    @Test
+    public void testPutWithEtagOnStore() {
+        AscendAllocationStore store = new DefaultAscendAllocationStore();
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        Assert.assertNull(store.getEtag());
+
+        store.put(allocations, "\"v1\"");
+        Assert.assertEquals(allocations, store.get());
+        Assert.assertEquals("\"v1\"", store.getEtag());
+
+        store.put(allocations);
+        Assert.assertNull(store.getEtag());
+    }
+
+    @Test
+    public void testAgeOfStoredAllocations() {
+        AscendAllocationStore store = new DefaultAscendAllocationStore();
+        Assert.assertEquals(Long.MAX_VALUE, store.getAgeMillis());
+
+        JsonArray allocations = new AllocationsTest().parseRawAllocations(rawAllocation);
+        store.put(allocations);
+        Assert.assertTrue(store.getAgeMillis() < 1000);
+    }
 }
@@ -0,0 +1,213 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventAggregatorTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String key = "dwell_time";
+
+    private HttpClient mockHttpClient;
+    private final List<String> sentUrls = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        mockHttpClient = mock(HttpClient.class);
+        when(mockHttpClient.get(anyString())).thenAnswer(invocation -> {
+            sentUrls.add(invocation.getArgument(0));
+            return null;
+        });
+    }
+
+    private static AscendParticipant participant(String userId) {
+        return new AscendParticipant.Builder().setUserId(userId).setSessionId("sid").build();
+    }
+
+    private static Map<String, String> parseQuery(String url) {
+        Map<String, String> params = new HashMap<>();
+        for (String param : url.substring(url.indexOf('?') + 1).split("&")) {
+            String[] pair = param.split("=", 2);
+            params.put(pair[0], pair[1]);
+        }
+        return params;
+    }
+
+    private List<String> awaitUrls(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sentUrls.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(count, sentUrls.size());
+        return sentUrls;
+    }
+
+    @Test
+    public void testScoresAreSummarizedPerParticipant() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 1, TimeUnit.HOURS)
+                .build();
+        EventEmitter first = new EventEmitter(config, participant("first"));
+        EventEmitter second = new EventEmitter(config, participant("second"));
+        first.emit(key, 3.0);
+        first.emit(key, 1.0);
+        first.emit(key, 5.0);
+        second.emit(key, 2.0);
+        Assert.assertTrue(sentUrls.isEmpty());
+
+        first.flush();
+        List<String> urls = awaitUrls(2);
+        Map<String, Map<String, String>> byUser = new HashMap<>();
+        for (String url : urls) {
+            Map<String, String> params = parseQuery(url);
+            byUser.put(params.get("uid"), params);
+        }
+
+        Map<String, String> summary = byUser.get("first");
+        Assert.assertEquals(key, summary.get("type"));
+        Assert.assertEquals("9.0", summary.get("score"));
+        Assert.assertEquals("3.0", summary.get("count"));
+        Assert.assertEquals("1.0", summary.get("min"));
+        Assert.assertEquals("5.0", summary.get("max"));
+        Assert.assertFalse(summary.containsKey("p50"));
+        Assert.assertEquals("1.0", byUser.get("second").get("count"));
+
+        first.flush();
+        Assert.assertEquals(2, sentUrls.size());
+    }
+
+    @Test
+    public void testWindowClosesOnItsOwn() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 50, TimeUnit.MILLISECONDS)
+                .build();
+        EventEmitter emitter = new EventEmitter(config, participant("user"));
+        emitter.emit(key, 4.0);
+        emitter.emit(key, 6.0);
+
+        Map<String, String> summary = parseQuery(awaitUrls(1).get(0));
+        Assert.assertEquals("10.0", summary.get("score"));
+        Assert.assertEquals("2.0", summary.get("count"));
+    }
+
+    @Test
+    public void testOtherKeysAreSentAsEmitted() {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 1, TimeUnit.HOURS)
+                .build();
+        EventEmitter emitter = new EventEmitter(config, participant("user"));
+        emitter.emit("clicked", 1.0);
+
+        verify(mockHttpClient, times(1)).get(emitter.getEventUrl("clicked", 1.0));
+    }
+
+    @Test
+    public void testQuantilesAreEstimated() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 1, TimeUnit.HOURS, true)
+                .build();
+        EventEmitter emitter = new EventEmitter(config, participant("user"));
+        for (int i = 1; i <= 1000; i++) {
+            emitter.emit(key, (double) i);
+        }
+        emitter.flush();
+
+        Map<String, String> summary = parseQuery(awaitUrls(1).get(0));
+        Assert.assertEquals(500, Double.parseDouble(summary.get("p50")), 500 * 0.06);
+        Assert.assertEquals(900, Double.parseDouble(summary.get("p90")), 900 * 0.06);
+        Assert.assertEquals(990, Double.parseDouble(summary.get("p99")), 990 * 0.06);
+        Assert.assertEquals("1000.0", summary.get("max"));
+    }
+
+    @Test
+    public void testQuantilesAreEstimatedForDescendingScores() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 1, TimeUnit.HOURS, true)
+                .build();
+        EventEmitter emitter = new EventEmitter(config, participant("user"));
+        for (int i = 1000; i >= 1; i--) {
+            emitter.emit(key, (double) i);
+        }
+        emitter.flush();
+
+        Map<String, String> summary = parseQuery(awaitUrls(1).get(0));
+        Assert.assertEquals(500, Double.parseDouble(summary.get("p50")), 500 * 0.06);
+        Assert.assertEquals(990, Double.parseDouble(summary.get("p99")), 990 * 0.06);
+        Assert.assertEquals("1.0", summary.get("min"));
+    }
+
+    @Test
+    public void testSketchBucketsBoundTheRelativeError() {
+        for (double score = 0.01; score < 1e7; score *= 1.37) {
+            double estimate = EventAggregator.sketchValue(EventAggregator.sketchBucket(score));
+            Assert.assertEquals(score, estimate, score * 0.05);
+        }
+        Assert.assertEquals(0, EventAggregator.sketchBucket(-1));
+        Assert.assertEquals(EventAggregator.SKETCH_BUCKETS - 1,
+                EventAggregator.sketchBucket(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void testFullWindowIsClosedEarly() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient).build();
+        EventAggregator aggregator = new EventAggregator(config,
+                Collections.singletonMap(key, TimeUnit.HOURS.toMillis(1)),
+                Collections.emptySet(), 2);
+        for (int i = 0; i < 40; i++) {
+            aggregator.add(participant("user_" + (i % 2)), key, 1);
+        }
+        Assert.assertTrue(sentUrls.isEmpty());
+
+        aggregator.add(participant("user_2"), key, 1);
+        List<String> urls = awaitUrls(2);
+        for (String url : urls) {
+            Assert.assertEquals("20.0", parseQuery(url).get("count"));
+        }
+
+        aggregator.flush();
+        Assert.assertEquals("user_2", parseQuery(awaitUrls(3).get(2)).get("uid"));
+    }
+
+    @Test
+    public void testWindowClosedEarlyIsNotEndedByTheEarlierClose() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient).build();
+        EventAggregator aggregator = new EventAggregator(config,
+                Collections.singletonMap(key, 400L), Collections.emptySet(), 1);
+        aggregator.add(participant("user_0"), key, 1);
+        Thread.sleep(200);
+        aggregator.add(participant("user_1"), key, 1);
+        Assert.assertEquals("user_0", parseQuery(awaitUrls(1).get(0)).get("uid"));
+
+        // the close scheduled for the first window is due, the second one closes 400ms later
+        Thread.sleep(300);
+        Assert.assertEquals(1, sentUrls.size());
+        Assert.assertEquals("user_1", parseQuery(awaitUrls(2).get(1)).get("uid"));
+    }
+
+    @Test
+    public void testOpenWindowsAreClosedAtShutdown() throws InterruptedException {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventAggregation(key, 1, TimeUnit.HOURS)
+                .build();
+        new EventEmitter(config, participant("user")).emit(key, 2.0);
+        Assert.assertTrue(sentUrls.isEmpty());
+
+        EventAggregator.flushAll();
+        Assert.assertEquals("2.0", parseQuery(awaitUrls(1).get(0)).get("score"));
+    }
+
+}
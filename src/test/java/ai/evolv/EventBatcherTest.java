@@ -0,0 +1,164 @@
+package ai.evolv;
+
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventBatcherTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}}},\"excluded\":false}," +
+            "{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid_2\",\"cid\":\"test_cid_2\",\"genome\":{\"best\":{\"baked\":{\"cookie\":true}}},\"excluded\":false}]";
+
+    private StandInServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    private AscendConfig.Builder configBuilder() {
+        return AscendConfig.builder(environmentId, new OkHttpClientImpl(5000))
+                .setHttpScheme("http")
+                .setDomain(server.getDomain());
+    }
+
+    private static JsonArray collectBatchedEvents(List<StandInServer.RecordedRequest> requests) {
+        JsonArray events = new JsonArray();
+        for (StandInServer.RecordedRequest request : requests) {
+            Assert.assertEquals("POST", request.getMethod());
+            Assert.assertEquals("/v1/" + environmentId + "/events", request.getUri());
+            events.addAll(new JsonParser().parse(request.getBody()).getAsJsonArray());
+        }
+        return events;
+    }
+
+    @Test
+    public void testUnbatchedEventsSendOneRequestPerEvent() throws InterruptedException {
+        EventEmitter emitter = new EventEmitter(configBuilder().build());
+        for (int i = 0; i < 25; i++) {
+            emitter.emit("event_" + i, (double) i);
+        }
+
+        Assert.assertTrue(server.awaitRequestCount(25, 5, TimeUnit.SECONDS));
+        Assert.assertEquals("GET", server.getRequests().get(0).getMethod());
+    }
+
+    @Test
+    public void testBatchedEventsPreserveOrderAndContent() throws InterruptedException {
+        AscendConfig config = configBuilder()
+                .setEventBatching(10, TimeUnit.MINUTES.toMillis(1))
+                .build();
+        EventEmitter emitter = new EventEmitter(config);
+        for (int i = 0; i < 25; i++) {
+            emitter.emit("event_" + i, (double) i);
+        }
+
+        Assert.assertTrue(server.awaitRequestCount(2, 5, TimeUnit.SECONDS));
+        emitter.flush();
+        Assert.assertTrue(server.awaitRequestCount(3, 5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        Assert.assertEquals(3, server.getRequestCount());
+
+        JsonArray events = collectBatchedEvents(server.getRequests());
+        Assert.assertEquals(25, events.size());
+        for (int i = 0; i < 25; i++) {
+            JsonObject event = events.get(i).getAsJsonObject();
+            Assert.assertEquals("event_" + i, event.get("type").getAsString());
+            Assert.assertEquals(i, event.get("score").getAsDouble(), 0);
+            Assert.assertEquals(config.getAscendParticipant().getUserId(),
+                    event.get("uid").getAsString());
+            Assert.assertEquals(config.getAscendParticipant().getSessionId(),
+                    event.get("sid").getAsString());
+        }
+    }
+
+    @Test
+    public void testBatchedEventsFlushAfterLinger() throws InterruptedException {
+        AscendConfig config = configBuilder()
+                .setEventBatching(100, 20)
+                .build();
+        EventEmitter emitter = new EventEmitter(config);
+        emitter.emit("first");
+        emitter.emit("second", 2.0);
+
+        Assert.assertTrue(server.awaitRequestCount(1, 5, TimeUnit.SECONDS));
+
+        JsonArray events = collectBatchedEvents(server.getRequests());
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("first", events.get(0).getAsJsonObject().get("type").getAsString());
+        Assert.assertEquals(1.0, events.get(0).getAsJsonObject().get("score").getAsDouble(), 0);
+        Assert.assertEquals("second", events.get(1).getAsJsonObject().get("type").getAsString());
+    }
+
+    @Test
+    public void testBatchedAllocationEvents() throws InterruptedException {
+        AscendConfig config = configBuilder()
+                .setEventBatching(100, TimeUnit.MINUTES.toMillis(1))
+                .build();
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        EventEmitter emitter = new EventEmitter(config);
+        emitter.confirm(allocations);
+        emitter.flush();
+
+        Assert.assertTrue(server.awaitRequestCount(1, 5, TimeUnit.SECONDS));
+
+        JsonArray events = collectBatchedEvents(server.getRequests());
+        Assert.assertEquals(2, events.size());
+        for (int i = 0; i < allocations.size(); i++) {
+            JsonObject allocation = allocations.get(i).getAsJsonObject();
+            JsonObject event = events.get(i).getAsJsonObject();
+            Assert.assertEquals(EventEmitter.CONFIRM_KEY, event.get("type").getAsString());
+            Assert.assertEquals(allocation.get("eid"), event.get("eid"));
+            Assert.assertEquals(allocation.get("cid"), event.get("cid"));
+        }
+    }
+
+    @Test
+    public void testBatchesBeyondThePendingLimitAreDropped() {
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString())).thenReturn(new CompletableFuture<>());
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        AscendConfig config = AscendConfig.builder(environmentId, httpClient)
+                .setEventBatching(2, TimeUnit.MINUTES.toMillis(1))
+                .setMetrics(metrics)
+                .build();
+        EventEmitter emitter = new EventEmitter(config);
+
+        // one batch in flight, the pending limit waiting behind it and three more
+        int batches = 1 + EventBatcher.MAX_PENDING_BATCHES + 3;
+        for (int i = 0; i < batches * 2; i++) {
+            emitter.emit("event_" + i);
+        }
+
+        verify(httpClient, times(1)).post(anyString(), anyString());
+        Assert.assertEquals(6, metrics.getCount(AscendMetrics.Counter.EVENT_DROPPED));
+    }
+
+}
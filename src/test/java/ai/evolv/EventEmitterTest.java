@@ -175,5 +175,42 @@ public class EventEmitterTest {
                 .get(createEventsUrl(actualConfig, type, score));
     }
 
+    @Test
+    public void testSampledEventsAreWeightedOrDropped() {
+        int sent = 0;
+        for (int i = 0; i < 20; i++) {
+            String userId = "user_" + i;
+            AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                    .setAscendParticipant(new AscendParticipant.Builder().setUserId(userId).build())
+                    .setEventSampling(type, 0.5)
+                    .build();
+            EventEmitter emitter = new EventEmitter(config);
+            emitter.emit(type, score);
+
+            String url = emitter.getEventUrl(type, score, 2);
+            if (EventSampler.samplePoint(userId, type) < 0.5) {
+                Assert.assertTrue(url.endsWith("&score=10.0&weight=2.0"));
+                verify(mockHttpClient, times(1)).get(url);
+                sent++;
+            } else {
+                verify(mockHttpClient, never()).get(url);
+            }
+        }
+
+        Assert.assertTrue(sent > 0 && sent < 20);
+    }
+
+    @Test
+    public void testRateLimitedEventsAreDropped() {
+        AscendConfig config = AscendConfig.builder(environmentId, mockHttpClient)
+                .setEventRateLimit(type, 1, 2)
+                .build();
+        EventEmitter emitter = new EventEmitter(config);
+        for (int i = 0; i < 5; i++) {
+            emitter.emit(type, score);
+        }
+
+        verify(mockHttpClient, times(2)).get(emitter.getEventUrl(type, score));
+    }
 
 }
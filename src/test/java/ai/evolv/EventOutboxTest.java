@@ -0,0 +1,367 @@
+package ai.evolv;
+
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventOutboxTest {
+
+    private static final String eventsUrl = "https://participants.evolv.ai/v1/test_12345/events";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JsonObject event(int i) {
+        JsonObject event = new JsonObject();
+        event.addProperty("uid", "test_uid");
+        event.addProperty("type", "event_" + i);
+        return event;
+    }
+
+    private static CompletableFuture<String> failed() {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        response.completeExceptionally(new IOException("unavailable"));
+        return response;
+    }
+
+    private static void awaitPending(EventOutbox outbox, long pending)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (outbox.getPendingEventCount() != pending && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(pending, outbox.getPendingEventCount());
+    }
+
+    private static long countSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    public void testEmittedEventsAreSentFromTheOutbox() throws Exception {
+        try (StandInServer server = new StandInServer();
+             EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath()).build()) {
+            AscendConfig config = AscendConfig.builder("test_12345", new OkHttpClientImpl(5000))
+                    .setHttpScheme("http")
+                    .setDomain(server.getDomain())
+                    .setEventOutbox(outbox)
+                    .build();
+            EventEmitter emitter = new EventEmitter(config);
+            for (int i = 0; i < 5; i++) {
+                emitter.emit("event_" + i, (double) i);
+            }
+
+            awaitPending(outbox, 0);
+            JsonArray events = new JsonArray();
+            for (StandInServer.RecordedRequest request : server.getRequests()) {
+                Assert.assertEquals("POST", request.getMethod());
+                Assert.assertEquals("/v1/test_12345/events", request.getUri());
+                events.addAll(new JsonParser().parse(request.getBody()).getAsJsonArray());
+            }
+
+            Assert.assertEquals(5, events.size());
+            for (int i = 0; i < 5; i++) {
+                JsonObject event = events.get(i).getAsJsonObject();
+                Assert.assertEquals("event_" + i, event.get("type").getAsString());
+                Assert.assertEquals(i, event.get("score").getAsDouble(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testFailedBatchesAreRetried() throws Exception {
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString()))
+                .thenReturn(failed())
+                .thenReturn(CompletableFuture.completedFuture(""));
+
+        try (EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath()).build()) {
+            outbox.start(httpClient, eventsUrl, null);
+            Assert.assertTrue(outbox.append(event(0)));
+
+            awaitPending(outbox, 0);
+            verify(httpClient, times(2)).post(eventsUrl, "[" + event(0) + "]");
+        }
+    }
+
+    @Test
+    public void testUnsentEventsAreReplayedAfterReopening() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(outbox.append(event(i)));
+            }
+            Assert.assertEquals(3, outbox.getPendingEventCount());
+        }
+
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(""));
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            Assert.assertEquals(3, outbox.getPendingEventCount());
+            outbox.start(httpClient, eventsUrl, null);
+
+            awaitPending(outbox, 0);
+            verify(httpClient).post(eventsUrl, "[" + event(0) + "," + event(1) + "," +
+                    event(2) + "]");
+        }
+    }
+
+    @Test
+    public void testAcknowledgedEventsAreNotReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(""));
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            outbox.start(httpClient, eventsUrl, null);
+            outbox.append(event(0));
+            awaitPending(outbox, 0);
+            outbox.close();
+            Assert.assertFalse(outbox.append(event(1)));
+        }
+
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            Assert.assertEquals(0, outbox.getPendingEventCount());
+            outbox.append(event(2));
+            Assert.assertEquals(1, outbox.getPendingEventCount());
+        }
+    }
+
+    @Test
+    public void testSentSegmentsAreDeleted() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<String> bodies = new ArrayList<>();
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString())).thenAnswer(invocation -> {
+            bodies.add(invocation.getArgument(1));
+            return CompletableFuture.completedFuture("");
+        });
+
+        try (EventOutbox outbox = EventOutbox.builder(directory)
+                .setSegmentSize(128)
+                .setMaxBatchSize(2)
+                .build()) {
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(outbox.append(event(i)));
+            }
+            Assert.assertTrue(countSegments(directory) > 1);
+
+            outbox.start(httpClient, eventsUrl, null);
+            awaitPending(outbox, 0);
+            Assert.assertEquals(1, countSegments(directory));
+        }
+
+        JsonArray events = new JsonArray();
+        for (String body : bodies) {
+            JsonArray batch = new JsonParser().parse(body).getAsJsonArray();
+            Assert.assertTrue(batch.size() <= 2);
+            events.addAll(batch);
+        }
+        Assert.assertEquals(10, events.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(event(i), events.get(i));
+        }
+    }
+
+    @Test
+    public void testFullOutboxDropsEvents() throws Exception {
+        try (EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath())
+                .setSegmentSize(128)
+                .setMaximumSegments(1)
+                .build()) {
+            Assert.assertTrue(outbox.append(event(0)));
+            Assert.assertTrue(outbox.append(event(1)));
+            Assert.assertFalse(outbox.append(event(2)));
+            Assert.assertEquals(2, outbox.getPendingEventCount());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnoredAfterReopening() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventOutbox outbox = EventOutbox.builder(directory).setSegmentSize(1024).build()) {
+            outbox.append(event(0));
+        }
+
+        // a length and half a payload, as left by a crash in the middle of an append
+        int end = 8 + 8 + event(0).toString().length();
+        try (RandomAccessFile segment = new RandomAccessFile(directory.resolve(
+                String.format("events-%020d.log", 0)).toFile(), "rw")) {
+            segment.seek(end);
+            segment.writeInt(100);
+            segment.writeInt(0);
+            segment.write("{\"uid\":".getBytes("UTF-8"));
+        }
+
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(""));
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            Assert.assertEquals(1, outbox.getPendingEventCount());
+            outbox.append(event(1));
+            outbox.start(httpClient, eventsUrl, null);
+
+            awaitPending(outbox, 0);
+            verify(httpClient).post(eventsUrl, "[" + event(0) + "," + event(1) + "]");
+        }
+    }
+
+    @Test
+    public void testOutboxIsSharedByTheConfigsOfAnEnvironment() throws Exception {
+        try (StandInServer server = new StandInServer();
+             EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath()).build()) {
+            for (int i = 0; i < 3; i++) {
+                AscendConfig config = AscendConfig.builder("test_12345",
+                        new OkHttpClientImpl(5000))
+                        .setHttpScheme("http")
+                        .setDomain(server.getDomain())
+                        .setEventOutbox(outbox)
+                        .build();
+                new EventEmitter(config).emit("event_" + i, (double) i);
+            }
+
+            awaitPending(outbox, 0);
+            JsonArray events = new JsonArray();
+            for (StandInServer.RecordedRequest request : server.getRequests()) {
+                events.addAll(new JsonParser().parse(request.getBody()).getAsJsonArray());
+            }
+            Assert.assertEquals(3, events.size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOutboxCanNotBeSharedBetweenEnvironments() throws Exception {
+        try (EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath()).build()) {
+            HttpClient httpClient = mock(HttpClient.class);
+            outbox.start(httpClient, eventsUrl, null);
+            outbox.start(httpClient, "https://participants.evolv.ai/v1/other/events", null);
+        }
+    }
+
+    @Test
+    public void testBatchesThatKeepFailingAreDeadLettered() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CompletableFuture<String> unsupported = new CompletableFuture<>();
+        unsupported.completeExceptionally(new UnsupportedOperationException("no POST"));
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString()))
+                .thenReturn(unsupported, unsupported, unsupported, unsupported, unsupported)
+                .thenReturn(CompletableFuture.completedFuture(""));
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+
+        try (EventOutbox outbox = EventOutbox.builder(directory).setMaxBatchSize(1).build()) {
+            outbox.append(event(0));
+            outbox.append(event(1));
+            outbox.start(httpClient, eventsUrl, metrics);
+
+            awaitPending(outbox, 0);
+            verify(httpClient, times(EventOutbox.MAX_FAILED_ATTEMPTS)).post(eventsUrl,
+                    "[" + event(0) + "]");
+            verify(httpClient).post(eventsUrl, "[" + event(1) + "]");
+        }
+
+        List<String> deadLetters = Files.readAllLines(
+                directory.resolve(EventOutbox.DEAD_LETTER_FILE));
+        Assert.assertEquals(Collections.singletonList("[" + event(0) + "]"), deadLetters);
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.EVENT_FAILED));
+    }
+
+    @Test
+    public void testEventsWithANonFiniteScoreAreRejected() throws Exception {
+        try (EventOutbox outbox = EventOutbox.builder(folder.getRoot().toPath()).build()) {
+            JsonObject event = event(0);
+            event.addProperty("score", Double.NaN);
+            Assert.assertFalse(outbox.append(event));
+
+            event.addProperty("score", Double.POSITIVE_INFINITY);
+            Assert.assertFalse(outbox.append(event));
+
+            event.addProperty("score", 1.5);
+            Assert.assertTrue(outbox.append(event));
+            Assert.assertEquals(1, outbox.getPendingEventCount());
+        }
+    }
+
+    @Test
+    public void testDirectoryCanOnlyBeOpenedByOneOutbox() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            try {
+                EventOutbox.builder(directory).build();
+                Assert.fail("Expected the directory to be locked.");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("already open"));
+            }
+        }
+
+        EventOutbox.builder(directory).build().close();
+    }
+
+    @Test
+    public void testBatchesRejectedByTheServerAreDeadLettered() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (StandInServer server = new StandInServer();
+             EventOutbox outbox = EventOutbox.builder(directory).build()) {
+            server.setResponseStatus(400);
+            outbox.append(event(0));
+            outbox.start(new OkHttpClientImpl(5000), "http://" + server.getDomain() +
+                    "/v1/test_12345/events", AscendMetrics.noop());
+
+            awaitPending(outbox, 0);
+            Assert.assertEquals(EventOutbox.MAX_FAILED_ATTEMPTS, server.getRequestCount());
+        }
+
+        List<String> deadLetters = Files.readAllLines(
+                directory.resolve(EventOutbox.DEAD_LETTER_FILE));
+        Assert.assertEquals(Collections.singletonList("[" + event(0) + "]"), deadLetters);
+    }
+
+    @Test
+    public void testBatchInFlightWhenClosedIsSentAgain() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CompletableFuture<String> response = new CompletableFuture<>();
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.post(anyString(), anyString())).thenReturn(response);
+
+        EventOutbox outbox = EventOutbox.builder(directory).build();
+        outbox.append(event(0));
+        outbox.start(httpClient, eventsUrl, AscendMetrics.noop());
+        verify(httpClient, timeout(5000)).post(eventsUrl, "[" + event(0) + "]");
+        outbox.close();
+        response.complete("");
+
+        try (EventOutbox reopened = EventOutbox.builder(directory).build()) {
+            Assert.assertEquals(1, reopened.getPendingEventCount());
+            Assert.assertEquals(1, countSegments(directory));
+        }
+    }
+
+}
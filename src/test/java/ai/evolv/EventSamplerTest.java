@@ -0,0 +1,84 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EventSamplerTest {
+
+    private static EventSampler sampler(String key, double rate, AscendMetrics metrics) {
+        return new EventSampler(Collections.singletonMap(key, rate), Collections.emptyMap(),
+                null, metrics);
+    }
+
+    @Test
+    public void testSamplePointIsStableAndInRange() {
+        Assert.assertEquals(EventSampler.samplePoint("user", "scroll"),
+                EventSampler.samplePoint("user", "scroll"), 0);
+        Assert.assertNotEquals(EventSampler.samplePoint("user", "scroll"),
+                EventSampler.samplePoint("user", "click"), 0);
+
+        for (int i = 0; i < 1000; i++) {
+            double point = EventSampler.samplePoint("user_" + i, "scroll");
+            Assert.assertTrue(point >= 0 && point < 1);
+        }
+    }
+
+    @Test
+    public void testSamplingIsDeterministicPerParticipant() {
+        EventSampler sampler = sampler("scroll", 0.25, null);
+        for (int i = 0; i < 100; i++) {
+            String userId = "user_" + i;
+            double weight = sampler.sample(userId, "scroll");
+            for (int j = 0; j < 5; j++) {
+                Assert.assertEquals(weight, sampler.sample(userId, "scroll"), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSampledEventsCarryTheirWeight() {
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        EventSampler sampler = sampler("scroll", 0.25, metrics);
+        int sent = 0;
+        for (int i = 0; i < 10000; i++) {
+            double weight = sampler.sample("user_" + i, "scroll");
+            if (weight != EventSampler.DROPPED) {
+                Assert.assertEquals(4, weight, 0);
+                sent++;
+            }
+        }
+
+        Assert.assertEquals(2500, sent, 150);
+        Assert.assertEquals(10000 - sent,
+                metrics.getCount(AscendMetrics.Counter.EVENT_SAMPLED_OUT));
+        Assert.assertEquals(1, sampler.sample("user_0", "click"), 0);
+    }
+
+    @Test
+    public void testRateLimitsAndCeilingDropEvents() {
+        HistogramAscendMetrics metrics = new HistogramAscendMetrics();
+        AtomicLong now = new AtomicLong();
+        Map<String, TokenBucket> rateLimits = new HashMap<>();
+        rateLimits.put("scroll", new TokenBucket(1, 2, now::get));
+        EventSampler sampler = new EventSampler(Collections.emptyMap(), rateLimits,
+                new TokenBucket(1, 3, now::get), metrics);
+
+        Assert.assertEquals(1, sampler.sample("user", "scroll"), 0);
+        Assert.assertEquals(1, sampler.sample("user", "scroll"), 0);
+        Assert.assertEquals(EventSampler.DROPPED, sampler.sample("user", "scroll"), 0);
+        Assert.assertEquals(1, sampler.sample("user", "click"), 0);
+        Assert.assertEquals(EventSampler.DROPPED, sampler.sample("user", "click"), 0);
+        Assert.assertEquals(2, metrics.getCount(AscendMetrics.Counter.EVENT_RATE_LIMITED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSamplingRateMustBeAtMostOne() {
+        sampler("scroll", 1.5, null);
+    }
+
+}
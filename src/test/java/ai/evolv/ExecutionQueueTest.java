@@ -0,0 +1,144 @@
+package ai.evolv;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutionQueueTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"testing_page\":{\"header\":\"white\",\"footer\":null}}},\"excluded\":false}]";
+
+    private final Map<Class<?>, AtomicInteger> decodes = new ConcurrentHashMap<>();
+
+    private Allocations spyAllocations() {
+        JsonArray allocations = new JsonParser().parse(rawAllocation).getAsJsonArray();
+        return spy(new Allocations(allocations, countingGson()));
+    }
+
+    private int decodes(Class<?> type) {
+        AtomicInteger count = decodes.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Creates a Gson that counts how many values of each type it decodes.
+     */
+    private Gson countingGson() {
+        return new GsonBuilder().registerTypeAdapterFactory(new TypeAdapterFactory() {
+            @Override
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+                return new TypeAdapter<T>() {
+                    @Override
+                    public void write(JsonWriter out, T value) throws IOException {
+                        delegate.write(out, value);
+                    }
+
+                    @Override
+                    public T read(JsonReader in) throws IOException {
+                        decodes.computeIfAbsent(type.getRawType(), t -> new AtomicInteger())
+                                .incrementAndGet();
+                        return delegate.read(in);
+                    }
+                };
+            }
+        }).create();
+    }
+
+    @Test
+    public void testExecutionsOfTheSameKeyShareOneDecode() {
+        Allocations allocations = spyAllocations();
+        ExecutionQueue queue = new ExecutionQueue();
+        List<Object> applied = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+            queue.enqueue(new Execution<>("pages.testing_page.header", "none", applied::add));
+        }
+
+        queue.executeAllWithValuesFromAllocations(allocations);
+
+        Assert.assertEquals(100, applied.size());
+        Assert.assertEquals(1, decodes(Double.class));
+        Assert.assertEquals(1, decodes(String.class));
+        verify(allocations, times(1)).getActiveExperiments();
+    }
+
+    @Test
+    public void testExecutionsRunInQueuedOrder() {
+        ExecutionQueue queue = new ExecutionQueue();
+        List<Object> applied = new ArrayList<>();
+        queue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+        queue.enqueue(new Execution<>("pages.testing_page.header", "none", applied::add));
+        queue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+        queue.enqueue(new Execution<>("missing.key", "default", applied::add));
+
+        queue.executeAllWithValuesFromAllocations(spyAllocations());
+
+        Assert.assertEquals(Arrays.asList(2.5, "white", 2.5, "default"), applied);
+    }
+
+    @Test
+    public void testSameKeyWithDifferentTypesIsDecodedPerType() {
+        Allocations allocations = spyAllocations();
+        ExecutionQueue queue = new ExecutionQueue();
+        List<Object> applied = new ArrayList<>();
+        queue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+        queue.enqueue(new Execution<>("search.weighting.distance", "none", applied::add));
+
+        queue.executeAllWithValuesFromAllocations(allocations);
+
+        Assert.assertEquals(Arrays.asList(2.5, "2.5"), applied);
+        Assert.assertEquals(1, decodes(Double.class));
+        Assert.assertEquals(1, decodes(String.class));
+    }
+
+    @Test
+    public void testMissingValuesAreNotDecodedAndNullValuesAreDecodedOnce() {
+        Allocations allocations = spyAllocations();
+        ExecutionQueue queue = new ExecutionQueue();
+        List<Object> applied = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(new Execution<>("missing.key", "default", applied::add));
+            queue.enqueue(new Execution<>("pages.testing_page.footer", "default", applied::add));
+        }
+
+        queue.executeAllWithValuesFromAllocations(allocations);
+
+        Assert.assertEquals(Arrays.asList("default", null, "default", null, "default", null),
+                applied);
+        Assert.assertEquals(1, decodes(String.class));
+    }
+
+    @Test
+    public void testExecuteAllWithValuesFromDefaults() {
+        ExecutionQueue queue = new ExecutionQueue();
+        List<Object> applied = new ArrayList<>();
+        queue.enqueue(new Execution<>("search.weighting.distance", 0.0, applied::add));
+        queue.enqueue(new Execution<>("pages.testing_page.header", "none", applied::add));
+
+        queue.executeAllWithValuesFromDefaults();
+        queue.executeAllWithValuesFromDefaults();
+
+        Assert.assertEquals(Arrays.asList(0.0, "none"), applied);
+    }
+
+}
@@ -0,0 +1,115 @@
+package ai.evolv;
+
+import ai.evolv.utils.StandInServer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class HistogramAscendMetricsTest {
+
+    private static final String environmentId = "test_12345";
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5}}},\"excluded\":false}]";
+
+    private StandInServer server;
+    private HistogramAscendMetrics metrics;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+        server.setResponseBody(rawAllocation);
+        metrics = new HistogramAscendMetrics();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    private AscendConfig.Builder configBuilder(String domain) {
+        return AscendConfig.builder(environmentId, new OkHttpClientImpl(500))
+                .setHttpScheme("http")
+                .setDomain(domain)
+                .setMetrics(metrics);
+    }
+
+    @Test
+    public void testRecordsMeasurements() {
+        metrics.recordLatency(AscendMetrics.Timer.EVENT_SEND, 1000);
+        metrics.recordLatency(AscendMetrics.Timer.EVENT_SEND, 3000);
+        metrics.increment(AscendMetrics.Counter.EVENT_FAILED, 2);
+        metrics.increment(AscendMetrics.Counter.EVENT_FAILED, 1);
+        metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, 5);
+        metrics.adjust(AscendMetrics.Gauge.EVENTS_IN_FLIGHT, -2);
+
+        LatencyHistogram histogram = metrics.getHistogram(AscendMetrics.Timer.EVENT_SEND);
+        Assert.assertEquals(2, histogram.getCount());
+        Assert.assertEquals(2, histogram.getMean(TimeUnit.MICROSECONDS), 0);
+        Assert.assertEquals(0, metrics.getHistogram(AscendMetrics.Timer.HTTP_REQUEST).getCount());
+        Assert.assertEquals(3, metrics.getCount(AscendMetrics.Counter.EVENT_FAILED));
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.EVENT_EMITTED));
+        Assert.assertEquals(3, metrics.getValue(AscendMetrics.Gauge.EVENTS_IN_FLIGHT));
+    }
+
+    @Test
+    public void testRecordsAllocationFetchAndEvents() throws InterruptedException {
+        AscendEngine engine = AscendEngine.init(configBuilder(server.getDomain()).build());
+        AscendClient client = engine.forParticipant("user_1", "session_1");
+
+        Assert.assertEquals(Double.valueOf(2.5), client.get("search.weighting.distance", .001));
+        Assert.assertEquals(1,
+                metrics.getHistogram(AscendMetrics.Timer.ALLOCATION_FETCH).getCount());
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.ALLOCATION_FETCH_FAILURE));
+
+        client.emitEvent("clicked");
+        Assert.assertTrue(server.awaitRequestCount(2, 5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.EVENT_EMITTED));
+        Assert.assertTrue(awaitCount(metrics.getHistogram(AscendMetrics.Timer.EVENT_SEND), 1));
+        Assert.assertTrue(awaitCount(metrics.getHistogram(AscendMetrics.Timer.HTTP_REQUEST), 2));
+        Assert.assertEquals(0, metrics.getValue(AscendMetrics.Gauge.EVENTS_IN_FLIGHT));
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.HTTP_REQUEST_FAILURE));
+    }
+
+    @Test
+    public void testRecordsFailedAllocationFetch() {
+        AscendEngine engine = AscendEngine.init(configBuilder("localhost:1").build());
+
+        Assert.assertEquals(Double.valueOf(.001), engine.forParticipant("user_1", "session_1")
+                .get("search.weighting.distance", .001));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.ALLOCATION_FETCH_FAILURE));
+        Assert.assertEquals(1, metrics.getCount(AscendMetrics.Counter.HTTP_REQUEST_FAILURE));
+        Assert.assertEquals(1,
+                metrics.getCount(AscendMetrics.Counter.ALLOCATION_FALLBACK_DEFAULT));
+        Assert.assertEquals(0, metrics.getCount(AscendMetrics.Counter.ALLOCATION_FALLBACK_STORED));
+    }
+
+    @Test
+    public void testRecordsExecutionQueueDepthAndDispatch() {
+        ExecutionQueue queue = new ExecutionQueue(metrics);
+        queue.enqueue(new Execution<>("search.weighting.distance", 1.0, value -> { }));
+        queue.enqueue(new Execution<>("search.weighting.distance", 1.0, value -> { }));
+        Assert.assertEquals(2, metrics.getValue(AscendMetrics.Gauge.EXECUTION_QUEUE_DEPTH));
+
+        queue.executeAllWithValuesFromDefaults();
+        Assert.assertEquals(0, metrics.getValue(AscendMetrics.Gauge.EXECUTION_QUEUE_DEPTH));
+        Assert.assertEquals(1,
+                metrics.getHistogram(AscendMetrics.Timer.EXECUTION_DISPATCH).getCount());
+    }
+
+    private static boolean awaitCount(LatencyHistogram histogram, long count)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (histogram.getCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return histogram.getCount() >= count;
+    }
+
+}
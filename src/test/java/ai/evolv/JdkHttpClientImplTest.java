@@ -0,0 +1,228 @@
+package ai.evolv;
+
+import ai.evolv.exceptions.AscendHttpStatusException;
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JdkHttpClientImplTest {
+
+    private StandInServer server;
+    private JdkHttpClientImpl httpClient;
+
+    private static boolean isJava11OrLater() {
+        return !System.getProperty("java.specification.version").startsWith("1.");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(isJava11OrLater());
+        server = new StandInServer();
+        httpClient = new JdkHttpClientImpl(5000);
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private String url() {
+        return "http://" + server.getDomain() + "/v1/test_12345/allocations";
+    }
+
+    @Test
+    public void testGetPreservesWhitespaceAcrossBodyParts() throws Exception {
+        String body = AsyncHttpClientImplTest.largeAllocationWithWhitespace();
+        server.setResponseBody(body);
+
+        Assert.assertEquals(body, httpClient.get(url()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGetWithReaderParsesResponseBytes() throws Exception {
+        server.setResponseBody(AsyncHttpClientImplTest.largeAllocationWithWhitespace());
+
+        JsonArray allocations = httpClient.get(url(), Allocator::readAllocations)
+                .get(5, TimeUnit.SECONDS);
+
+        String value = allocations.get(0).getAsJsonObject().getAsJsonObject("genome")
+                .get("value").getAsString();
+        Assert.assertEquals(200002, value.length());
+        Assert.assertEquals("café", allocations.get(0).getAsJsonObject()
+                .getAsJsonObject("genome").get("label").getAsString());
+    }
+
+    @Test
+    public void testGetWithReaderFailsWhenReaderFails() throws Exception {
+        server.setResponseBody("not json");
+
+        try {
+            httpClient.get(url(), Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the response to fail to parse.");
+        } catch (ExecutionException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void testGetFailsWhenServerIsUnreachable() throws Exception {
+        String url = url();
+        server.close();
+        server = null;
+
+        try {
+            httpClient.get(url).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyAndEtag() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), null,
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertNull(server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsNotModifiedWhenEtagMatches() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(response.isNotModified());
+        Assert.assertNull(response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertEquals("\"v1\"", server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyWhenEtagChanged() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v2\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v2\"", response.getEtag());
+    }
+
+    @Test
+    public void testPostSendsJsonBody() throws Exception {
+        server.setResponseBody("");
+
+        httpClient.post(url(), "[{\"type\":\"clicked\"}]").get(5, TimeUnit.SECONDS);
+
+        StandInServer.RecordedRequest request = server.getRequests().get(0);
+        Assert.assertEquals("POST", request.getMethod());
+        Assert.assertEquals("[{\"type\":\"clicked\"}]", request.getBody());
+        Assert.assertTrue(request.getHeader("Content-Type").startsWith("application/json"));
+    }
+
+    @Test
+    public void testBuilderUsesSuppliedExecutor() throws Exception {
+        AtomicInteger tasks = new AtomicInteger();
+        Executor executor = task -> {
+            tasks.incrementAndGet();
+            ForkJoinPool.commonPool().execute(task);
+        };
+        JdkHttpClientImpl builtClient = JdkHttpClientImpl.builder()
+                .setRequestTimeout(2, TimeUnit.SECONDS)
+                .setConnectTimeout(1, TimeUnit.SECONDS)
+                .setHttp2Enabled(false)
+                .setExecutor(executor)
+                .build();
+
+        server.setResponseBody("[]");
+        Assert.assertEquals("[]", builtClient.get(url()).get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(tasks.get() > 0);
+    }
+
+    @Test
+    public void testRequestTimeoutCoversTheBody() throws Exception {
+        JdkHttpClientImpl builtClient = JdkHttpClientImpl.builder()
+                .setRequestTimeout(200, TimeUnit.MILLISECONDS)
+                .build();
+        server.setBodyDelay(3000);
+
+        try {
+            builtClient.get(url()).get(2, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to time out.");
+        } catch (ExecutionException e) {
+            // an HttpTimeoutException, which Java 8 test sources can not name
+            Assert.assertTrue(e.getCause() instanceof IOException);
+            Assert.assertTrue(e.getCause().getMessage().contains("request timeout"));
+        }
+    }
+
+    @Test
+    public void testSingleThreadedExecutorServesConcurrentRequests() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            JdkHttpClientImpl builtClient = JdkHttpClientImpl.builder()
+                    .setHttp2Enabled(false)
+                    .setExecutor(executor)
+                    .build();
+            String body = AsyncHttpClientImplTest.largeAllocationWithWhitespace();
+            server.setResponseBody(body);
+            server.setBodyDelay(100);
+
+            List<CompletableFuture<JsonArray>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(builtClient.get(url(), Allocator::readAllocations));
+            }
+            for (CompletableFuture<JsonArray> response : responses) {
+                Assert.assertEquals(1, response.get(5, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testErrorStatusFailsWithTheStatusCode() throws Exception {
+        server.setResponseStatus(400);
+
+        try {
+            httpClient.get(url()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AscendHttpStatusException);
+            Assert.assertEquals(400,
+                    ((AscendHttpStatusException) e.getCause()).getStatusCode());
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMean(TimeUnit.NANOSECONDS), 0);
+        Assert.assertEquals(0, histogram.getMax(TimeUnit.NANOSECONDS));
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testBucketsCoverEveryValueWithinRelativeError() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueAt(index);
+            Assert.assertTrue(highest >= value);
+            Assert.assertTrue(highest - value <= value / LatencyHistogram.SUB_BUCKET_COUNT);
+            if (index > 0) {
+                Assert.assertTrue(LatencyHistogram.highestValueAt(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(100, histogram.getMax(TimeUnit.MILLISECONDS));
+        Assert.assertEquals(50.5, histogram.getMean(TimeUnit.MILLISECONDS), 0.001);
+        assertWithinError(50, histogram.getValueAtPercentile(50, TimeUnit.MICROSECONDS) / 1000.0);
+        assertWithinError(99, histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS) / 1000.0);
+        Assert.assertEquals(100, histogram.getValueAtPercentile(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testNegativeDurationsAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        Assert.assertEquals(1, histogram.getCount());
+        Assert.assertEquals(0, histogram.getValueAtPercentile(100, TimeUnit.NANOSECONDS));
+    }
+
+    private static void assertWithinError(double expected, double actual) {
+        Assert.assertEquals(expected, actual, expected / LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+
+}
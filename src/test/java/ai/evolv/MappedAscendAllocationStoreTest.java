@@ -0,0 +1,262 @@
+package ai.evolv;
+
+import com.google.gson.JsonArray;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MappedAscendAllocationStoreTest {
+
+    private static final String rawAllocation = "[{\"uid\":\"test_uid\",\"sid\":\"test_sid\",\"eid\":\"test_eid\",\"cid\":\"test_cid\",\"genome\":{\"search\":{\"weighting\":{\"distance\":2.5,\"dealer_score\":2.5}},\"pages\":{\"all_pages\":{\"header_footer\":[\"blue\",\"white\"]},\"testing_page\":{\"megatron\":\"none\",\"header\":\"white\"}},\"algorithms\":{\"feature_importance\":false}},\"excluded\":false}]";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static JsonArray allocations() {
+        return new AllocationsTest().parseRawAllocations(rawAllocation);
+    }
+
+    @Test
+    public void testPutAndGetByUserId() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            store.put("user_1", allocations());
+
+            Assert.assertEquals(allocations(), store.get("user_1"));
+            Assert.assertEquals(new JsonArray(), store.get("user_2"));
+            Assert.assertEquals(new JsonArray(), store.get(null));
+            Assert.assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    public void testReopenKeepsAllocations() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setMaximumEntries(1000)
+                .setMaximumLogSize(1024 * 1024)
+                .build()) {
+            for (int i = 0; i < 500; i++) {
+                store.put("user_" + i, allocations());
+            }
+        }
+
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            Assert.assertEquals(500, store.size());
+            for (int i = 0; i < 500; i++) {
+                Assert.assertEquals(allocations(), store.get("user_" + i));
+            }
+            Assert.assertEquals(new JsonArray(), store.get("user_500"));
+        }
+    }
+
+    @Test
+    public void testOverwritesAreCompacted() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        int recordSize = allocations().toString().length() + 16;
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setMaximumEntries(10)
+                .setMaximumLogSize(recordSize * 20)
+                .build()) {
+            long initialFileSize = Files.size(file);
+            for (int round = 0; round < 50; round++) {
+                for (int i = 0; i < 5; i++) {
+                    JsonArray allocations = allocations();
+                    allocations.get(0).getAsJsonObject().addProperty("round", round);
+                    store.put("user_" + i, allocations);
+                }
+            }
+
+            Assert.assertEquals(5, store.size());
+            Assert.assertEquals(initialFileSize, Files.size(file));
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(49, store.get("user_" + i).get(0).getAsJsonObject()
+                        .get("round").getAsInt());
+            }
+        }
+    }
+
+    @Test
+    public void testEvictsTheLeastRecentlyWrittenEntriesWhenFull() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        AtomicLong time = new AtomicLong();
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setMaximumEntries(3)
+                .setClock(time::get)
+                .build()) {
+            for (int i = 0; i < 10; i++) {
+                time.incrementAndGet();
+                store.put("user_" + i, allocations());
+            }
+
+            Assert.assertTrue(store.size() <= 3);
+            Assert.assertEquals(new JsonArray(), store.get("user_0"));
+            Assert.assertEquals(allocations(), store.get("user_9"));
+            Assert.assertEquals(allocations(), store.get("user_8"));
+        }
+    }
+
+    @Test
+    public void testEvictsEntriesWhenTheLogIsFull() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        int recordSize = allocations().toString().length() + 32;
+        AtomicLong time = new AtomicLong();
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setMaximumEntries(100)
+                .setMaximumLogSize(recordSize * 4)
+                .setClock(time::get)
+                .build()) {
+            for (int i = 0; i < 10; i++) {
+                time.incrementAndGet();
+                store.put("user_" + i, allocations());
+            }
+
+            Assert.assertEquals(allocations(), store.get("user_9"));
+            Assert.assertEquals(new JsonArray(), store.get("user_0"));
+            Assert.assertTrue(store.size() <= 4);
+        }
+    }
+
+    @Test
+    public void testStoresEtagsAndWriteTimes() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        AtomicLong time = new AtomicLong(1000);
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setClock(time::get)
+                .build()) {
+            Assert.assertNull(store.getEtag("user_1"));
+            Assert.assertEquals(Long.MAX_VALUE, store.getAgeMillis("user_1"));
+
+            store.put("user_1", allocations(), "\"v1\"");
+            time.addAndGet(250);
+            Assert.assertEquals("\"v1\"", store.getEtag("user_1"));
+            Assert.assertEquals(250, store.getAgeMillis("user_1"));
+            Assert.assertEquals(allocations(), store.get("user_1"));
+
+            store.put("user_1", allocations());
+            Assert.assertNull(store.getEtag("user_1"));
+            Assert.assertEquals(0, store.getAgeMillis("user_1"));
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        AtomicLong time = new AtomicLong();
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setExpireAfterWrite(1, TimeUnit.SECONDS)
+                .setClock(time::get)
+                .build()) {
+            store.put("user_1", allocations(), "\"v1\"");
+            time.set(999);
+            Assert.assertEquals(allocations(), store.get("user_1"));
+
+            time.set(1000);
+            Assert.assertEquals(new JsonArray(), store.get("user_1"));
+            Assert.assertNull(store.getEtag("user_1"));
+            Assert.assertEquals(Long.MAX_VALUE, store.getAgeMillis("user_1"));
+        }
+    }
+
+    @Test
+    public void testDecodedAllocationsAreReused() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            store.put("user_1", allocations());
+            JsonArray first = store.get("user_1");
+            Assert.assertSame(first, store.get("user_1"));
+
+            JsonArray updated = allocations();
+            updated.get(0).getAsJsonObject().addProperty("round", 1);
+            store.put("user_1", updated);
+            Assert.assertEquals(updated, store.get("user_1"));
+        }
+    }
+
+    @Test
+    public void testCorruptRecordsAreTreatedAsMissing() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .setMaximumEntries(10)
+                .setDecodedCacheSize(0)
+                .build()) {
+            store.put("user_1", allocations());
+        }
+
+        // flip a byte inside the allocations of the only record
+        byte[] bytes = Files.readAllBytes(file);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int value = text.indexOf("dealer_score");
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(value);
+            raw.write('D');
+        }
+
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            Assert.assertEquals(new JsonArray(), store.get("user_1"));
+            Assert.assertNull(store.getEtag("user_1"));
+
+            store.put("user_1", allocations());
+            Assert.assertEquals(allocations(), store.get("user_1"));
+        }
+    }
+
+    @Test
+    public void testFileInterruptedDuringCompactionIsEmptied() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            store.put("user_1", allocations());
+        }
+
+        // the state word of the header, as left by a crash in the middle of a compaction
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(12);
+            raw.writeInt(1);
+        }
+
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            Assert.assertEquals(0, store.size());
+            Assert.assertEquals(new JsonArray(), store.get("user_1"));
+        }
+    }
+
+    @Test
+    public void testFileCanOnlyBeOpenedByOneStore() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("allocations.store");
+        try (MappedAscendAllocationStore store = MappedAscendAllocationStore.builder(file)
+                .build()) {
+            try {
+                MappedAscendAllocationStore.builder(file).build();
+                Assert.fail("Expected the file to be locked.");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("already open"));
+            }
+        }
+
+        MappedAscendAllocationStore.builder(file).build().close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsForeignFile() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("foreign.store");
+        Files.write(file, new byte[128]);
+        MappedAscendAllocationStore.builder(file).build();
+    }
+
+}
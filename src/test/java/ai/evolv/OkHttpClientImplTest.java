@@ -0,0 +1,184 @@
+package ai.evolv;
+
+import ai.evolv.exceptions.AscendHttpStatusException;
+import ai.evolv.utils.StandInServer;
+
+import com.google.gson.JsonArray;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class OkHttpClientImplTest {
+
+    private StandInServer server;
+    private OkHttpClientImpl httpClient;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StandInServer();
+        httpClient = new OkHttpClientImpl(5000);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private String url() {
+        return "http://" + server.getDomain() + "/v1/test_12345/allocations";
+    }
+
+    @Test
+    public void testGetPreservesWhitespaceAcrossBodyParts() throws Exception {
+        String body = AsyncHttpClientImplTest.largeAllocationWithWhitespace();
+        server.setResponseBody(body);
+
+        Assert.assertEquals(body, httpClient.get(url()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testGetWithReaderParsesResponseBytes() throws Exception {
+        server.setResponseBody(AsyncHttpClientImplTest.largeAllocationWithWhitespace());
+
+        JsonArray allocations = httpClient.get(url(), Allocator::readAllocations)
+                .get(5, TimeUnit.SECONDS);
+
+        String value = allocations.get(0).getAsJsonObject().getAsJsonObject("genome")
+                .get("value").getAsString();
+        Assert.assertEquals(200002, value.length());
+        Assert.assertEquals("café", allocations.get(0).getAsJsonObject()
+                .getAsJsonObject("genome").get("label").getAsString());
+    }
+
+    @Test
+    public void testGetWithReaderFailsWhenReaderFails() throws Exception {
+        server.setResponseBody("not json");
+
+        try {
+            httpClient.get(url(), Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the response to fail to parse.");
+        } catch (ExecutionException e) {
+            Assert.assertNotNull(e.getCause());
+        }
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyAndEtag() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), null,
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertNull(server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsNotModifiedWhenEtagMatches() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v1\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertTrue(response.isNotModified());
+        Assert.assertNull(response.getBody());
+        Assert.assertEquals("\"v1\"", response.getEtag());
+        Assert.assertEquals("\"v1\"", server.getRequests().get(0).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testGetConditionalReturnsBodyWhenEtagChanged() throws Exception {
+        server.setResponseBody("[]");
+        server.setResponseEtag("\"v2\"");
+
+        ConditionalResponse<JsonArray> response = httpClient.getConditional(url(), "\"v1\"",
+                Allocator::readAllocations).get(5, TimeUnit.SECONDS);
+
+        Assert.assertFalse(response.isNotModified());
+        Assert.assertEquals(new JsonArray(), response.getBody());
+        Assert.assertEquals("\"v2\"", response.getEtag());
+    }
+
+    @Test
+    public void testBuilderConfiguresPoolAndDispatcher() throws Exception {
+        OkHttpClientImpl builtClient = OkHttpClientImpl.builder()
+                .setRequestTimeout(2, TimeUnit.SECONDS)
+                .setMaxRequests(128)
+                .setMaxRequestsPerHost(32)
+                .setHttp2Enabled(false)
+                .build();
+
+        OkHttpClient client = builtClient.getClient();
+        Assert.assertEquals(128, client.dispatcher().getMaxRequests());
+        Assert.assertEquals(32, client.dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(2000, client.callTimeoutMillis());
+        Assert.assertEquals(Collections.singletonList(Protocol.HTTP_1_1), client.protocols());
+
+        server.setResponseBody("[]");
+        Assert.assertEquals("[]", builtClient.get(url()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDefaultClientKeepsConnectionsAlive() throws Exception {
+        OkHttpClient client = httpClient.getClient();
+        Assert.assertEquals(OkHttpClientImpl.DEFAULT_MAX_REQUESTS_PER_HOST,
+                client.dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(client.dispatcher().getMaxRequests(),
+                client.dispatcher().getMaxRequestsPerHost());
+        Assert.assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1),
+                client.protocols());
+
+        server.setResponseBody("[]");
+        httpClient.get(url()).get(5, TimeUnit.SECONDS);
+        Thread.sleep(1500);
+        Assert.assertEquals(1, client.connectionPool().idleConnectionCount());
+    }
+
+    @Test
+    public void testBuilderSharesUnderlyingClient() throws Exception {
+        OkHttpClient shared = new OkHttpClient();
+        OkHttpClientImpl first = OkHttpClientImpl.builder().setOkHttpClient(shared).build();
+        OkHttpClientImpl second = OkHttpClientImpl.builder().setOkHttpClient(shared)
+                .setRequestTimeout(1, TimeUnit.SECONDS)
+                .build();
+
+        Assert.assertSame(shared.connectionPool(), first.getClient().connectionPool());
+        Assert.assertSame(shared.dispatcher(), second.getClient().dispatcher());
+        Assert.assertEquals(1000, second.getClient().callTimeoutMillis());
+
+        server.setResponseBody("[]");
+        first.get(url()).get(5, TimeUnit.SECONDS);
+        second.get(url()).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, shared.connectionPool().connectionCount());
+    }
+
+    @Test
+    public void testErrorStatusFailsWithTheStatusCode() throws Exception {
+        server.setResponseStatus(400);
+
+        try {
+            httpClient.get(url()).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AscendHttpStatusException);
+            Assert.assertEquals(400,
+                    ((AscendHttpStatusException) e.getCause()).getStatusCode());
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryBudgetTest {
+
+    @Test
+    public void testBudgetStartsEmpty() {
+        RetryBudget budget = new RetryBudget(0.1, 2);
+        Assert.assertEquals(0, budget.getAvailableRetries());
+        Assert.assertFalse(budget.tryWithdraw());
+
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        Assert.assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void testBudgetRunsOut() {
+        RetryBudget budget = new RetryBudget(0.1, 2, 2);
+        Assert.assertEquals(2, budget.getAvailableRetries());
+
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertFalse(budget.tryWithdraw());
+        Assert.assertEquals(0, budget.getAvailableRetries());
+    }
+
+    @Test
+    public void testRequestsRefillTheBudget() {
+        RetryBudget budget = new RetryBudget(0.1, 2, 2);
+        budget.tryWithdraw();
+        budget.tryWithdraw();
+
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        Assert.assertFalse(budget.tryWithdraw());
+
+        budget.deposit();
+        Assert.assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    public void testBudgetIsCapped() {
+        RetryBudget budget = new RetryBudget(0.5, 1);
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+
+        Assert.assertEquals(1, budget.getAvailableRetries());
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertFalse(budget.tryWithdraw());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBudgetIsRejected() {
+        new RetryBudget(-0.1, 10);
+    }
+
+}
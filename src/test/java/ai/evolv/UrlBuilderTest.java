@@ -0,0 +1,62 @@
+package ai.evolv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UrlBuilderTest {
+
+    private static final String eventsUrl = "https://participants.evolv.ai/v1/test_12345/events";
+
+    @Test
+    public void testAppendsQueryParameters() {
+        String url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", "test_uid")
+                .param("sid", "test_sid")
+                .param("type", "clicked")
+                .param("score", 1.0)
+                .build();
+
+        Assert.assertEquals(eventsUrl + "?uid=test_uid&sid=test_sid&type=clicked&score=1.0",
+                url);
+    }
+
+    @Test
+    public void testResetsBetweenUrls() {
+        UrlBuilder.forEndpoint(eventsUrl).param("uid", "first").build();
+        String url = UrlBuilder.forEndpoint(eventsUrl).param("uid", "second").build();
+
+        Assert.assertEquals(eventsUrl + "?uid=second", url);
+    }
+
+    @Test
+    public void testPercentEncodesReservedCharacters() {
+        String url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", "a b&c=d/e?f#g%h+i")
+                .param("sid", "unreserved-._~09AZaz")
+                .build();
+
+        Assert.assertEquals(eventsUrl + "?uid=a%20b%26c%3Dd%2Fe%3Ff%23g%25h%2Bi" +
+                "&sid=unreserved-._~09AZaz", url);
+    }
+
+    @Test
+    public void testPercentEncodesNonAsciiCharactersAsUtf8() {
+        String url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("uid", "é€😀")
+                .build();
+
+        Assert.assertEquals(eventsUrl + "?uid=%C3%A9%E2%82%AC%F0%9F%98%80", url);
+    }
+
+    @Test
+    public void testFormatsScoresLikeDoubleToString() {
+        String url = UrlBuilder.forEndpoint(eventsUrl)
+                .param("score", 0.1)
+                .param("large", 1.0E10)
+                .build();
+
+        Assert.assertEquals(eventsUrl + "?score=" + Double.toString(0.1) +
+                "&large=" + Double.toString(1.0E10), url);
+    }
+
+}
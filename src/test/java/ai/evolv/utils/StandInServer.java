@@ -0,0 +1,177 @@
+package ai.evolv.utils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local stand-in for the participants API that records every request it receives.
+ */
+public class StandInServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<RecordedRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile String responseBody = "[]";
+    private volatile String responseEtag = null;
+    private volatile long responseDelayMillis = 0;
+    private volatile long bodyDelayMillis = 0;
+    private volatile int responseStatus = 200;
+
+    public StandInServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    public String getDomain() {
+        return "localhost:" + server.getAddress().getPort();
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    /**
+     * Sends the given ETag with every response, and answers requests whose
+     * If-None-Match header matches it with 304 Not Modified.
+     */
+    public void setResponseEtag(String responseEtag) {
+        this.responseEtag = responseEtag;
+    }
+
+    public void setResponseDelay(long responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Sends the response headers at once, and the body after the given delay.
+     */
+    public void setBodyDelay(long bodyDelayMillis) {
+        this.bodyDelayMillis = bodyDelayMillis;
+    }
+
+    public void setResponseStatus(int responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public List<RecordedRequest> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    public int getRequestCount() {
+        return requests.size();
+    }
+
+    public boolean awaitRequestCount(int count, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (requests.size() < count) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = readBody(exchange.getRequestBody());
+        requests.add(new RecordedRequest(exchange.getRequestMethod(),
+                exchange.getRequestURI().toString(), body, exchange.getRequestHeaders()));
+
+        sleep(responseDelayMillis);
+
+        String etag = responseEtag;
+        if (etag != null) {
+            exchange.getResponseHeaders().add("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(responseStatus, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.flush();
+            sleep(bodyDelayMillis);
+            out.write(response);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static class RecordedRequest {
+
+        private final String method;
+        private final String uri;
+        private final String body;
+        private final Headers headers;
+
+        RecordedRequest(String method, String uri, String body, Headers headers) {
+            this.method = method;
+            this.uri = uri;
+            this.body = body;
+            this.headers = headers;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getUri() {
+            return uri;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+    }
+}